@@ -4,6 +4,7 @@ plugins {
     id("cz.augi.gradle.wartremover") version "0.14.2"
     id("cz.alenkacz.gradle.scalafmt") version "1.16.2"
     id("org.openjfx.javafxplugin") version "0.0.10"
+    id("me.champeau.jmh") version "0.6.6"
 }
 
 repositories {
@@ -16,6 +17,7 @@ val scalaCompleteVersion = "$scalaVersion.7"
 dependencies {
     implementation("org.scala-lang:scala-library:$scalaCompleteVersion")
     implementation("com.typesafe.akka:akka-actor-typed_$scalaVersion:2.6.17")
+    implementation("com.typesafe.akka:akka-cluster-typed_$scalaVersion:2.6.17")
     implementation("com.typesafe.akka:akka-slf4j_$scalaVersion:2.6.17")
     implementation("ch.qos.logback:logback-classic:1.2.5")
     implementation(fileTree("lib").include("**/*.jar"))
@@ -51,7 +53,46 @@ scalafmt {
     configFilePath = ".scalafmt.conf"
 }
 
+jmh {
+    jmhVersion.set("1.33")
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    (findProperty("jmhIncludes") as String?)?.let { includes.add(it) }
+    (findProperty("jmhParams") as String?)
+        ?.split(';')
+        ?.filter { it.isNotBlank() }
+        ?.map { it.split('=', limit = 2) }
+        ?.forEach { (name, values) ->
+            benchmarkParameters.put(name, objects.listProperty(String::class.java).value(values.split(',')))
+        }
+}
+
 javafx {
     version = "17"
     modules("javafx.base", "javafx.controls", "javafx.fxml", "javafx.graphics")
 }
+
+tasks.register<JavaExec>("runBatch") {
+    group = "application"
+    description = "Runs the word counter without a graphical user interface, passing it the arguments in the batchArgs property."
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("it.unibo.pcd.assignment3.actors.main.BatchMain")
+    (findProperty("cluster") as String?)?.let { systemProperty("config.resource", "application_cluster.conf") }
+    (findProperty("batchArgs") as String?)?.let { args(it.split(' ').filter { a -> a.isNotBlank() }) }
+}
+
+tasks.register<JavaExec>("runNode") {
+    group = "application"
+    description = "Runs a worker node of the word counter cluster, passing it the arguments in the nodeArgs property."
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("it.unibo.pcd.assignment3.actors.main.NodeMain")
+    (findProperty("nodeArgs") as String?)?.let { args(it.split(' ').filter { a -> a.isNotBlank() }) }
+}
+
+tasks.register<JavaExec>("pipelineBenchmark") {
+    group = "benchmark"
+    description = "Runs the end-to-end benchmark of the pipeline, passing it the arguments in the benchmarkArgs property."
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("it.unibo.pcd.assignment3.actors.benchmarks.PipelineBenchmark")
+    (findProperty("benchmarkArgs") as String?)?.let { args(it.split(' ').filter { a -> a.isNotBlank() }) }
+}
@@ -0,0 +1,40 @@
+package it.unibo.pcd.assignment3.actors.benchmarks
+
+import it.unibo.pcd.assignment3.actors.model.entities.{Document, FilePath, Page}
+import it.unibo.pcd.assignment3.actors.model.tasks.{DocumentFilterTask, DocumentLoader, PathFilterTask}
+import org.openjdk.jmh.annotations._
+
+import java.nio.file.Paths
+import java.util.concurrent.TimeUnit
+
+/** Measures the throughput, in documents per second, of the [[DocumentFilterTask]], which extracts the text of all the pages of
+  * a PDF document. Being the document closed by the task itself, a new one is loaded before every invocation, which is an
+  * acceptable overhead for JMH given that a single extraction takes milliseconds.
+  *
+  * It can be run with `gradle :actors:jmh -PjmhIncludes=DocumentFilterTaskBenchmark`.
+  */
+@State(Scope.Thread)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+class DocumentFilterTaskBenchmark {
+
+  @Param(Array("lorem_ipsum.pdf", "ipsum_dolor.pdf", "sit_amet.pdf", "single_page.pdf", "two_pages.pdf", "test.pdf"))
+  var pdfName: String = ""
+
+  @Param(Array("src/main/resources/pdfs"))
+  var pdfsDirectory: String = ""
+
+  private var document: Option[Document] = None
+
+  @Setup(Level.Invocation)
+  def loadDocument(): Unit = document = Some(PathFilterTask(DocumentLoader())(FilePath(Paths.get(pdfsDirectory, pdfName))))
+
+  @TearDown(Level.Invocation)
+  def closeDocument(): Unit = document.foreach(_.close())
+
+  @Benchmark
+  def documentFilterTask(): Iterable[Page] = document.map(DocumentFilterTask(_).toIndexedSeq).getOrElse(Iterable.empty[Page])
+}
@@ -0,0 +1,81 @@
+package it.unibo.pcd.assignment3.actors.benchmarks
+
+import it.unibo.pcd.assignment3.actors.AnyOps.AnyOps
+import it.unibo.pcd.assignment3.actors.model.entities.{FilePath, Page, Resource, StopwordsSet, Update}
+import it.unibo.pcd.assignment3.actors.model.tasks.{PageFilterTask, ScanningPageFilterTask, StopwordsGeneratorTask}
+import org.openjdk.jmh.annotations._
+
+import java.nio.file.Paths
+import java.util.concurrent.TimeUnit
+
+/** Measures the throughput, in pages per second, of the [[PageFilterTask]] and of the [[ScanningPageFilterTask]] over synthetic
+  * pages of configurable size and vocabulary. Before measuring, it checks that the two tasks produce the same [[Update]] for
+  * every synthetic page and for some pages exercising the edge cases of splitting a text into words, failing otherwise.
+  *
+  * It can be run with `gradle :actors:jmh -PjmhIncludes=PageFilterTaskBenchmark`, while the parameters can be overridden with
+  * `-PjmhParams="pageWords=500,5000;vocabularySize=20000"`.
+  */
+@State(Scope.Thread)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+class PageFilterTaskBenchmark {
+
+  @Param(Array("100", "1000", "10000"))
+  var pageWords: Int = 0
+
+  @Param(Array("1000", "100000"))
+  var vocabularySize: Int = 0
+
+  @Param(Array("src/main/resources/stopwords.txt"))
+  var stopwordsFile: String = ""
+
+  private var resources: IndexedSeq[Resource] = IndexedSeq.empty
+  private var nextIndex: Int = 0
+
+  /* The pages exercising the edge cases of splitting a text into words. */
+  private val edgeCasePages: Seq[String] = Seq(
+    "",
+    " ,;.\n\t-",
+    " leading and trailing separators ",
+    "snake_case _ __ a_b_",
+    "abc123 123abc 42 4.2 0x1F",
+    "Héllo ñandú ÉCOLE straße Ölçek naïve café",
+    "The the THE a an of"
+  )
+
+  @Setup
+  def setup(): Unit = {
+    val stopwordsSet: StopwordsSet = StopwordsGeneratorTask(FilePath(Paths.get(stopwordsFile)))
+    resources = SyntheticCorpus.pages(pagesNumber = 64, pageWords, vocabularySize).map(Resource(_, stopwordsSet))
+    (resources ++ edgeCasePages.map(Page(_)).map(Resource(_, stopwordsSet))).foreach(checkEquivalence)
+  }
+
+  @Benchmark
+  def pageFilterTask(): Update = PageFilterTask(nextResource())
+
+  @Benchmark
+  def scanningPageFilterTask(): Update = ScanningPageFilterTask(nextResource())
+
+  /* Checks that the PageFilterTask and the ScanningPageFilterTask produce the same Update for the given resource. */
+  @SuppressWarnings(Array("org.wartremover.warts.Throw"))
+  private def checkEquivalence(resource: Resource): Unit = {
+    val expected: Update = PageFilterTask(resource)
+    val actual: Update = ScanningPageFilterTask(resource)
+    if (!(actual.frequencies === expected.frequencies && actual.processedWords === expected.processedWords)) {
+      throw new IllegalStateException(
+        s"The tasks produce different updates for the page \"${resource.page.text.take(80)}\": " +
+          s"${expected.frequencies} with ${expected.processedWords} words against " +
+          s"${actual.frequencies} with ${actual.processedWords} words"
+      )
+    }
+  }
+
+  /* Returns the next resource to process, cycling through all the generated ones. */
+  private def nextResource(): Resource = {
+    nextIndex = (nextIndex + 1) % resources.size
+    resources(nextIndex)
+  }
+}
@@ -0,0 +1,41 @@
+package it.unibo.pcd.assignment3.actors.benchmarks
+
+import it.unibo.pcd.assignment3.actors.model.entities.{Document, FilePath}
+import it.unibo.pcd.assignment3.actors.model.tasks.{DocumentLoader, PathFilterTask}
+import org.openjdk.jmh.annotations._
+
+import java.nio.file.Paths
+import java.util.concurrent.TimeUnit
+
+/** Measures the throughput, in documents per second, of the [[PathFilterTask]], which loads a PDF document from the filesystem.
+  * The loaded document is closed right after being loaded, so as to not retain its resources between invocations.
+  *
+  * It can be run with `gradle :actors:jmh -PjmhIncludes=PathFilterTaskBenchmark`.
+  */
+@State(Scope.Thread)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+class PathFilterTaskBenchmark {
+
+  @Param(Array("lorem_ipsum.pdf", "ipsum_dolor.pdf", "sit_amet.pdf", "single_page.pdf", "two_pages.pdf", "test.pdf"))
+  var pdfName: String = ""
+
+  @Param(Array("src/main/resources/pdfs"))
+  var pdfsDirectory: String = ""
+
+  private var filePath: FilePath = FilePath(Paths.get(""))
+
+  @Setup
+  def setup(): Unit = filePath = FilePath(Paths.get(pdfsDirectory, pdfName))
+
+  @Benchmark
+  def pathFilterTask(): Int = {
+    val document: Document = PathFilterTask(DocumentLoader())(filePath)
+    val pages: Int = document.document.getNumberOfPages
+    document.close()
+    pages
+  }
+}
@@ -0,0 +1,59 @@
+package it.unibo.pcd.assignment3.actors.benchmarks
+
+import it.unibo.pcd.assignment3.actors.model.entities.{Document, FilePath, Resource, StopwordsSet, Update}
+import it.unibo.pcd.assignment3.actors.model.tasks._
+import org.openjdk.jmh.annotations._
+
+import java.nio.file.Paths
+import java.util.concurrent.TimeUnit
+
+/** Measures the throughput, in pages per second, of the [[PageFilterTask]] and of the [[ScanningPageFilterTask]] over the pages
+  * of all the PDF documents contained in a directory, by default the one with the sample documents of this project.
+  *
+  * It can be run with `gradle :actors:jmh -PjmhIncludes=PdfPageFilterTaskBenchmark`.
+  */
+@State(Scope.Thread)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+class PdfPageFilterTaskBenchmark {
+
+  @Param(Array("src/main/resources/pdfs"))
+  var pdfsDirectory: String = ""
+
+  @Param(Array("src/main/resources/stopwords.txt"))
+  var stopwordsFile: String = ""
+
+  private var resources: IndexedSeq[Resource] = IndexedSeq.empty
+  private var nextIndex: Int = 0
+
+  @Setup
+  def setup(): Unit = {
+    val stopwordsSet: StopwordsSet = StopwordsGeneratorTask(FilePath(Paths.get(stopwordsFile)))
+    resources = DocumentPathsGeneratorTask(FilePath(Paths.get(pdfsDirectory))).documents
+      .flatMap(p => {
+        val document: Document = PathFilterTask(DocumentLoader())(p)
+        try {
+          DocumentFilterTask(document).toIndexedSeq
+        } finally {
+          document.close()
+        }
+      })
+      .map(Resource(_, stopwordsSet))
+      .toIndexedSeq
+  }
+
+  @Benchmark
+  def pageFilterTask(): Update = PageFilterTask(nextResource())
+
+  @Benchmark
+  def scanningPageFilterTask(): Update = ScanningPageFilterTask(nextResource())
+
+  /* Returns the next resource to process, cycling through all the extracted ones. */
+  private def nextResource(): Resource = {
+    nextIndex = (nextIndex + 1) % resources.size
+    resources(nextIndex)
+  }
+}
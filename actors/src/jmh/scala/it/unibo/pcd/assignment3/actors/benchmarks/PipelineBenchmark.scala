@@ -0,0 +1,249 @@
+package it.unibo.pcd.assignment3.actors.benchmarks
+
+import akka.actor.typed.ActorSystem
+import com.typesafe.config.{Config, ConfigFactory}
+import it.unibo.pcd.assignment3.actors.AnyOps.{discard, AnyOps}
+import it.unibo.pcd.assignment3.actors.controller.{CancellationToken, PipelineMetrics, Settings, SuspensionGate}
+import it.unibo.pcd.assignment3.actors.controller.actors.{Command, RootActor}
+import it.unibo.pcd.assignment3.actors.model.entities.FilePath
+import it.unibo.pcd.assignment3.actors.view.View
+
+import java.lang.management.{GarbageCollectorMXBean, ManagementFactory, MemoryPoolMXBean, MemoryType}
+import java.nio.charset.StandardCharsets
+import java.nio.file.{Files, Path, Paths}
+import java.util.Comparator
+import scala.concurrent.{Await, Promise}
+import scala.concurrent.duration.Duration
+import scala.jdk.CollectionConverters._
+
+/** The end-to-end benchmark of the whole pipeline, which generates a corpus of synthetic PDF documents through the
+  * [[SyntheticPdfCorpus]] and then processes it with the root actor of the application and a view without user interface, once
+  * for each of the given numbers of actors. Each computation is preceded by a warmup one which is not recorded. For each
+  * recorded computation, it measures the documents, pages and words processed per second, the time elapsed before the first
+  * progress was displayed, the peak usage of the heap and the time spent in garbage collection, writing all of them into a JSON
+  * report, so that the results of different machines or versions can be compared.
+  *
+  * Its arguments are all optional: "--documents", "--pages" and "--words" followed by the number of documents, of pages for
+  * each document and of words for each page of the corpus, "--vocabulary" and "--skew" followed by the number of distinct words
+  * and the exponent of their Zipf distribution, "--actors" followed by a comma-separated list of the numbers of actors to try,
+  * "--runs" followed by the number of recorded computations for each of them and "--output" followed by the file into which
+  * writing the report, which is otherwise written into the standard output.
+  *
+  * It can be run with `gradle :actors:pipelineBenchmark -PbenchmarkArgs="--actors 2,4,8,16"`.
+  */
+object PipelineBenchmark {
+
+  /* The options of the benchmark. */
+  private final case class Options(
+    documents: Int,
+    pagesPerDocument: Int,
+    pageWords: Int,
+    vocabularySize: Int,
+    zipfSkew: Double,
+    totalActors: Seq[Int],
+    runs: Int,
+    output: Option[Path]
+  )
+
+  /* The measures of a single computation. */
+  private final case class Measures(
+    totalActors: Int,
+    run: Int,
+    seconds: Double,
+    documents: Long,
+    pages: Long,
+    words: Long,
+    firstUpdateMillis: Double,
+    peakHeapBytes: Long,
+    gcMillis: Long,
+    gcCount: Long
+  )
+
+  /* The message describing how the benchmark should be launched. */
+  private val usage: String =
+    "Usage: [--documents <number>] [--pages <number>] [--words <number>] [--vocabulary <number>] [--skew <number>] " +
+      "[--actors <number>,...] [--runs <number>] [--output <file>]"
+
+  /* The configuration of the computations, which neither reuse the results of the previous ones nor resume from them nor log
+   * their metrics.
+   */
+  private val config: Config =
+    ConfigFactory
+      .parseString("""
+        |word-counter.cache.enabled = false
+        |word-counter.watch.enabled = false
+        |word-counter.checkpoint.enabled = false
+        |word-counter.metrics-log.enabled = false
+        |akka.loglevel = "WARNING"
+        |""".stripMargin)
+      .withFallback(ConfigFactory.load())
+
+  /* The memory pools of the heap, whose peak usages are summed. */
+  private val heapPools: Seq[MemoryPoolMXBean] =
+    ManagementFactory.getMemoryPoolMXBeans.asScala.filter(_.getType === MemoryType.HEAP).toSeq
+
+  /* The garbage collectors, whose collection times and counts are summed. */
+  private val collectors: Seq[GarbageCollectorMXBean] = ManagementFactory.getGarbageCollectorMXBeans.asScala.toSeq
+
+  /* An implementation of the View trait which records the time at which the first progress is displayed and the number of
+   * processed words of the last one, completing the given promise when the computation is over.
+   */
+  private class BenchmarkView(completion: Promise[Unit]) extends View {
+    @volatile var firstUpdateTime: Option[Long] = None
+    @volatile var processedWords: Long = 0
+
+    override def displayProgress(frequencies: Map[String, Long], processedWords: Long): Unit = {
+      if (firstUpdateTime.isEmpty && processedWords > 0) {
+        firstUpdateTime = Some(System.nanoTime())
+      }
+      this.processedWords = processedWords
+    }
+
+    override def displayEstimates(distinctWords: Long, errorBound: Long): Unit = ()
+
+    override def displayCompletion(): Unit = discard(completion.trySuccess(()))
+
+    override def displayError(message: String): Unit = System.err.println(s"Error: $message")
+  }
+
+  /* Parses the given arguments, overriding the given options, returning None if they are not valid. */
+  private def parse(arguments: List[String], options: Options): Option[Options] =
+    arguments match {
+      case "--documents" :: n :: t  => positive(n).flatMap(v => parse(t, options.copy(documents = v)))
+      case "--pages" :: n :: t      => positive(n).flatMap(v => parse(t, options.copy(pagesPerDocument = v)))
+      case "--words" :: n :: t      => positive(n).flatMap(v => parse(t, options.copy(pageWords = v)))
+      case "--vocabulary" :: n :: t => positive(n).flatMap(v => parse(t, options.copy(vocabularySize = v)))
+      case "--skew" :: n :: t       => n.toDoubleOption.filter(_ >= 0).flatMap(v => parse(t, options.copy(zipfSkew = v)))
+      case "--runs" :: n :: t       => positive(n).flatMap(v => parse(t, options.copy(runs = v)))
+      case "--output" :: f :: t     => parse(t, options.copy(output = Some(Paths.get(f))))
+      case "--actors" :: l :: t =>
+        Some(l.split(',').toSeq.map(positive))
+          .filter(_.forall(_.isDefined))
+          .flatMap(a => parse(t, options.copy(totalActors = a.flatten)))
+      case Nil => Some(options)
+      case _   => None
+    }
+
+  /* Parses the given argument as a positive integer, returning None if it is not. */
+  private def positive(argument: String): Option[Int] = argument.toIntOption.filter(_ > 0)
+
+  /** Launches the benchmark.
+    * @param args
+    *   the arguments of the benchmark
+    */
+  def main(args: Array[String]): Unit = {
+    val processors: Int = Runtime.getRuntime.availableProcessors
+    parse(args.toList, Options(200, 10, 500, 50000, 1.0, Seq(processors, processors * 2, processors * 4), 3, None)) match {
+      case Some(o) => run(o)
+      case None =>
+        System.err.println(usage)
+        System.exit(2)
+    }
+  }
+
+  /* Runs the benchmark with the given options, writing its report. */
+  private def run(options: Options): Unit = {
+    val directory: Path = Files.createTempDirectory("word-counter-benchmark")
+    try {
+      val corpus: Path = Files.createDirectory(directory.resolve("corpus"))
+      val stopwords: Path = SyntheticPdfCorpus.writeStopwords(directory.resolve("stopwords.txt"), Seq.empty[String])
+      System.err.println(s"Generating ${options.documents} documents into $corpus")
+      discard(
+        SyntheticPdfCorpus.write(
+          corpus,
+          options.documents,
+          options.pagesPerDocument,
+          options.pageWords,
+          options.vocabularySize,
+          options.zipfSkew
+        )
+      )
+      val measures: Seq[Measures] = options
+        .totalActors
+        .flatMap(a => {
+          discard(compute(corpus, stopwords, a, run = 0))
+          (1 to options.runs).map(r => {
+            val m: Measures = compute(corpus, stopwords, a, r)
+            System.err.println(
+              f"actors ${m.totalActors} run ${m.run}: ${m.seconds}%.2f s, ${m.documents / m.seconds}%.1f documents/s, " +
+                f"${m.words / m.seconds}%.0f words/s, first update after ${m.firstUpdateMillis}%.0f ms"
+            )
+            m
+          })
+        })
+      val report: String = this.report(options, measures)
+      options.output.fold(print(report))(f => discard(Files.write(f, report.getBytes(StandardCharsets.UTF_8))))
+    } finally {
+      Files
+        .walk(directory)
+        .sorted(Comparator.reverseOrder[Path]())
+        .forEach(p => discard(p.toFile.delete()))
+    }
+  }
+
+  /* Processes the given corpus with the given number of actors, returning the measures of the computation. */
+  private def compute(corpus: Path, stopwords: Path, totalActors: Int, run: Int): Measures = {
+    val settings: Settings = Settings(config)
+    val gate: SuspensionGate = SuspensionGate()
+    val metrics: PipelineMetrics = PipelineMetrics(gate, settings.credits)
+    val completion: Promise[Unit] = Promise[Unit]()
+    val view: BenchmarkView = new BenchmarkView(completion)
+    System.gc()
+    heapPools.foreach(_.resetPeakUsage())
+    val gcMillis: Long = collectors.map(_.getCollectionTime).sum
+    val gcCount: Long = collectors.map(_.getCollectionCount).sum
+    val start: Long = System.nanoTime()
+    val actorSystem: ActorSystem[Command] = ActorSystem(
+      RootActor(
+        FilePath(corpus),
+        FilePath(stopwords),
+        10,
+        view,
+        gate,
+        CancellationToken(),
+        totalActors,
+        settings,
+        None,
+        metrics
+      ),
+      "actor_system",
+      config
+    )
+    Await.result(completion.future, Duration.Inf)
+    val seconds: Double = (System.nanoTime() - start) / 1e9
+    val measures: Measures = Measures(
+      totalActors,
+      run,
+      seconds,
+      metrics.path.getItemsIn,
+      metrics.page.getItemsIn,
+      view.processedWords,
+      view.firstUpdateTime.fold(seconds * 1e3)(t => (t - start) / 1e6),
+      heapPools.map(_.getPeakUsage.getUsed).sum,
+      collectors.map(_.getCollectionTime).sum - gcMillis,
+      collectors.map(_.getCollectionCount).sum - gcCount
+    )
+    actorSystem.terminate()
+    discard(Await.result(actorSystem.whenTerminated, Duration.Inf))
+    measures
+  }
+
+  /* Returns the JSON report of the given measures, taken with the given options. */
+  private def report(options: Options, measures: Seq[Measures]): String =
+    measures
+      .map(m =>
+        s"""{"totalActors":${m.totalActors},"run":${m.run},"seconds":${m.seconds},""" +
+          s""""documents":${m.documents},"pages":${m.pages},"words":${m.words},""" +
+          s""""documentsPerSecond":${m.documents / m.seconds},"pagesPerSecond":${m.pages / m.seconds},""" +
+          s""""wordsPerSecond":${m.words / m.seconds},"timeToFirstUpdateMillis":${m.firstUpdateMillis},""" +
+          s""""peakHeapBytes":${m.peakHeapBytes},"gcMillis":${m.gcMillis},"gcCount":${m.gcCount}}"""
+      )
+      .mkString(
+        s"""{"processors":${Runtime.getRuntime.availableProcessors},"maxHeapBytes":${Runtime.getRuntime.maxMemory},""" +
+          s""""corpus":{"documents":${options.documents},"pagesPerDocument":${options.pagesPerDocument},""" +
+          s""""pageWords":${options.pageWords},"vocabularySize":${options.vocabularySize},"zipfSkew":${options.zipfSkew}},""" +
+          """"runs":[""",
+        ",",
+        s"]}${System.lineSeparator()}"
+      )
+}
@@ -0,0 +1,54 @@
+package it.unibo.pcd.assignment3.actors.benchmarks
+
+import it.unibo.pcd.assignment3.actors.AnyOps.AnyOps
+import it.unibo.pcd.assignment3.actors.model.entities.Page
+
+import java.util.SplittableRandom
+import scala.annotation.tailrec
+
+/** A generator of synthetic [[Page]]s, made of words drawn uniformly from a vocabulary of configurable size, to be used as the
+  * input of the benchmarks when the size of the pages and the number of distinct words they contain must be controlled.
+  */
+object SyntheticCorpus {
+
+  /** Returns a vocabulary of the given size, made of distinct lowercase words.
+    * @param size
+    *   the number of distinct words in the vocabulary
+    * @return
+    *   a vocabulary of the given size
+    */
+  def vocabulary(size: Int): IndexedSeq[String] = (0 until size).map(word(_))
+
+  /** Returns the given number of [[Page]]s, each one of them containing the given number of words drawn from a vocabulary of the
+    * given size. Some words are capitalized and some are followed by punctuation or line breaks, so as to resemble the text
+    * extracted from a real document.
+    * @param pagesNumber
+    *   the number of [[Page]]s to generate
+    * @param pageWords
+    *   the number of words contained in each [[Page]]
+    * @param vocabularySize
+    *   the number of distinct words from which the words of the [[Page]]s are drawn
+    * @param seed
+    *   the seed of the random generator, so that the same arguments always produce the same [[Page]]s
+    * @return
+    *   the generated [[Page]]s
+    */
+  def pages(pagesNumber: Int, pageWords: Int, vocabularySize: Int, seed: Long = 42L): IndexedSeq[Page] = {
+    val random: SplittableRandom = new SplittableRandom(seed)
+    val words: IndexedSeq[String] = vocabulary(vocabularySize)
+    (0 until pagesNumber).map(_ =>
+      Page(
+        (1 to pageWords).map { i =>
+          val w: String = words(random.nextInt(words.size))
+          val token: String = if (i % 7 === 0) w.capitalize else w
+          if (i % 12 === 0) s"$token.\n" else if (i % 5 === 0) s"$token, " else s"$token "
+        }.mkString
+      )
+    )
+  }
+
+  /* Encodes the given index as a word in bijective base 26, so that each index is associated to a distinct word. */
+  @tailrec
+  private def word(index: Int, suffix: String = ""): String =
+    if (index < 0) suffix else word(index / 26 - 1, s"${('a' + index % 26).toChar}$suffix")
+}
@@ -0,0 +1,129 @@
+package it.unibo.pcd.assignment3.actors.benchmarks
+
+import org.apache.pdfbox.pdmodel.{PDDocument, PDPage, PDPageContentStream}
+import org.apache.pdfbox.pdmodel.common.PDRectangle
+import org.apache.pdfbox.pdmodel.font.PDType1Font
+
+import java.nio.charset.StandardCharsets
+import java.nio.file.{Files, Path}
+import java.util.{Arrays, SplittableRandom}
+
+/** A generator of synthetic corpora of PDF documents, to be used as the input of the benchmarks of the whole pipeline. The words
+  * of the documents are drawn from a vocabulary of configurable size following a Zipf distribution of configurable skew, so that
+  * a few words are very frequent and most of them are rare, as it happens in natural language.
+  */
+object SyntheticPdfCorpus {
+
+  /* The number of lines of text written on each page, as many as fit on an A4 page with the chosen font and leading. */
+  private val linesPerPage: Int = 60
+
+  /* The size of the font of the text. */
+  private val fontSize: Float = 9f
+
+  /* The distance between two consecutive lines of text. */
+  private val leading: Float = 12.5f
+
+  /* The distance of the text from the top left corner of the page. */
+  private val margin: Float = 40f
+
+  /** Writes a corpus of synthetic PDF documents into the given directory, which must exist, returning the [[Path]]s of the
+    * written documents.
+    * @param directory
+    *   the directory into which writing the documents
+    * @param documents
+    *   the number of documents to write
+    * @param pagesPerDocument
+    *   the number of pages of each document
+    * @param pageWords
+    *   the number of words written on each page
+    * @param vocabularySize
+    *   the number of distinct words from which the words of the pages are drawn
+    * @param zipfSkew
+    *   the exponent of the Zipf distribution from which the words are drawn, where 0 draws them uniformly and larger values make
+    *   the most frequent words more frequent
+    * @param seed
+    *   the seed of the random generator, so that the same arguments always produce the same documents
+    * @return
+    *   the [[Path]]s of the written documents
+    */
+  def write(
+    directory: Path,
+    documents: Int,
+    pagesPerDocument: Int,
+    pageWords: Int,
+    vocabularySize: Int,
+    zipfSkew: Double,
+    seed: Long = 42L
+  ): Seq[Path] = {
+    val random: SplittableRandom = new SplittableRandom(seed)
+    val words: IndexedSeq[String] = SyntheticCorpus.vocabulary(vocabularySize)
+    val cumulativeWeights: Array[Double] = cumulative(vocabularySize, zipfSkew)
+    (0 until documents).map(d => {
+      val path: Path = directory.resolve(f"document-$d%05d.pdf")
+      writeDocument(path, (0 until pagesPerDocument).map(_ => page(random, words, cumulativeWeights, pageWords)))
+      path
+    })
+  }
+
+  /** Writes a file containing the given stopwords, one for each line.
+    * @param file
+    *   the file into which writing the stopwords
+    * @param stopwords
+    *   the stopwords to be written
+    * @return
+    *   the [[Path]] of the written file
+    */
+  def writeStopwords(file: Path, stopwords: Seq[String]): Path =
+    Files.write(file, stopwords.mkString("\n").getBytes(StandardCharsets.UTF_8))
+
+  /* Returns the cumulative weights of the ranks of a Zipf distribution with the given number of elements and exponent. */
+  private def cumulative(elements: Int, skew: Double): Array[Double] =
+    (1 to elements).map(r => 1.0 / Math.pow(r.toDouble, skew)).scanLeft(0.0)(_ + _).tail.toArray
+
+  /* Draws a word from the given words with the given cumulative weights, the word at rank 1 being the most frequent one. */
+  private def draw(random: SplittableRandom, words: IndexedSeq[String], cumulativeWeights: Array[Double]): String = {
+    val index: Int = Arrays.binarySearch(cumulativeWeights, random.nextDouble(cumulativeWeights(cumulativeWeights.length - 1)))
+    words(if (index >= 0) index else -index - 1)
+  }
+
+  /* Returns the lines of text of a page with the given number of words. */
+  private def page(
+    random: SplittableRandom,
+    words: IndexedSeq[String],
+    cumulativeWeights: Array[Double],
+    pageWords: Int
+  ): Seq[String] =
+    (1 to pageWords)
+      .map(_ => draw(random, words, cumulativeWeights))
+      .grouped(Math.max(1, (pageWords + linesPerPage - 1) / linesPerPage))
+      .map(_.mkString(" "))
+      .toSeq
+
+  /* Writes a PDF document with the given pages, each one given as its lines of text, into the given path. */
+  private def writeDocument(path: Path, pages: Seq[Seq[String]]): Unit = {
+    val document: PDDocument = new PDDocument()
+    try {
+      pages.foreach(lines => {
+        val page: PDPage = new PDPage(PDRectangle.A4)
+        document.addPage(page)
+        val stream: PDPageContentStream = new PDPageContentStream(document, page)
+        try {
+          stream.beginText()
+          stream.setFont(PDType1Font.HELVETICA, fontSize)
+          stream.setLeading(leading)
+          stream.newLineAtOffset(margin, PDRectangle.A4.getHeight - margin)
+          lines.foreach(l => {
+            stream.showText(l)
+            stream.newLine()
+          })
+          stream.endText()
+        } finally {
+          stream.close()
+        }
+      })
+      document.save(path.toFile)
+    } finally {
+      document.close()
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package it.unibo.pcd.assignment3.actors.benchmarks
+
+import it.unibo.pcd.assignment3.actors.model.entities.{Resource, StopwordsSet, Update, UpdateAccumulator}
+import it.unibo.pcd.assignment3.actors.model.tasks.PageFilterTask
+import org.openjdk.jmh.annotations._
+
+import java.util.concurrent.TimeUnit
+
+/** Measures the throughput, in merged updates per second, of the [[UpdateAccumulator]] through which the PageFilter actors and
+  * the Reducer actors merge the [[Update]]s before sending them on. The [[Update]]s are the ones produced by the
+  * [[PageFilterTask]] over synthetic pages, while the accumulator they are merged into already contains all the words of the
+  * vocabulary, as it happens after the first pages have been processed. Merging an [[Update]] costs only as much as the number
+  * of its words, whatever the size of the accumulator.
+  *
+  * It can be run with `gradle :actors:jmh -PjmhIncludes=UpdateMergeBenchmark`.
+  */
+@State(Scope.Thread)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+class UpdateMergeBenchmark {
+
+  @Param(Array("100", "1000", "10000"))
+  var pageWords: Int = 0
+
+  @Param(Array("1000", "100000"))
+  var vocabularySize: Int = 0
+
+  private var updates: IndexedSeq[Update] = IndexedSeq.empty
+  private val accumulator: UpdateAccumulator = UpdateAccumulator()
+  private var nextIndex: Int = 0
+
+  @Setup
+  def setup(): Unit = {
+    val stopwordsSet: StopwordsSet = StopwordsSet(Set.empty[String])
+    updates = SyntheticCorpus.pages(pagesNumber = 64, pageWords, vocabularySize).map(p => PageFilterTask(Resource(p, stopwordsSet)))
+    accumulator.add(Update(SyntheticCorpus.vocabulary(vocabularySize).map((_, 1L)).toMap, vocabularySize.toLong))
+  }
+
+  @Benchmark
+  def mergeUpdate(): Int = {
+    accumulator.add(nextUpdate())
+    accumulator.size
+  }
+
+  /* Returns the next update to merge, cycling through all the generated ones. */
+  private def nextUpdate(): Update = {
+    nextIndex = (nextIndex + 1) % updates.size
+    updates(nextIndex)
+  }
+}
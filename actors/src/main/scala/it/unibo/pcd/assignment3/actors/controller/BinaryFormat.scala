@@ -0,0 +1,47 @@
+package it.unibo.pcd.assignment3.actors.controller
+
+import java.io.{DataInput, DataOutput}
+import java.nio.charset.StandardCharsets.UTF_8
+
+/* The encodings shared by the compact binary formats of the files written by this application, in which numbers are encoded as
+ * variable-length integers and strings as UTF-8 bytes preceded by their length.
+ */
+private[controller] object BinaryFormat {
+
+  /* Writes the given non negative number as a variable-length integer, using 7 bits for each byte. */
+  def writeNumber(output: DataOutput, number: Long): Unit = {
+    var remaining: Long = number
+    while ((remaining >>> 7) > 0L) {
+      output.writeByte(((remaining & 0x7f) | 0x80).toInt)
+      remaining >>>= 7
+    }
+    output.writeByte(remaining.toInt)
+  }
+
+  /* Reads a non negative number written as a variable-length integer. */
+  def readNumber(input: DataInput): Long = {
+    var number: Long = 0L
+    var shift: Int = 0
+    var byte: Int = input.readUnsignedByte()
+    while ((byte & 0x80) > 0) {
+      number |= (byte & 0x7f).toLong << shift
+      shift += 7
+      byte = input.readUnsignedByte()
+    }
+    number | (byte.toLong << shift)
+  }
+
+  /* Writes the given string as its UTF-8 bytes preceded by their number. */
+  def writeString(output: DataOutput, string: String): Unit = {
+    val bytes: Array[Byte] = string.getBytes(UTF_8)
+    writeNumber(output, bytes.length.toLong)
+    output.write(bytes)
+  }
+
+  /* Reads a string written as its UTF-8 bytes preceded by their number. */
+  def readString(input: DataInput): String = {
+    val bytes: Array[Byte] = new Array[Byte](readNumber(input).toInt)
+    input.readFully(bytes)
+    new String(bytes, UTF_8)
+  }
+}
@@ -0,0 +1,99 @@
+package it.unibo.pcd.assignment3.actors.controller
+
+import it.unibo.pcd.assignment3.actors.AnyOps.discard
+
+import java.util.{Set => JSet}
+import java.util.concurrent.ConcurrentHashMap
+import scala.concurrent.ExecutionContext
+import scala.util.Try
+
+/** A token which lets a computation be cancelled cooperatively, so that the work it has already submitted stops as soon as
+  * possible instead of competing with the computation launched after it. The tasks should check it between the items they
+  * produce, such as the documents and the pages, while the tasks not yet started are dropped if they are submitted through an
+  * executor guarded by this token. The resources registered to this token, such as the open documents, are closed when it is
+  * cancelled, so that the ones which will never be processed are not leaked. A task must unregister a resource before starting
+  * to use it, so that it is not closed while in use, and then close it itself once done, even if it stops because of this token.
+  *
+  * It must be constructed through its companion object.
+  */
+sealed trait CancellationToken {
+
+  /** Returns whether this token has been cancelled or not. */
+  def isCancelled: Boolean
+
+  /** Cancels this token, closing all the resources registered to it. */
+  def cancel(): Unit
+
+  /** Registers the given resource to this token, so that it is closed if this token is cancelled before the resource is
+    * unregistered. If this token has already been cancelled, the resource is immediately closed.
+    * @param resource
+    *   the resource to be registered
+    */
+  def register(resource: AutoCloseable): Unit
+
+  /** Unregisters the given resource from this token, because whoever is about to use it will also close it.
+    * @param resource
+    *   the resource to be unregistered
+    */
+  def unregister(resource: AutoCloseable): Unit
+
+  /** Returns an executor which submits its tasks to the given executor, dropping the ones which start after this token has been
+    * cancelled.
+    * @param executor
+    *   the executor to be guarded by this token
+    * @return
+    *   an executor which submits its tasks to the given executor, dropping them if this token has been cancelled
+    */
+  def guard(executor: ExecutionContext): ExecutionContext
+}
+
+/** Companion object to the [[CancellationToken]] trait, containing its factory method. */
+object CancellationToken {
+
+  /* An implementation of the CancellationToken trait. */
+  private class CancellationTokenImpl extends CancellationToken {
+    @volatile private var cancelled: Boolean = false
+    private val resources: JSet[AutoCloseable] = ConcurrentHashMap.newKeySet[AutoCloseable]()
+
+    override def isCancelled: Boolean = cancelled
+
+    override def cancel(): Unit = {
+      cancelled = true
+      resources.forEach(close(_))
+    }
+
+    override def register(resource: AutoCloseable): Unit = {
+      discard(resources.add(resource))
+      /* The token may have been cancelled while the resource was being registered, so it must be closed again. */
+      if (cancelled) {
+        close(resource)
+      }
+    }
+
+    override def unregister(resource: AutoCloseable): Unit = discard(resources.remove(resource))
+
+    override def guard(executor: ExecutionContext): ExecutionContext = new ExecutionContext {
+
+      override def execute(runnable: Runnable): Unit =
+        executor.execute(() =>
+          if (!cancelled) {
+            runnable.run()
+          }
+        )
+
+      override def reportFailure(cause: Throwable): Unit = executor.reportFailure(cause)
+    }
+
+    /* Closes the given resource, ignoring any failure because nobody is interested in it anymore, and unregisters it. */
+    private def close(resource: AutoCloseable): Unit = {
+      discard(resources.remove(resource))
+      discard(Try(resource.close()))
+    }
+  }
+
+  /** The factory method for creating new instances of the [[CancellationToken]] trait, which are initially not cancelled.
+    * @return
+    *   a new instance of the [[CancellationToken]] trait
+    */
+  def apply(): CancellationToken = new CancellationTokenImpl()
+}
@@ -0,0 +1,196 @@
+package it.unibo.pcd.assignment3.actors.controller
+
+import it.unibo.pcd.assignment3.actors.AnyOps.{discard, AnyOps}
+import it.unibo.pcd.assignment3.actors.controller.BinaryFormat._
+import it.unibo.pcd.assignment3.actors.model.entities.{DocumentKey, FilePath, Update}
+import it.unibo.pcd.assignment3.actors.model.tasks.DocumentKeyGeneratorTask
+
+import java.io.{ByteArrayInputStream, ByteArrayOutputStream, DataInputStream, DataOutputStream, FileOutputStream, IOException}
+import java.nio.file.{Files, Path, Paths, StandardCopyOption}
+import java.util.zip.CRC32C
+import scala.util.{Failure, Success, Try, Using}
+
+/** A checkpoint of a computation, made of the [[Update]] obtained by merging the [[Update]]s of all the documents completely
+  * processed until a point in time, along with the [[DocumentKey]]s of such documents, so that a computation which has been
+  * interrupted can be resumed without processing them again. A checkpoint can be used for resuming only the computations on the
+  * same directory and with the same file of stopwords of the one it was taken from, and only while none of its documents has
+  * changed or has been deleted since, because the [[Update]]s of single documents cannot be subtracted from the merged one. The
+  * [[DocumentKey]]s of a checkpoint contain only the sizes and the last modification times of its documents, so that checking
+  * them never requires reading the documents.
+  *
+  * The file into which a checkpoint is written contains a header, made of a number identifying its format, the length of its
+  * body and the CRC-32C checksum of its body, followed by the body in a compact binary format, in which numbers are encoded as
+  * variable-length integers and strings as UTF-8 bytes preceded by their length. A checkpoint is first written into a temporary
+  * file which then atomically replaces the previous one, so that an interruption while writing never leaves a damaged file.
+  *
+  * It must be constructed through its companion object.
+  */
+sealed trait Checkpoint {
+
+  /** Returns the absolute [[Path]] of the directory in which the documents of the computation are located. */
+  val filesDirectory: Path
+
+  /** Returns the absolute [[Path]] of the file containing the stopwords of the computation. */
+  val stopwordsFile: Path
+
+  /** Returns the [[Update]] obtained by merging the [[Update]]s of all the documents completely processed. */
+  val update: Update
+
+  /** Returns the [[DocumentKey]]s of the documents completely processed, whose [[FilePath]]s are absolute. */
+  val documents: Set[DocumentKey]
+
+  /** Returns whether this checkpoint can be used for resuming the computation on the given directory with the given file of
+    * stopwords or not, which also requires all of its documents to still have the same sizes and last modification times.
+    * @param filesDirectory
+    *   the [[FilePath]] of the directory in which the documents of the computation are located
+    * @param stopwordsFile
+    *   the [[FilePath]] of the file containing the stopwords of the computation
+    * @return
+    *   whether this checkpoint can be used for resuming the given computation or not
+    */
+  def resumes(filesDirectory: FilePath, stopwordsFile: FilePath): Boolean
+}
+
+/** Companion object to the [[Checkpoint]] trait, containing its factory method and the methods for persisting it. */
+object Checkpoint {
+
+  /* The number identifying the format of the file, written at its beginning. */
+  private val magicNumber: Int = 0x57434351
+
+  /* The task which generates the DocumentKeys of the documents of a checkpoint, without hashing their content. */
+  private val keyGeneratorTask: DocumentKeyGeneratorTask = DocumentKeyGeneratorTask(hashContent = false)
+
+  /* An implementation of the Checkpoint trait. */
+  private final case class CheckpointImpl(filesDirectory: Path, stopwordsFile: Path, update: Update, documents: Set[DocumentKey])
+    extends Checkpoint {
+
+    override def resumes(filesDirectory: FilePath, stopwordsFile: FilePath): Boolean =
+      this.filesDirectory === normalize(filesDirectory.path) &&
+        this.stopwordsFile === normalize(stopwordsFile.path) &&
+        documents.forall(d => Try(keyGeneratorTask(d.path)).toOption.contains(d))
+  }
+
+  /** Returns the given [[Path]] as an absolute path, so that paths given relatively to different directories are recognized as
+    * the same path.
+    * @param path
+    *   the [[Path]] to be normalized
+    * @return
+    *   the given [[Path]] as an absolute path
+    */
+  def normalize(path: Path): Path = path.toAbsolutePath.normalize()
+
+  /** The factory method for creating new instances of the [[Checkpoint]] trait. The given [[Path]]s are made absolute and the
+    * hashes of the contents of the documents are dropped from their [[DocumentKey]]s.
+    * @param filesDirectory
+    *   the [[Path]] of the directory in which the documents of the computation are located
+    * @param stopwordsFile
+    *   the [[Path]] of the file containing the stopwords of the computation
+    * @param update
+    *   the [[Update]] obtained by merging the [[Update]]s of all the documents completely processed
+    * @param documents
+    *   the [[DocumentKey]]s of the documents completely processed
+    * @return
+    *   a new instance of the [[Checkpoint]] trait
+    */
+  def apply(filesDirectory: Path, stopwordsFile: Path, update: Update, documents: Set[DocumentKey]): Checkpoint =
+    CheckpointImpl(
+      normalize(filesDirectory),
+      normalize(stopwordsFile),
+      update,
+      documents.map(d => DocumentKey(FilePath(normalize(d.path.path)), d.size, d.lastModified, None))
+    )
+
+  /** Writes the given [[Checkpoint]] into the file at the given [[Path]], replacing the one previously written, if any. The
+    * parent directories of the file are created if they do not exist.
+    * @param file
+    *   the [[Path]] of the file into which the [[Checkpoint]] is written
+    * @param checkpoint
+    *   the [[Checkpoint]] to be written
+    * @return
+    *   a [[scala.util.Failure]] if the [[Checkpoint]] could not be written
+    */
+  def write(file: Path, checkpoint: Checkpoint): Try[Unit] =
+    Try {
+      val bytes: ByteArrayOutputStream = new ByteArrayOutputStream()
+      val body: DataOutputStream = new DataOutputStream(bytes)
+      writeString(body, checkpoint.filesDirectory.toString)
+      writeString(body, checkpoint.stopwordsFile.toString)
+      writeNumber(body, checkpoint.update.processedWords)
+      val frequencies: Map[String, Long] = checkpoint.update.frequencies.filter(_._2 > 0)
+      writeNumber(body, frequencies.size.toLong)
+      frequencies.foreach(e => {
+        writeString(body, e._1)
+        writeNumber(body, e._2)
+      })
+      writeNumber(body, checkpoint.documents.size.toLong)
+      checkpoint.documents.foreach(d => {
+        writeString(body, d.path.path.toString)
+        writeNumber(body, d.size)
+        writeNumber(body, d.lastModified)
+      })
+      body.flush()
+      Option(file.toAbsolutePath.getParent).foreach(p => discard(Files.createDirectories(p)))
+      val temporaryFile: Path = file.resolveSibling(s"${file.getFileName.toString}.tmp")
+      Using.resource(new FileOutputStream(temporaryFile.toFile))(s => {
+        val output: DataOutputStream = new DataOutputStream(s)
+        output.writeInt(magicNumber)
+        output.writeInt(bytes.size)
+        output.writeInt(checksum(bytes.toByteArray))
+        bytes.writeTo(output)
+        output.flush()
+        s.getChannel.force(true)
+      })
+      discard(Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE))
+    }
+
+  /** Reads the [[Checkpoint]] written into the file at the given [[Path]].
+    * @param file
+    *   the [[Path]] of the file from which the [[Checkpoint]] is read
+    * @return
+    *   the [[Checkpoint]] written into the file, or a [[scala.util.Failure]] if the file does not exist, it could not be read or
+    *   it does not contain a valid [[Checkpoint]]
+    */
+  def read(file: Path): Try[Checkpoint] =
+    Using(new DataInputStream(Files.newInputStream(file)))(input => {
+      val header: Int = input.readInt()
+      val body: Array[Byte] = new Array[Byte](input.readInt())
+      val expectedChecksum: Int = input.readInt()
+      input.readFully(body)
+      (header === magicNumber && checksum(body) === expectedChecksum, body)
+    }).flatMap {
+      case (true, b) => Success(b)
+      case _         => Failure(new IOException(s"The file $file does not contain a valid checkpoint"))
+    }.map(b => {
+      val body: DataInputStream = new DataInputStream(new ByteArrayInputStream(b))
+      val filesDirectory: Path = Paths.get(readString(body))
+      val stopwordsFile: Path = Paths.get(readString(body))
+      val processedWords: Long = readNumber(body)
+      val words: Int = readNumber(body).toInt
+      val update: Update = Update(Iterator.fill(words)((readString(body), readNumber(body))).toMap, processedWords)
+      val documents: Int = readNumber(body).toInt
+      CheckpointImpl(
+        filesDirectory,
+        stopwordsFile,
+        update,
+        Iterator
+          .fill(documents)(DocumentKey(FilePath(Paths.get(readString(body))), readNumber(body), readNumber(body), None))
+          .toSet
+      )
+    })
+
+  /** Deletes the file at the given [[Path]] into which a [[Checkpoint]] has been written, if it exists, so that no computation
+    * will be resumed from it.
+    * @param file
+    *   the [[Path]] of the file to be deleted
+    * @return
+    *   a [[scala.util.Failure]] if the file could not be deleted
+    */
+  def delete(file: Path): Try[Unit] = Try(discard(Files.deleteIfExists(file)))
+
+  /* Returns the CRC-32C checksum of the given bytes. */
+  private def checksum(bytes: Array[Byte]): Int = {
+    val crc: CRC32C = new CRC32C()
+    crc.update(bytes)
+    crc.getValue.toInt
+  }
+}
@@ -2,13 +2,14 @@ package it.unibo.pcd.assignment3.actors.controller
 
 import akka.actor.typed.ActorSystem
 import akka.Done
+import com.typesafe.config.ConfigFactory
 import it.unibo.pcd.assignment3.actors.controller.actors._
-import it.unibo.pcd.assignment3.actors.model.entities.FilePath
+import it.unibo.pcd.assignment3.actors.model.entities.{FilePath, WordDictionary}
 import it.unibo.pcd.assignment3.actors.view.View
 
 import java.nio.file.Path
-import scala.concurrent.ExecutionContext
 import scala.concurrent.ExecutionContext.Implicits.global
+import scala.concurrent.Future
 
 /** The Controller component of this application, it should represent the application itself. That being so, it receives user
   * input from the View component and notifies it of changes in the Model component state. It should also be capable of notifying
@@ -18,6 +19,9 @@ import scala.concurrent.ExecutionContext.Implicits.global
   */
 trait Controller {
 
+  /** Returns the [[PipelineMetrics]] of the computations launched by this controller. */
+  val metrics: PipelineMetrics
+
   /** It launches a new computation with the inputs given.
     * @param filesDirectory
     *   the path of the directory containing the PDF files convert process
@@ -34,8 +38,11 @@ trait Controller {
   /** It notifies the Model convert resume the currently suspended computation. */
   def resume(): Unit
 
-  /** It exits the application. */
-  def exit(): Unit
+  /** It exits the application with the given status, after having stopped the running computation, if any.
+    * @param status
+    *   the exit status of the application, which is zero if the application exits normally
+    */
+  def exit(status: Int = 0): Unit
 }
 
 /** Companion object to the [[Controller]] trait, containing its factory method. */
@@ -43,33 +50,75 @@ object Controller {
 
   /* An implementation of the Controller trait. */
   private class ControllerImpl(view: View) extends Controller {
-    private var actorSystem: Option[ActorSystem[Command]] = None
-    private val suspendedFlag: SuspendedFlag = SuspendedFlag()
+    private var actorSystem: Future[Option[ActorSystem[Command]]] = Future.successful(None)
     private val totalActors: Int = (Runtime.getRuntime.availableProcessors * 1.0f * (1 + 1.093f)).round
-    private val executor: ExecutionContext =
-      ExecutionContext.fromExecutor(new SuspendableForkJoinPool(totalActors, suspendedFlag))
+    private val gate: SuspensionGate = SuspensionGate()
+    private var token: CancellationToken = CancellationToken()
+    private val settings: Settings = Settings(ConfigFactory.load())
+    override val metrics: PipelineMetrics = PipelineMetrics(gate, settings.credits)
+    private val resultCache: Option[ResultCache] =
+      settings.cache.flatMap(c =>
+        ResultCache(c.file).fold(
+          e => {
+            view.displayError(s"The cache of the results could not be opened: ${e.getMessage}")
+            None
+          },
+          Some(_)
+        )
+      )
 
+    /* The dictionary of the words is reset only once the previous actor system has terminated, so that no actor of the previous
+     * computation still uses it, and the new actor system is started only afterwards, unless it has been replaced meanwhile.
+     */
     override def launch(filesDirectory: Path, stopwordsFile: Path, wordsNumber: Int): Unit = {
-      suspendedFlag.resume()
-      actorSystem.foreach(_.terminate())
-      actorSystem = Some(
-        ActorSystem(
-          RootActor(FilePath(filesDirectory), FilePath(stopwordsFile), wordsNumber, view, executor, totalActors),
-          "actor_system"
-        )
+      token.cancel()
+      token = CancellationToken()
+      gate.resume()
+      val launchToken: CancellationToken = token
+      actorSystem = terminated().map(_ =>
+        Option.when(!launchToken.isCancelled) {
+          WordDictionary.reset()
+          ActorSystem(
+            RootActor(
+              FilePath(filesDirectory),
+              FilePath(stopwordsFile),
+              wordsNumber,
+              view,
+              gate,
+              launchToken,
+              totalActors,
+              settings,
+              resultCache,
+              metrics
+            ),
+            "actor_system"
+          )
+        }
       )
     }
 
-    override def suspend(): Unit = suspendedFlag.suspend()
+    override def suspend(): Unit = gate.suspend()
 
-    override def resume(): Unit = suspendedFlag.resume()
+    override def resume(): Unit = gate.resume()
 
-    override def exit(): Unit = actorSystem match {
-      case Some(a) =>
-        a.whenTerminated.onComplete[Done](_ => sys.exit())
-        a.terminate()
-      case _ => sys.exit()
+    override def exit(status: Int): Unit = {
+      token.cancel()
+      terminated().onComplete(_ => {
+        resultCache.foreach(_.close())
+        sys.exit(status)
+      })
     }
+
+    /* Terminates the last actor system started, once it has been started, and returns a future which completes when it has
+     * terminated. An actor system which could not be started is considered terminated.
+     */
+    private def terminated(): Future[Done] =
+      actorSystem
+        .recover { case _ => None }
+        .flatMap(_.fold(Future.successful[Done](Done))(a => {
+          a.terminate()
+          a.whenTerminated
+        }))
   }
 
   /** The factory method for creating new instances of the [[Controller]] trait given the [[View]] component it should use.
@@ -0,0 +1,103 @@
+package it.unibo.pcd.assignment3.actors.controller
+
+import it.unibo.pcd.assignment3.actors.AnyOps.discard
+import it.unibo.pcd.assignment3.actors.model.entities.{Update, WordDictionary}
+
+import java.util.concurrent.atomic.{AtomicReferenceArray, LongAdder}
+import java.util.{Arrays, Comparator, PriorityQueue}
+import scala.collection.immutable.ListMap
+
+/** A store of the frequencies of the words which can be updated concurrently by many threads, so that the [[Update]]s produced
+  * while processing the pages can be accumulated directly by the threads which produced them, without being sent to a single
+  * actor. The most frequent words can be sampled from the store while it is being updated.
+  *
+  * It must be constructed through its companion object.
+  */
+trait FrequencyStore {
+
+  /** Adds the frequencies and the processed words of the given [[Update]] to this store. It can be called concurrently. The
+    * frequencies can also be negative, for subtracting an [[Update]] previously added.
+    * @param update
+    *   the [[Update]] to be added
+    */
+  def add(update: Update): Unit
+
+  /** Returns the number of words processed until now. */
+  def processedWords: Long
+
+  /** Returns the most frequent words until now associated with their frequencies, from the most frequent to the least frequent
+    * one and in alphabetical order between the ones with the same frequency. The sample is not atomic with respect to concurrent
+    * additions and its cost is linear in the number of distinct words in the shared
+    * [[it.unibo.pcd.assignment3.actors.model.entities.WordDictionary]].
+    * @param wordsNumber
+    *   the maximum number of words to be returned
+    * @return
+    *   the most frequent words until now associated with their frequencies
+    */
+  def mostFrequent(wordsNumber: Int): ListMap[String, Long]
+}
+
+/** Companion object to the [[FrequencyStore]] trait, containing its factory method. */
+object FrequencyStore {
+
+  /* The number of bits of the index of a word inside its chunk. */
+  private val chunkBits: Int = 12
+
+  /* An implementation of the FrequencyStore trait which keeps a LongAdder for each word, created the first time the word is
+   * added, in chunks indexed by the id of the word in the shared WordDictionary, so that concurrent updates to different words
+   * never contend and to the same word rarely do. A new chunk is added only when a word with a greater id is added.
+   */
+  private class FrequencyStoreImpl(dictionary: WordDictionary) extends FrequencyStore {
+    @volatile private var chunks: Array[AtomicReferenceArray[LongAdder]] =
+      Array(new AtomicReferenceArray[LongAdder](1 << chunkBits))
+    private val words: LongAdder = new LongAdder()
+    private val order: Comparator[(String, Long)] =
+      Ordering.by[(String, Long), Long](_._2).reverse.orElse(Ordering.by[(String, Long), String](_._1))
+
+    override def add(update: Update): Unit = {
+      update.words.indices.foreach(i => adder(update.words(i)).add(update.counts(i)))
+      words.add(update.processedWords)
+    }
+
+    override def processedWords: Long = words.sum()
+
+    override def mostFrequent(wordsNumber: Int): ListMap[String, Long] = {
+      val heap: PriorityQueue[(String, Long)] = new PriorityQueue[(String, Long)](Math.max(wordsNumber, 1) + 1, order.reversed())
+      val current: Array[AtomicReferenceArray[LongAdder]] = chunks
+      (0 until Math.min(dictionary.size, current.length << chunkBits)).foreach(i =>
+        Option(current(i >>> chunkBits).get(i & ((1 << chunkBits) - 1))).foreach(a => {
+          val frequency: Long = a.sum()
+          if (frequency > 0) {
+            discard(heap.add((dictionary.word(i), frequency)))
+            if (heap.size > wordsNumber) {
+              discard(heap.poll())
+            }
+          }
+        })
+      )
+      Seq.fill(heap.size)(heap.poll()).reverse.to(ListMap.mapFactory[String, Long])
+    }
+
+    /* Returns the LongAdder of the word with the given id, adding it and its chunk if needed. */
+    private def adder(id: Int): LongAdder = {
+      if ((id >>> chunkBits) >= chunks.length) {
+        grow(id >>> chunkBits)
+      }
+      val chunk: AtomicReferenceArray[LongAdder] = chunks(id >>> chunkBits)
+      val index: Int = id & ((1 << chunkBits) - 1)
+      Option(chunk.get(index)).getOrElse(chunk.updateAndGet(index, a => Option(a).getOrElse(new LongAdder())))
+    }
+
+    /* Adds the chunks up to the one with the given index, if another thread has not already done it. */
+    private def grow(chunk: Int): Unit = synchronized {
+      if (chunk >= chunks.length) {
+        val grown: Array[AtomicReferenceArray[LongAdder]] = Arrays.copyOf(chunks, Math.max(chunks.length * 2, chunk + 1))
+        (chunks.length until grown.length).foreach(i => grown(i) = new AtomicReferenceArray[LongAdder](1 << chunkBits))
+        chunks = grown
+      }
+    }
+  }
+
+  /** Returns a new empty instance of the [[FrequencyStore]] trait. */
+  def apply(): FrequencyStore = new FrequencyStoreImpl(WordDictionary.shared)
+}
@@ -0,0 +1,99 @@
+package it.unibo.pcd.assignment3.actors.controller
+
+import it.unibo.pcd.assignment3.actors.AnyOps.discard
+
+import java.lang.management.ManagementFactory
+import javax.management.{MBeanServer, ObjectName, StandardMBean}
+import scala.util.Try
+
+/** The management interface of the [[PipelineMetrics]], through which the metrics of the executors of all stages are
+  * exposed as an MXBean.
+  */
+trait PipelineMetricsMXBean {
+
+  /** Returns the number of tasks of all stages submitted to the executors and not yet completed. */
+  def getPendingTasks: Long
+
+  /** Returns the number of tasks queued into the executors and not yet started, the ones parked while suspended included. */
+  def getQueuedTasks: Long
+
+  /** Returns the number of threads of the executors currently executing a task. */
+  def getActiveThreads: Int
+}
+
+/** The metrics of the data transformation chain, made of the [[StageMetrics]] of each of its stages and of the metrics of the
+  * executors shared by them. All of them are registered as MXBeans into the platform MBean server under the
+  * "it.unibo.pcd.assignment3.actors" domain, so that they can be inspected while the application is running.
+  *
+  * It must be constructed through its companion object.
+  */
+trait PipelineMetrics extends PipelineMetricsMXBean {
+
+  /** Returns the [[StageMetrics]] of the stage transforming the paths of the documents into documents. */
+  val path: StageMetrics
+
+  /** Returns the [[StageMetrics]] of the stage transforming the documents into pages. */
+  val document: StageMetrics
+
+  /** Returns the [[StageMetrics]] of the stage transforming the pages into updates. */
+  val page: StageMetrics
+
+  /** Returns the [[StageMetrics]] of the UpdateSink actor, whose task time is the time spent merging the updates. */
+  val sink: StageMetrics
+
+  /** Returns the [[StageMetrics]] of all stages, in the order of the data transformation chain. */
+  def stages: Seq[StageMetrics]
+}
+
+/** Companion object to the [[PipelineMetrics]] trait, containing its factory method. */
+object PipelineMetrics {
+
+  /* The domain of the names under which the MXBeans are registered. */
+  private val domain: String = "it.unibo.pcd.assignment3.actors"
+
+  /* An implementation of the PipelineMetrics trait. */
+  private class PipelineMetricsImpl(gate: SuspensionGate, credits: Int) extends PipelineMetrics {
+    override val path: StageMetrics = StageMetrics("path", credits)
+    override val document: StageMetrics = StageMetrics("document", credits)
+    override val page: StageMetrics = StageMetrics("page", credits)
+    override val sink: StageMetrics = StageMetrics("sink", 1)
+
+    override def stages: Seq[StageMetrics] = Seq(path, document, page, sink)
+
+    override def getPendingTasks: Long = stages.map(_.getPendingTasks).sum
+
+    override def getQueuedTasks: Long = gate.queuedTasks
+
+    override def getActiveThreads: Int = gate.runningTasks
+  }
+
+  /* Registers the given MXBean under the given name, replacing the one already registered under the same name, if any. */
+  private def register[A](server: MBeanServer, name: ObjectName, bean: A, interface: Class[A]): Unit =
+    discard(Try {
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name)
+      }
+      server.registerMBean(new StandardMBean(bean, interface, true), name)
+    })
+
+  /** The factory method for creating new instances of the [[PipelineMetrics]] trait, which also registers them as MXBeans. If
+    * the registration fails, the metrics are still recorded, but they are not exposed.
+    * @param gate
+    *   the [[SuspensionGate]] through which the tasks of all stages are submitted to their executors
+    * @param credits
+    *   the number of tasks each worker can execute at the same time
+    * @return
+    *   a new instance of the [[PipelineMetrics]] trait, with all of its metrics empty
+    */
+  def apply(gate: SuspensionGate, credits: Int): PipelineMetrics = {
+    val metrics: PipelineMetrics = new PipelineMetricsImpl(gate, credits)
+    val server: MBeanServer = ManagementFactory.getPlatformMBeanServer
+    register[PipelineMetricsMXBean](server, new ObjectName(s"$domain:type=Pipeline"), metrics, classOf[PipelineMetricsMXBean])
+    metrics
+      .stages
+      .foreach(s =>
+        register[StageMetricsMXBean](server, new ObjectName(s"$domain:type=Stage,name=${s.name}"), s, classOf[StageMetricsMXBean])
+      )
+    metrics
+  }
+}
@@ -0,0 +1,295 @@
+package it.unibo.pcd.assignment3.actors.controller
+
+import it.unibo.pcd.assignment3.actors.AnyOps.{discard, AnyOps}
+import it.unibo.pcd.assignment3.actors.controller.BinaryFormat._
+import it.unibo.pcd.assignment3.actors.model.entities.{DocumentKey, FilePath, StopwordsSet, Update}
+
+import java.io.{ByteArrayInputStream, ByteArrayOutputStream, DataInput, DataInputStream, DataOutput, DataOutputStream}
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.{Files, Path, Paths, StandardCopyOption}
+import java.nio.charset.StandardCharsets
+import java.nio.file.StandardOpenOption.{CREATE, READ, TRUNCATE_EXISTING, WRITE}
+import java.util.concurrent.ConcurrentHashMap
+import java.util.zip.CRC32C
+import scala.util.{Failure, Try}
+
+/** A cache of the [[Update]]s obtained by processing whole documents, persisted into a file, so that a document which has not
+  * changed since the last time it was processed does not need to be processed again. Each [[Update]] is associated with the
+  * [[DocumentKey]] of its document and with the fingerprint of the [[StopwordsSet]] which was used for producing it, and it is
+  * returned only for a [[DocumentKey]] and a fingerprint equal to the ones it was stored with. Only the last [[Update]] stored
+  * for each document is kept, so processing the same documents with different stopwords replaces the previous ones.
+  *
+  * The file is an append-only log of entries in a compact binary format, in which numbers are encoded as variable-length
+  * integers and strings as UTF-8 bytes preceded by their length. Only the keys of the entries are kept in memory, while the
+  * [[Update]]s are read from the file when requested. When the file is opened, a partially written entry at its end is discarded
+  * and, if the entries which have been superseded by newer ones take more space than the current ones, the file is compacted.
+  * The file is not locked, so it must not be used by more than one process at a time.
+  *
+  * It must be constructed through its companion object.
+  */
+trait ResultCache {
+
+  /** Returns the [[Update]] stored for the given [[DocumentKey]] and the given fingerprint of the stopwords, if any. It can be
+    * called concurrently.
+    * @param key
+    *   the [[DocumentKey]] of the document whose [[Update]] has to be returned
+    * @param stopwords
+    *   the fingerprint of the [[StopwordsSet]] with which the [[Update]] has to have been produced, as computed by
+    *   [[ResultCache.fingerprint]]
+    * @return
+    *   the [[Update]] stored for the given [[DocumentKey]] and the given fingerprint of the stopwords, if any
+    */
+  def lookup(key: DocumentKey, stopwords: Long): Option[Update]
+
+  /** Stores the given [[Update]] for the given [[DocumentKey]] and the given fingerprint of the stopwords, replacing the one
+    * previously stored for the same document, if any. It can be called concurrently.
+    * @param key
+    *   the [[DocumentKey]] of the document whose [[Update]] has to be stored
+    * @param stopwords
+    *   the fingerprint of the [[StopwordsSet]] with which the [[Update]] has been produced, as computed by
+    *   [[ResultCache.fingerprint]]
+    * @param update
+    *   the [[Update]] obtained by processing the whole document
+    */
+  def store(key: DocumentKey, stopwords: Long, update: Update): Unit
+
+  /** Forces all stored [[Update]]s to be written to the file and closes it. The [[Update]]s stored afterwards are ignored, while
+    * no other method can be called.
+    */
+  def close(): Unit
+}
+
+/** Companion object to the [[ResultCache]] trait, containing its factory method and the method for computing the fingerprints
+  * of the stopwords.
+  */
+object ResultCache {
+
+  /* The number identifying the format of the file, written at its beginning. */
+  private val magicNumber: Int = 0x57434332
+
+  /* The length in bytes of the header of the file and of the length prefix of each entry. */
+  private val intLength: Int = 4
+
+  /* The size of the file under which it is never compacted. */
+  private val compactionThreshold: Long = 1L << 20
+
+  /* An entry of the index of the cache, the key of the entry, the fingerprint of its stopwords and the position and length of
+   * its encoding into the file.
+   */
+  private final case class IndexEntry(key: DocumentKey, stopwords: Long, position: Long, length: Int)
+
+  /* An implementation of the ResultCache trait. The reads are positional, so they can be done concurrently, while the writes are
+   * serialized by the lock of the cache itself.
+   */
+  private class ResultCacheImpl(channel: FileChannel, index: ConcurrentHashMap[Path, IndexEntry], initialEnd: Long)
+    extends ResultCache {
+    private var end: Long = initialEnd
+    private var closed: Boolean = false
+
+    override def lookup(key: DocumentKey, stopwords: Long): Option[Update] =
+      Option(index.get(normalize(key.path)))
+        .filter(e => e.key.size === key.size && e.key.lastModified === key.lastModified && e.key.contentHash === key.contentHash)
+        .filter(_.stopwords === stopwords)
+        .flatMap(e => Some(read(channel, e.position, e.length)).filter(_.length === e.length))
+        .map(b => {
+          val input: DataInputStream = new DataInputStream(new ByteArrayInputStream(b))
+          discard(readKey(input))
+          discard(input.readLong())
+          readUpdate(input)
+        })
+
+    override def store(key: DocumentKey, stopwords: Long, update: Update): Unit = {
+      val bytes: ByteArrayOutputStream = new ByteArrayOutputStream()
+      val output: DataOutputStream = new DataOutputStream(bytes)
+      writeKey(output, key)
+      output.writeLong(stopwords)
+      writeUpdate(output, update)
+      output.flush()
+      val entry: Array[Byte] = bytes.toByteArray
+      synchronized {
+        if (!closed) {
+          write(channel, end, ByteBuffer.allocate(intLength + entry.length).putInt(entry.length).put(entry))
+          discard(index.put(normalize(key.path), IndexEntry(key, stopwords, end + intLength, entry.length)))
+          end += intLength + entry.length
+        }
+      }
+    }
+
+    override def close(): Unit = synchronized {
+      if (!closed) {
+        closed = true
+        channel.force(true)
+        channel.close()
+      }
+    }
+  }
+
+  /* Returns the path of the file in the given FilePath as an absolute path, so that paths given relatively to different
+   * directories are recognized as the same path.
+   */
+  private def normalize(path: FilePath): Path = path.path.toAbsolutePath.normalize()
+
+  /* Reads at most the given number of bytes from the given channel starting from the given position, stopping at its end. */
+  private def read(channel: FileChannel, position: Long, length: Int): Array[Byte] = {
+    val buffer: ByteBuffer = ByteBuffer.allocate(length)
+    var bytesRead: Int = 0
+    while (buffer.hasRemaining && bytesRead >= 0) {
+      bytesRead = channel.read(buffer, position + buffer.position())
+    }
+    buffer.array().take(buffer.position())
+  }
+
+  /* Writes all the bytes written into the given buffer to the given channel starting from the given position. */
+  private def write(channel: FileChannel, position: Long, buffer: ByteBuffer): Unit = {
+    discard(buffer.flip())
+    while (buffer.hasRemaining) {
+      discard(channel.write(buffer, position + buffer.position()))
+    }
+  }
+
+  /* Writes the given DocumentKey, the header of an entry. */
+  private def writeKey(output: DataOutput, key: DocumentKey): Unit = {
+    writeString(output, normalize(key.path).toString)
+    writeNumber(output, key.size)
+    output.writeLong(key.lastModified)
+    output.writeBoolean(key.contentHash.isDefined)
+    key.contentHash.foreach(output.writeLong)
+  }
+
+  /* Reads a DocumentKey, the header of an entry. */
+  private def readKey(input: DataInput): DocumentKey = {
+    val path: FilePath = FilePath(Paths.get(readString(input)))
+    val size: Long = readNumber(input)
+    val lastModified: Long = input.readLong()
+    DocumentKey(path, size, lastModified, if (input.readBoolean()) Some(input.readLong()) else None)
+  }
+
+  /* Writes the given Update, the body of an entry. */
+  private def writeUpdate(output: DataOutput, update: Update): Unit = {
+    writeNumber(output, update.processedWords)
+    writeNumber(output, update.frequencies.size.toLong)
+    update.frequencies.foreach(e => {
+      writeString(output, e._1)
+      writeNumber(output, e._2)
+    })
+  }
+
+  /* Reads an Update, the body of an entry. */
+  private def readUpdate(input: DataInput): Update = {
+    val processedWords: Long = readNumber(input)
+    val words: Int = readNumber(input).toInt
+    Update(Iterator.fill(words)((readString(input), readNumber(input))).toMap, processedWords)
+  }
+
+  /* Reads the index of the entries from the file opened by the given channel, discarding a partially written entry at its end,
+   * and returns it along with the position of the end of the last valid entry.
+   */
+  private def load(channel: FileChannel): (ConcurrentHashMap[Path, IndexEntry], Long) = {
+    val index: ConcurrentHashMap[Path, IndexEntry] = new ConcurrentHashMap[Path, IndexEntry]()
+    val header: Array[Byte] = read(channel, 0, intLength)
+    if (header.length < intLength || !(ByteBuffer.wrap(header).getInt === magicNumber)) {
+      discard(channel.truncate(0))
+      write(channel, 0, ByteBuffer.allocate(intLength).putInt(magicNumber))
+    }
+    var end: Long = intLength.toLong
+    var valid: Boolean = true
+    while (valid) {
+      val prefix: Array[Byte] = read(channel, end, intLength)
+      val length: Int = if (prefix.length < intLength) 0 else ByteBuffer.wrap(prefix).getInt
+      val entry: Array[Byte] = if (length > 0) read(channel, end + intLength, length) else Array.emptyByteArray
+      valid = length > 0 && entry.length === length && Try {
+        val input: DataInputStream = new DataInputStream(new ByteArrayInputStream(entry))
+        (readKey(input), input.readLong())
+      }.fold(
+        _ => false,
+        k => {
+          discard(index.put(normalize(k._1.path), IndexEntry(k._1, k._2, end + intLength, length)))
+          true
+        }
+      )
+      if (valid) {
+        end += intLength + length
+      }
+    }
+    discard(channel.truncate(end))
+    (index, end)
+  }
+
+  /* Rewrites the file at the given path so that it contains only the entries in the given index, then returns the channel
+   * opened on the new file along with its new index and the position of its end.
+   */
+  private def compact(
+    file: Path,
+    channel: FileChannel,
+    index: ConcurrentHashMap[Path, IndexEntry]
+  ): (FileChannel, ConcurrentHashMap[Path, IndexEntry], Long) = {
+    val temporaryFile: Path = file.resolveSibling(s"${file.getFileName.toString}.tmp")
+    val temporaryChannel: FileChannel = FileChannel.open(temporaryFile, WRITE, CREATE, TRUNCATE_EXISTING)
+    val compactedIndex: ConcurrentHashMap[Path, IndexEntry] = new ConcurrentHashMap[Path, IndexEntry]()
+    write(temporaryChannel, 0, ByteBuffer.allocate(intLength).putInt(magicNumber))
+    var end: Long = intLength.toLong
+    index.forEach((p, e) => {
+      var transferred: Long = 0L
+      while (transferred < e.length + intLength) {
+        transferred +=
+          channel.transferTo(e.position - intLength + transferred, e.length + intLength - transferred, temporaryChannel)
+      }
+      discard(compactedIndex.put(p, e.copy(position = end + intLength)))
+      end += e.length + intLength
+    })
+    temporaryChannel.force(true)
+    temporaryChannel.close()
+    channel.close()
+    discard(Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE))
+    (FileChannel.open(file, READ, WRITE), compactedIndex, end)
+  }
+
+  /** Returns the fingerprint of the given [[StopwordsSet]], the CRC-32C checksum of its stopwords in lexicographic order, which
+    * is the same for any two equal [[StopwordsSet]]s.
+    * @param stopwordsSet
+    *   the [[StopwordsSet]] whose fingerprint has to be computed
+    * @return
+    *   the fingerprint of the given [[StopwordsSet]]
+    */
+  def fingerprint(stopwordsSet: StopwordsSet): Long = {
+    val crc: CRC32C = new CRC32C()
+    stopwordsSet
+      .stopwords
+      .toSeq
+      .sorted
+      .foreach(w => {
+        crc.update(w.getBytes(StandardCharsets.UTF_8))
+        crc.update(0)
+      })
+    crc.getValue
+  }
+
+  /** The factory method for creating new instances of the [[ResultCache]] trait persisted into the file at the given [[Path]],
+    * which is created along with its parent directories if it does not exist. A file which is not a cache file is overwritten.
+    * @param file
+    *   the [[Path]] of the file into which the [[ResultCache]] is persisted
+    * @return
+    *   a new instance of the [[ResultCache]] trait, or a [[Failure]] if the file could not be opened
+    */
+  def apply(file: Path): Try[ResultCache] =
+    Try {
+      Option(file.toAbsolutePath.getParent).foreach(p => discard(Files.createDirectories(p)))
+      FileChannel.open(file, READ, WRITE, CREATE)
+    }.flatMap(c =>
+      Try {
+        val (index, end) = load(c)
+        var liveBytes: Long = 0L
+        index.forEach((_, e) => liveBytes += e.length + intLength)
+        if (end > compactionThreshold && end - intLength > 2 * liveBytes) {
+          val (compactedChannel, compactedIndex, compactedEnd) = compact(file, c, index)
+          new ResultCacheImpl(compactedChannel, compactedIndex, compactedEnd): ResultCache
+        } else {
+          new ResultCacheImpl(c, index, end): ResultCache
+        }
+      }.recoverWith(t => {
+        c.close()
+        Failure(t)
+      })
+    )
+}
@@ -0,0 +1,445 @@
+package it.unibo.pcd.assignment3.actors.controller
+
+import com.typesafe.config.Config
+import it.unibo.pcd.assignment3.actors.controller.Settings._
+import it.unibo.pcd.assignment3.actors.model.entities.{Resource, Update}
+import it.unibo.pcd.assignment3.actors.model.tasks.{FilterTaskType, PageFilterTask, ScanningPageFilterTask, SingletonTask}
+
+import java.nio.file.{Path, Paths}
+import scala.concurrent.duration.{FiniteDuration, MILLISECONDS}
+
+/** The settings for tuning the computation, as read from the "word-counter" section of the configuration of this application.
+  *
+  * It must be constructed through its companion object.
+  */
+trait Settings {
+
+  /** Returns the [[SingletonTask]] to be used for counting the words of each
+    * [[it.unibo.pcd.assignment3.actors.model.entities.Page]].
+    */
+  val pageFilterTask: SingletonTask[Resource, Update]
+
+  /** Returns the number of items each worker actor can process at the same time, the credits granted to it by its coordinator.
+    */
+  val credits: Int
+
+  /** Returns the paths of the configuration of the Akka dispatchers on which the
+    * [[it.unibo.pcd.assignment3.actors.model.tasks.Task]]s of each stage are executed.
+    */
+  val dispatchers: Map[FilterTaskType.Value, String]
+
+  /** Returns the [[CombinerSettings]] to be used by the PageFilter actors for merging their own [[Update]]s before sending them
+    * to the UpdateSink actor, if they should do so.
+    */
+  val combiner: Option[CombinerSettings]
+
+  /** Returns the interval at which the UpdateSink actor samples the most frequent words from the [[FrequencyStore]] shared by the
+    * PageFilter actors, if they should accumulate their [[Update]]s into such a store instead of sending them to the UpdateSink
+    * actor.
+    */
+  val sharedStore: Option[FiniteDuration]
+
+  /** Returns the [[ApproximateSettings]] to be used by the PageFilter actors for summarizing the words of their pages into
+    * [[it.unibo.pcd.assignment3.actors.model.entities.WordSketch]]es of fixed size instead of counting them exactly, if they
+    * should do so. The words are never counted approximately when the computation is distributed across a cluster.
+    */
+  val approximate: Option[ApproximateSettings]
+
+  /** Returns the maximum number of pages which can have been extracted by the DocumentFilter actors but not yet processed by the
+    * PageFilter actors, if the pages should be sent as soon as they are extracted instead of after the whole document.
+    */
+  val streaming: Option[Int]
+
+  /** Returns the [[SplitSettings]] to be used for splitting the documents into ranges of pages, so that the ranges of a large
+    * document can be processed in parallel, if the documents should be split.
+    */
+  val split: Option[SplitSettings]
+
+  /** Returns the [[MemoryBudgetSettings]] to be used for bounding the memory kept by the open documents, if it should be bounded
+    * at all.
+    */
+  val memoryBudget: Option[MemoryBudgetSettings]
+
+  /** Returns the maximum number of documents which can be open at the same time, if the path and document stages should run on
+    * virtual threads instead of on the dispatchers configured for them.
+    */
+  val virtualThreads: Option[Int]
+
+  /** Returns the [[CacheSettings]] to be used for reusing the results of the documents which have not changed since the last
+    * time they were processed, if they should be reused.
+    */
+  val cache: Option[CacheSettings]
+
+  /** Returns the [[CheckpointSettings]] to be used for periodically writing the results of the documents completely processed,
+    * so that an interrupted computation can be resumed from them, if they should be written at all. The checkpoints are never
+    * written when the directory is watched, when the words are counted approximately or when the computation is distributed
+    * across a cluster.
+    */
+  val checkpoint: Option[CheckpointSettings]
+
+  /** Returns the time for which a document must not change before being processed again, if the directory containing the
+    * documents should be watched for changes after having processed them, instead of ending the computation.
+    */
+  val watch: Option[FiniteDuration]
+
+  /** Returns the interval at which the load of the stages of the data transformation chain is sampled for moving the idle worker
+    * actors into the slowest stage, if they should be moved at all.
+    */
+  val rebalancing: Option[FiniteDuration]
+
+  /** Returns the interval at which a line summarizing the [[PipelineMetrics]] is logged, if it should be logged at all. The
+    * metrics are always exposed through JMX.
+    */
+  val metricsLog: Option[FiniteDuration]
+
+  /** Returns the [[ClusterSettings]] to be used for distributing the computation across the worker nodes of a cluster, if it
+    * should be distributed at all.
+    */
+  val cluster: Option[ClusterSettings]
+}
+
+/** Companion object to the [[Settings]] trait, containing its factory method. */
+object Settings {
+
+  /** The settings of a combiner, the component of a PageFilter actor which merges the [[Update]]s it produces before sending
+    * them to the UpdateSink actor.
+    *
+    * It must be constructed through its companion object.
+    */
+  sealed trait CombinerSettings {
+
+    /** Returns the number of distinct words that the merged [[Update]] can contain before it is sent. */
+    val maxWords: Int
+
+    /** Returns the maximum time an [[Update]] can wait for being merged with others before being sent. */
+    val flushInterval: FiniteDuration
+  }
+
+  /** Companion object to the [[CombinerSettings]] trait, containing its factory method. */
+  object CombinerSettings {
+
+    /* An implementation of the CombinerSettings trait. */
+    private final case class CombinerSettingsImpl(maxWords: Int, flushInterval: FiniteDuration) extends CombinerSettings
+
+    /** The factory method for creating new instances of the [[CombinerSettings]] trait.
+      * @param maxWords
+      *   the number of distinct words that the merged [[Update]] can contain before it is sent
+      * @param flushInterval
+      *   the maximum time an [[Update]] can wait for being merged with others before being sent
+      * @return
+      *   a new instance of the [[CombinerSettings]] trait
+      */
+    def apply(maxWords: Int, flushInterval: FiniteDuration): CombinerSettings = CombinerSettingsImpl(maxWords, flushInterval)
+  }
+
+  /** The settings of the approximate counting, in which the PageFilter actors summarize the words of their pages into
+    * [[it.unibo.pcd.assignment3.actors.model.entities.WordSketch]]es of fixed size, which the UpdateSink actor merges.
+    *
+    * It must be constructed through its companion object.
+    */
+  sealed trait ApproximateSettings {
+
+    /** Returns the number of counters of each row of the Count-Min sketch. */
+    val width: Int
+
+    /** Returns the number of rows of the Count-Min sketch. */
+    val depth: Int
+
+    /** Returns the number of most frequent words kept with their frequencies. */
+    val heavyHitters: Int
+
+    /** Returns the base 2 logarithm of the number of registers of the HyperLogLog sketch. */
+    val precision: Int
+
+    /** Returns the maximum time the words summarized by a PageFilter actor can wait before being sent. */
+    val flushInterval: FiniteDuration
+  }
+
+  /** Companion object to the [[ApproximateSettings]] trait, containing its factory method. */
+  object ApproximateSettings {
+
+    /* An implementation of the ApproximateSettings trait. */
+    private final case class ApproximateSettingsImpl(
+      width: Int,
+      depth: Int,
+      heavyHitters: Int,
+      precision: Int,
+      flushInterval: FiniteDuration
+    ) extends ApproximateSettings
+
+    /** The factory method for creating new instances of the [[ApproximateSettings]] trait.
+      * @param width
+      *   the number of counters of each row of the Count-Min sketch
+      * @param depth
+      *   the number of rows of the Count-Min sketch
+      * @param heavyHitters
+      *   the number of most frequent words kept with their frequencies
+      * @param precision
+      *   the base 2 logarithm of the number of registers of the HyperLogLog sketch
+      * @param flushInterval
+      *   the maximum time the words summarized by a PageFilter actor can wait before being sent
+      * @return
+      *   a new instance of the [[ApproximateSettings]] trait
+      */
+    def apply(width: Int, depth: Int, heavyHitters: Int, precision: Int, flushInterval: FiniteDuration): ApproximateSettings =
+      ApproximateSettingsImpl(width, depth, heavyHitters, precision, flushInterval)
+  }
+
+  /** The settings of the splitting of the documents into ranges of pages, each one loaded as a separate document.
+    *
+    * It must be constructed through its companion object.
+    */
+  sealed trait SplitSettings {
+
+    /** Returns the number of pages in each range, unless the document has so many pages that it would be split into more than
+      * the maximum number of ranges.
+      */
+    val pagesPerRange: Int
+
+    /** Returns the maximum number of ranges into which a document is split, which is also the maximum number of times it is
+      * loaded.
+      */
+    val maxRanges: Int
+  }
+
+  /** Companion object to the [[SplitSettings]] trait, containing its factory method. */
+  object SplitSettings {
+
+    /* An implementation of the SplitSettings trait. */
+    private final case class SplitSettingsImpl(pagesPerRange: Int, maxRanges: Int) extends SplitSettings
+
+    /** The factory method for creating new instances of the [[SplitSettings]] trait.
+      * @param pagesPerRange
+      *   the number of pages in each range, unless the document would be split into more than the maximum number of ranges
+      * @param maxRanges
+      *   the maximum number of ranges into which a document is split
+      * @return
+      *   a new instance of the [[SplitSettings]] trait
+      */
+    def apply(pagesPerRange: Int, maxRanges: Int): SplitSettings = SplitSettingsImpl(pagesPerRange, maxRanges)
+  }
+
+  /** The settings of the memory budget of the open documents, the maximum number of bytes they can keep in memory all together.
+    *
+    * It must be constructed through its companion object.
+    */
+  sealed trait MemoryBudgetSettings {
+
+    /** Returns the number of bytes which the open documents can keep in memory all together. */
+    val maxBytes: Long
+
+    /** Returns the number of bytes of a document over which the rest of it is kept into a scratch file. */
+    val scratchThreshold: Long
+  }
+
+  /** Companion object to the [[MemoryBudgetSettings]] trait, containing its factory method. */
+  object MemoryBudgetSettings {
+
+    /* An implementation of the MemoryBudgetSettings trait. */
+    private final case class MemoryBudgetSettingsImpl(maxBytes: Long, scratchThreshold: Long) extends MemoryBudgetSettings
+
+    /** The factory method for creating new instances of the [[MemoryBudgetSettings]] trait.
+      * @param maxBytes
+      *   the number of bytes which the open documents can keep in memory all together
+      * @param scratchThreshold
+      *   the number of bytes of a document over which the rest of it is kept into a scratch file
+      * @return
+      *   a new instance of the [[MemoryBudgetSettings]] trait
+      */
+    def apply(maxBytes: Long, scratchThreshold: Long): MemoryBudgetSettings = MemoryBudgetSettingsImpl(maxBytes, scratchThreshold)
+  }
+
+  /** The settings of the cache of the results of processing each document.
+    *
+    * It must be constructed through its companion object.
+    */
+  sealed trait CacheSettings {
+
+    /** Returns the [[Path]] of the file into which the cache is persisted. */
+    val file: Path
+
+    /** Returns whether the content of the files of the documents should be hashed for detecting their changes or not, instead of
+      * relying only on their sizes and last modification times.
+      */
+    val hashContent: Boolean
+  }
+
+  /** Companion object to the [[CacheSettings]] trait, containing its factory method. */
+  object CacheSettings {
+
+    /* An implementation of the CacheSettings trait. */
+    private final case class CacheSettingsImpl(file: Path, hashContent: Boolean) extends CacheSettings
+
+    /** The factory method for creating new instances of the [[CacheSettings]] trait.
+      * @param file
+      *   the [[Path]] of the file into which the cache is persisted
+      * @param hashContent
+      *   whether the content of the files of the documents should be hashed for detecting their changes or not
+      * @return
+      *   a new instance of the [[CacheSettings]] trait
+      */
+    def apply(file: Path, hashContent: Boolean): CacheSettings = CacheSettingsImpl(file, hashContent)
+  }
+
+  /** The settings of the checkpoints of a computation, the results of the documents completely processed which are periodically
+    * written for resuming the computation if it is interrupted.
+    *
+    * It must be constructed through its companion object.
+    */
+  sealed trait CheckpointSettings {
+
+    /** Returns the [[Path]] of the file into which the checkpoints are written. */
+    val file: Path
+
+    /** Returns the interval at which the checkpoints are written. */
+    val interval: FiniteDuration
+  }
+
+  /** Companion object to the [[CheckpointSettings]] trait, containing its factory method. */
+  object CheckpointSettings {
+
+    /* An implementation of the CheckpointSettings trait. */
+    private final case class CheckpointSettingsImpl(file: Path, interval: FiniteDuration) extends CheckpointSettings
+
+    /** The factory method for creating new instances of the [[CheckpointSettings]] trait.
+      * @param file
+      *   the [[Path]] of the file into which the checkpoints are written
+      * @param interval
+      *   the interval at which the checkpoints are written
+      * @return
+      *   a new instance of the [[CheckpointSettings]] trait
+      */
+    def apply(file: Path, interval: FiniteDuration): CheckpointSettings = CheckpointSettingsImpl(file, interval)
+  }
+
+  /** The settings of the distribution of the computation across the worker nodes of a cluster.
+    *
+    * It must be constructed through its companion object.
+    */
+  sealed trait ClusterSettings {
+
+    /** Returns the number of worker nodes which must have joined the cluster before the computation starts. */
+    val minNodes: Int
+
+    /** Returns the [[CombinerSettings]] to be used by the Reducer actors for merging the [[Update]]s they receive before sending
+      * them on.
+      */
+    val reducer: CombinerSettings
+  }
+
+  /** Companion object to the [[ClusterSettings]] trait, containing its factory method. */
+  object ClusterSettings {
+
+    /* An implementation of the ClusterSettings trait. */
+    private final case class ClusterSettingsImpl(minNodes: Int, reducer: CombinerSettings) extends ClusterSettings
+
+    /** The factory method for creating new instances of the [[ClusterSettings]] trait.
+      * @param minNodes
+      *   the number of worker nodes which must have joined the cluster before the computation starts
+      * @param reducer
+      *   the [[CombinerSettings]] to be used by the Reducer actors for merging the [[Update]]s they receive
+      * @return
+      *   a new instance of the [[ClusterSettings]] trait
+      */
+    def apply(minNodes: Int, reducer: CombinerSettings): ClusterSettings = ClusterSettingsImpl(minNodes, reducer)
+  }
+
+  /* An implementation of the Settings trait. */
+  private final case class SettingsImpl(
+    pageFilterTask: SingletonTask[Resource, Update],
+    credits: Int,
+    dispatchers: Map[FilterTaskType.Value, String],
+    combiner: Option[CombinerSettings],
+    sharedStore: Option[FiniteDuration],
+    approximate: Option[ApproximateSettings],
+    streaming: Option[Int],
+    split: Option[SplitSettings],
+    memoryBudget: Option[MemoryBudgetSettings],
+    virtualThreads: Option[Int],
+    cache: Option[CacheSettings],
+    checkpoint: Option[CheckpointSettings],
+    watch: Option[FiniteDuration],
+    rebalancing: Option[FiniteDuration],
+    metricsLog: Option[FiniteDuration],
+    cluster: Option[ClusterSettings]
+  ) extends Settings
+
+  /** The factory method for creating new instances of the [[Settings]] trait given the configuration of this application.
+    * @param config
+    *   the configuration of this application, containing the "word-counter" section
+    * @return
+    *   a new instance of the [[Settings]] trait
+    */
+  def apply(config: Config): Settings = {
+    val section: Config = config.getConfig("word-counter")
+    val virtualThreads: Option[Config] = Some(section.getConfig("virtual-threads")).filter(_.getBoolean("enabled"))
+    SettingsImpl(
+      section.getString("page-filter-task") match {
+        case "regex" => PageFilterTask
+        case _       => ScanningPageFilterTask
+      },
+      section.getInt("credits"),
+      Map(
+        FilterTaskType.Path -> virtualThreads.getOrElse(section).getString("dispatchers.path"),
+        FilterTaskType.Document -> virtualThreads.getOrElse(section).getString("dispatchers.document"),
+        FilterTaskType.Page -> section.getString("dispatchers.page")
+      ),
+      Some(section.getConfig("combiner"))
+        .filter(_.getBoolean("enabled"))
+        .map(c =>
+          CombinerSettings(c.getInt("max-words"), FiniteDuration(c.getDuration("flush-interval").toMillis, MILLISECONDS))
+        ),
+      Some(section.getConfig("shared-store"))
+        .filter(_.getBoolean("enabled"))
+        .map(c => FiniteDuration(c.getDuration("sample-interval").toMillis, MILLISECONDS)),
+      Some(section.getConfig("approximate"))
+        .filter(c => c.getBoolean("enabled") && !section.getBoolean("cluster.enabled"))
+        .map(c =>
+          ApproximateSettings(
+            c.getInt("width"),
+            c.getInt("depth"),
+            c.getInt("heavy-hitters"),
+            c.getInt("precision"),
+            FiniteDuration(c.getDuration("flush-interval").toMillis, MILLISECONDS)
+          )
+        ),
+      Some(section.getConfig("streaming")).filter(_.getBoolean("enabled")).map(_.getInt("max-pending-pages")),
+      Some(section.getConfig("split"))
+        .filter(_.getBoolean("enabled"))
+        .map(c => SplitSettings(c.getInt("pages-per-range"), c.getInt("max-ranges"))),
+      Some(section.getConfig("memory-budget"))
+        .filter(_.getBoolean("enabled"))
+        .map(c => MemoryBudgetSettings(c.getBytes("max-bytes"), c.getBytes("scratch-threshold"))),
+      virtualThreads.map(_.getInt("max-open-documents")),
+      Some(section.getConfig("cache"))
+        .filter(_.getBoolean("enabled"))
+        .map(c => CacheSettings(Paths.get(c.getString("file")), c.getBoolean("hash-content"))),
+      Some(section.getConfig("checkpoint"))
+        .filter(_.getBoolean("enabled"))
+        .filter(_ => Seq("watch", "approximate", "cluster").forall(s => !section.getBoolean(s"$s.enabled")))
+        .map(c =>
+          CheckpointSettings(Paths.get(c.getString("file")), FiniteDuration(c.getDuration("interval").toMillis, MILLISECONDS))
+        ),
+      Some(section.getConfig("watch"))
+        .filter(_.getBoolean("enabled"))
+        .map(c => FiniteDuration(c.getDuration("quiet-period").toMillis, MILLISECONDS)),
+      Some(section.getConfig("rebalancing"))
+        .filter(_.getBoolean("enabled"))
+        .map(c => FiniteDuration(c.getDuration("interval").toMillis, MILLISECONDS)),
+      Some(section.getConfig("metrics-log"))
+        .filter(_.getBoolean("enabled"))
+        .map(c => FiniteDuration(c.getDuration("interval").toMillis, MILLISECONDS)),
+      Some(section.getConfig("cluster"))
+        .filter(_.getBoolean("enabled"))
+        .map(c =>
+          ClusterSettings(
+            c.getInt("min-nodes"),
+            CombinerSettings(
+              c.getInt("reducer.max-words"),
+              FiniteDuration(c.getDuration("reducer.flush-interval").toMillis, MILLISECONDS)
+            )
+          )
+        )
+    )
+  }
+}
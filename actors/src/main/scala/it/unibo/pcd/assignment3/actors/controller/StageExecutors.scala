@@ -0,0 +1,58 @@
+package it.unibo.pcd.assignment3.actors.controller
+
+import akka.actor.typed.{ActorSystem, DispatcherSelector}
+import it.unibo.pcd.assignment3.actors.model.tasks.FilterTaskType
+
+import scala.concurrent.ExecutionContext
+
+/** The executors on which the [[it.unibo.pcd.assignment3.actors.model.tasks.Task]]s of each stage of the data transformation
+  * chain are executed. Each executor is an Akka dispatcher declared in the configuration of this application, so that the stages
+  * loading the documents, which mostly block on I/O, and the stage counting the words of the pages, which is CPU-bound, do not
+  * compete for the same threads and can be tuned independently. All the executors are guarded by the same [[SuspensionGate]]
+  * and by the [[CancellationToken]] of the computation.
+  *
+  * It must be constructed through its companion object.
+  */
+sealed trait StageExecutors {
+
+  /** Returns the executor on which the [[it.unibo.pcd.assignment3.actors.model.tasks.Task]]s of the given stage are executed.
+    * @param stage
+    *   the stage whose executor is to be returned
+    * @return
+    *   the executor of the given stage
+    */
+  def apply(stage: FilterTaskType.Value): ExecutionContext
+}
+
+/** Companion object to the [[StageExecutors]] trait, containing its factory method. */
+object StageExecutors {
+
+  /* An implementation of the StageExecutors trait. */
+  private final case class StageExecutorsImpl(executors: Map[FilterTaskType.Value, ExecutionContext]) extends StageExecutors {
+
+    override def apply(stage: FilterTaskType.Value): ExecutionContext = executors(stage)
+  }
+
+  /** The factory method for creating new instances of the [[StageExecutors]] trait, looking up the dispatchers of the stages
+    * into the given [[ActorSystem]].
+    * @param system
+    *   the [[ActorSystem]] into which the dispatchers are looked up
+    * @param dispatchers
+    *   the paths of the configuration of the dispatchers of each stage, which must contain all the stages
+    * @param gate
+    *   the [[SuspensionGate]] through which the tasks are submitted to the dispatchers
+    * @param token
+    *   the [[CancellationToken]] of the computation, which drops its tasks once cancelled
+    * @return
+    *   a new instance of the [[StageExecutors]] trait
+    */
+  def apply(
+    system: ActorSystem[_],
+    dispatchers: Map[FilterTaskType.Value, String],
+    gate: SuspensionGate,
+    token: CancellationToken
+  ): StageExecutors =
+    StageExecutorsImpl(
+      dispatchers.map(e => (e._1, token.guard(gate.guard(system.dispatchers.lookup(DispatcherSelector.fromConfig(e._2))))))
+    )
+}
@@ -0,0 +1,187 @@
+package it.unibo.pcd.assignment3.actors.controller
+
+import java.util.concurrent.atomic.LongAdder
+
+/** The management interface of the [[StageMetrics]] of a stage of the data transformation chain, through which they are exposed
+  * as an MXBean. All times are in milliseconds.
+  */
+trait StageMetricsMXBean {
+
+  /** Returns the number of items which have entered the stage. */
+  def getItemsIn: Long
+
+  /** Returns the number of items which have been produced by the stage for the next one. */
+  def getItemsOut: Long
+
+  /** Returns the number of tasks which have been executed by the stage. */
+  def getTasksExecuted: Long
+
+  /** Returns the mean execution time of the tasks of the stage. */
+  def getTaskTimeMean: Double
+
+  /** Returns the median execution time of the tasks of the stage. */
+  def getTaskTimeP50: Double
+
+  /** Returns the 99th percentile of the execution time of the tasks of the stage. */
+  def getTaskTimeP99: Double
+
+  /** Returns the mean time the items of the stage have waited into its coordinator before being dispatched to a worker. */
+  def getWaitTimeMean: Double
+
+  /** Returns the 99th percentile of the time the items of the stage have waited into its coordinator. */
+  def getWaitTimeP99: Double
+
+  /** Returns the total time spent executing the tasks of the stage, from which its utilisation over any period can be derived.
+    */
+  def getBusyTime: Double
+
+  /** Returns the number of workers of the stage. */
+  def getWorkers: Int
+
+  /** Returns the number of tasks of the stage submitted to the executor and not yet completed. */
+  def getPendingTasks: Long
+
+  /** Returns the fraction of the credits of the workers of the stage currently used by its pending tasks. */
+  def getUtilisation: Double
+}
+
+/** The metrics of a stage of the data transformation chain, recorded while the computation is running by its coordinator and
+  * by its workers. Recording a metric only adds to striped counters, so that the metrics can stay always enabled. The times are
+  * recorded into histograms with a bucket for each power of two nanoseconds, so their percentiles are approximated by the upper
+  * bound of their bucket.
+  *
+  * It must be constructed through its companion object.
+  */
+trait StageMetrics extends StageMetricsMXBean {
+
+  /** Returns the name of the stage. */
+  val name: String
+
+  /** Records that an item has entered the stage. */
+  def received(): Unit
+
+  /** Records that an item has been dispatched to a worker after having waited into the coordinator.
+    * @param nanos
+    *   the time waited by the item, in nanoseconds
+    */
+  def waited(nanos: Long): Unit
+
+  /** Records that a task has been submitted to the executor. */
+  def submitted(): Unit
+
+  /** Records that a task has been executed.
+    * @param nanos
+    *   the execution time of the task, in nanoseconds
+    * @param outputs
+    *   the number of items produced by the task for the next stage
+    */
+  def executed(nanos: Long, outputs: Int): Unit
+
+  /** Records that a task submitted to the executor has completed, either successfully or not. */
+  def completed(): Unit
+
+  /** Records the current number of workers of the stage.
+    * @param number
+    *   the number of workers of the stage
+    */
+  def workers(number: Int): Unit
+}
+
+/** Companion object to the [[StageMetrics]] trait, containing its factory method. */
+object StageMetrics {
+
+  /* The number of nanoseconds in a millisecond. */
+  private val nanosPerMilli: Double = 1e6
+
+  /* A histogram of durations in nanoseconds, with a bucket for each power of two. */
+  private class Histogram {
+    private val buckets: Array[LongAdder] = Array.fill(64)(new LongAdder())
+    private val total: LongAdder = new LongAdder()
+
+    def record(nanos: Long): Unit = {
+      val value: Long = Math.max(nanos, 0L)
+      buckets(64 - java.lang.Long.numberOfLeadingZeros(value)).increment()
+      total.add(value)
+    }
+
+    def count: Long = buckets.map(_.sum()).sum
+
+    def sum: Long = total.sum()
+
+    def mean: Double = {
+      val n: Long = count
+      if (n > 0) sum / nanosPerMilli / n else 0.0
+    }
+
+    def percentile(q: Double): Double = {
+      val counts: Array[Long] = buckets.map(_.sum())
+      val threshold: Double = counts.sum * q
+      counts
+        .scanLeft(0L)(_ + _)
+        .drop(1)
+        .indexWhere(c => c > 0 && c >= threshold) match {
+        case i if i > 0 => ((1L << i) - 1) / nanosPerMilli
+        case _          => 0.0
+      }
+    }
+  }
+
+  /* An implementation of the StageMetrics trait based on LongAdders. */
+  private class StageMetricsImpl(override val name: String, credits: Int) extends StageMetrics {
+    private val itemsIn: LongAdder = new LongAdder()
+    private val itemsOut: LongAdder = new LongAdder()
+    private val taskTime: Histogram = new Histogram()
+    private val waitTime: Histogram = new Histogram()
+    private val pendingTasks: LongAdder = new LongAdder()
+    @volatile private var workersNumber: Int = 0
+
+    override def received(): Unit = itemsIn.increment()
+
+    override def waited(nanos: Long): Unit = waitTime.record(nanos)
+
+    override def submitted(): Unit = pendingTasks.increment()
+
+    override def executed(nanos: Long, outputs: Int): Unit = {
+      taskTime.record(nanos)
+      itemsOut.add(outputs.toLong)
+    }
+
+    override def completed(): Unit = pendingTasks.decrement()
+
+    override def workers(number: Int): Unit = workersNumber = number
+
+    override def getItemsIn: Long = itemsIn.sum()
+
+    override def getItemsOut: Long = itemsOut.sum()
+
+    override def getTasksExecuted: Long = taskTime.count
+
+    override def getTaskTimeMean: Double = taskTime.mean
+
+    override def getTaskTimeP50: Double = taskTime.percentile(0.5)
+
+    override def getTaskTimeP99: Double = taskTime.percentile(0.99)
+
+    override def getWaitTimeMean: Double = waitTime.mean
+
+    override def getWaitTimeP99: Double = waitTime.percentile(0.99)
+
+    override def getBusyTime: Double = taskTime.sum / nanosPerMilli
+
+    override def getWorkers: Int = workersNumber
+
+    override def getPendingTasks: Long = pendingTasks.sum()
+
+    override def getUtilisation: Double = getPendingTasks.toDouble / (Math.max(workersNumber, 1) * credits)
+  }
+
+  /** The factory method for creating new instances of the [[StageMetrics]] trait.
+    * @param name
+    *   the name of the stage
+    * @param credits
+    *   the number of tasks each worker of the stage can execute at the same time
+    * @return
+    *   a new instance of the [[StageMetrics]] trait, with all of its metrics empty
+    */
+  def apply(name: String, credits: Int): StageMetrics = new StageMetricsImpl(name, Math.max(credits, 1))
+}
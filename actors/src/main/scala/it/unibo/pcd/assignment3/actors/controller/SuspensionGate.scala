@@ -0,0 +1,105 @@
+package it.unibo.pcd.assignment3.actors.controller
+
+import it.unibo.pcd.assignment3.actors.AnyOps.discard
+
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.{AtomicInteger, AtomicLong}
+import scala.concurrent.ExecutionContext
+
+/** A gate through which the tasks of the computation are submitted to their executors, so that the computation can be suspended
+  * and resumed whichever the executors are. While the gate is suspended, any new task is parked into a buffer instead of being
+  * submitted, while the ones already executing are left to complete, so that the computation stops at the boundary between two
+  * tasks. The thread submitting a task is never blocked, so the actors submitting the tasks and the dispatchers running them keep
+  * on processing their messages, their timers included, while the computation is suspended. When it is resumed, the parked tasks
+  * are immediately submitted to their executors. The gate also counts the tasks waiting to be executed and the ones executing,
+  * across all of the executors it guards.
+  *
+  * It must be constructed through its companion object.
+  */
+sealed trait SuspensionGate {
+
+  /** Suspends this gate, so that the tasks submitted from now on are parked until it is resumed. */
+  def suspend(): Unit
+
+  /** Resumes this gate, submitting all the tasks parked while it was suspended. */
+  def resume(): Unit
+
+  /** Returns an executor which submits its tasks to the given executor through this gate.
+    * @param executor
+    *   the executor to be guarded by this gate
+    * @return
+    *   an executor which submits its tasks to the given executor through this gate
+    */
+  def guard(executor: ExecutionContext): ExecutionContext
+
+  /** Returns the number of tasks submitted through this gate which have not yet started, the parked ones included. */
+  def queuedTasks: Long
+
+  /** Returns the number of tasks submitted through this gate which are currently executing. */
+  def runningTasks: Int
+}
+
+/** Companion object to the [[SuspensionGate]] trait, containing its factory method. */
+object SuspensionGate {
+
+  /* An implementation of the SuspensionGate trait. */
+  private class SuspensionGateImpl extends SuspensionGate {
+    @volatile private var suspended: Boolean = false
+    private val parkedTasks: ConcurrentLinkedQueue[Runnable] = new ConcurrentLinkedQueue[Runnable]()
+    private val queued: AtomicLong = new AtomicLong()
+    private val running: AtomicInteger = new AtomicInteger()
+
+    override def suspend(): Unit = suspended = true
+
+    override def resume(): Unit = {
+      suspended = false
+      release()
+    }
+
+    override def guard(executor: ExecutionContext): ExecutionContext = new ExecutionContext {
+
+      override def execute(runnable: Runnable): Unit = {
+        val task: Runnable = () => {
+          discard(queued.decrementAndGet())
+          discard(running.incrementAndGet())
+          try {
+            runnable.run()
+          } finally {
+            discard(running.decrementAndGet())
+          }
+        }
+        discard(queued.incrementAndGet())
+        if (suspended) {
+          discard(parkedTasks.add(() => executor.execute(task)))
+          /* The gate may have been resumed after the check but before the task was parked, so it must be released again. */
+          if (!suspended) {
+            release()
+          }
+        } else {
+          executor.execute(task)
+        }
+      }
+
+      override def reportFailure(cause: Throwable): Unit = executor.reportFailure(cause)
+    }
+
+    override def queuedTasks: Long = queued.get()
+
+    override def runningTasks: Int = running.get()
+
+    /* Submits all the parked tasks to their executors, until the gate is suspended again. */
+    private def release(): Unit = {
+      var task: Option[Runnable] = if (suspended) None else Option(parkedTasks.poll())
+      while (task.isDefined) {
+        task.foreach(_.run())
+        task = if (suspended) None else Option(parkedTasks.poll())
+      }
+    }
+  }
+
+  /** The factory method for creating new instances of the [[SuspensionGate]] trait, which are initially not suspended.
+    * @return
+    *   a new instance of the [[SuspensionGate]] trait
+    */
+  def apply(): SuspensionGate = new SuspensionGateImpl()
+}
@@ -0,0 +1,59 @@
+package it.unibo.pcd.assignment3.actors.controller
+
+import java.util.concurrent.{ForkJoinPool, Semaphore}
+import java.util.concurrent.ForkJoinPool.ManagedBlocker
+
+/** A throttle which limits the number of items which have been produced but not yet consumed, making the producers wait when the
+  * limit is reached until the consumers have caught up.
+  *
+  * It must be constructed through its companion object.
+  */
+trait Throttle {
+
+  /** It acquires the permission to produce a new item. This method is blocking if the number of items produced but not yet
+    * consumed has reached the limit. If called from a thread of a [[ForkJoinPool]], the pool is allowed to compensate for the
+    * blocked thread, so that the consumers running on the same pool can still make progress.
+    */
+  def acquire(): Unit
+
+  /** It notifies that an item has been consumed, allowing a new one to be produced. */
+  def release(): Unit
+}
+
+/** Companion object to the [[Throttle]] trait, containing its factory method. */
+object Throttle {
+
+  /* An implementation of the Throttle trait based on a Semaphore. */
+  private class ThrottleImpl(limit: Int) extends Throttle {
+    private val semaphore: Semaphore = new Semaphore(limit)
+
+    override def acquire(): Unit =
+      if (!semaphore.tryAcquire()) {
+        ForkJoinPool.managedBlock(new ManagedBlocker {
+          private var acquired: Boolean = false
+
+          override def block(): Boolean = {
+            semaphore.acquire()
+            acquired = true
+            true
+          }
+
+          override def isReleasable: Boolean = {
+            acquired = acquired || semaphore.tryAcquire()
+            acquired
+          }
+        })
+      }
+
+    override def release(): Unit = semaphore.release()
+  }
+
+  /** The factory method for creating new instances of the [[Throttle]] trait given the maximum number of items which can have
+    * been produced but not yet consumed.
+    * @param limit
+    *   the maximum number of items which can have been produced but not yet consumed
+    * @return
+    *   a new instance of the [[Throttle]] trait
+    */
+  def apply(limit: Int): Throttle = new ThrottleImpl(limit)
+}
@@ -0,0 +1,77 @@
+package it.unibo.pcd.assignment3.actors.controller
+
+import akka.dispatch.{DispatcherPrerequisites, ExecutorServiceConfigurator, ExecutorServiceFactory}
+import com.typesafe.config.Config
+
+import java.util.{List => JList}
+import java.util.concurrent.{AbstractExecutorService, ExecutorService, Executors, Semaphore, ThreadFactory, TimeUnit}
+import scala.util.Try
+
+/** The configurator of the executor of an Akka dispatcher which runs each task on its own virtual thread, so that thousands of
+  * tasks blocking on I/O, as loading the documents from a network-mounted storage does, can wait at the same time without each
+  * one holding a platform thread. The number of tasks executing at the same time is limited by "max-concurrent-tasks", and a task
+  * waiting for its turn waits on its own virtual thread, never on the thread which submitted it. This limits the tasks running,
+  * not the documents open, because a document stays open after the task loading it has completed, so the documents are bounded
+  * by the [[it.unibo.pcd.assignment3.actors.model.tasks.DocumentLoader]] instead, as enabled through
+  * [[Settings.virtualThreads]]. It is selected through the "executor" setting of the dispatcher, while the setting
+  * "virtual-thread-executor.max-concurrent-tasks" of the dispatcher sets the limit.
+  *
+  * The virtual threads are available since JDK 21, so on the previous ones the tasks run on a pool of "max-concurrent-tasks"
+  * platform threads instead, which limits them in the same way through the queue of the pool, without a platform thread being
+  * started only for waiting its turn.
+  * @param config
+  *   the configuration of the dispatcher
+  * @param prerequisites
+  *   the prerequisites of the dispatcher
+  */
+final class VirtualThreadExecutorConfigurator(config: Config, prerequisites: DispatcherPrerequisites)
+  extends ExecutorServiceConfigurator(config, prerequisites) {
+  private val maxConcurrentTasks: Int = config.getInt("virtual-thread-executor.max-concurrent-tasks")
+
+  override def createExecutorServiceFactory(id: String, threadFactory: ThreadFactory): ExecutorServiceFactory =
+    new ExecutorServiceFactory {
+
+      override def createExecutorService: ExecutorService =
+        newVirtualThreadPerTaskExecutor()
+          .map[ExecutorService](new VirtualThreadExecutorConfigurator.BoundedExecutorService(_, maxConcurrentTasks))
+          .getOrElse(Executors.newFixedThreadPool(maxConcurrentTasks, threadFactory))
+    }
+
+  /* Creates the executor running each task on a new virtual thread, looking it up reflectively so that it can be compiled and
+   * run on the JDKs without virtual threads, on which it is not created.
+   */
+  @SuppressWarnings(Array("org.wartremover.warts.AsInstanceOf", "org.wartremover.warts.Null"))
+  private def newVirtualThreadPerTaskExecutor(): Option[ExecutorService] =
+    Try(classOf[Executors].getMethod("newVirtualThreadPerTaskExecutor").invoke(null).asInstanceOf[ExecutorService]).toOption
+}
+
+/** Companion object to the [[VirtualThreadExecutorConfigurator]] class, containing the executor it configures. */
+object VirtualThreadExecutorConfigurator {
+
+  /* An ExecutorService which limits the number of tasks its delegate executes at the same time through a Semaphore, acquired
+   * by each task on the thread executing it.
+   */
+  private class BoundedExecutorService(delegate: ExecutorService, permits: Int) extends AbstractExecutorService {
+    private val semaphore: Semaphore = new Semaphore(permits)
+
+    override def execute(runnable: Runnable): Unit =
+      delegate.execute(() => {
+        semaphore.acquire()
+        try {
+          runnable.run()
+        } finally {
+          semaphore.release()
+        }
+      })
+
+    override def shutdown(): Unit = delegate.shutdown()
+
+    override def shutdownNow(): JList[Runnable] = delegate.shutdownNow()
+
+    override def isShutdown: Boolean = delegate.isShutdown
+
+    override def isTerminated: Boolean = delegate.isTerminated
+
+    override def awaitTermination(timeout: Long, unit: TimeUnit): Boolean = delegate.awaitTermination(timeout, unit)
+  }
+}
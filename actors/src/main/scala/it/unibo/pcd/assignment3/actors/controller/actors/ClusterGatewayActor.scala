@@ -0,0 +1,113 @@
+package it.unibo.pcd.assignment3.actors.controller.actors
+
+import akka.actor.typed.{ActorRef, Behavior, Terminated}
+import akka.actor.typed.receptionist.{Receptionist, ServiceKey}
+import akka.actor.typed.scaladsl.{ActorContext, Behaviors}
+import it.unibo.pcd.assignment3.actors.AnyOps.AnyOps
+import it.unibo.pcd.assignment3.actors.controller.actors.Command._
+import it.unibo.pcd.assignment3.actors.model.entities.FilePath
+
+/** The actor on the seed node of a cluster which lets the worker nodes join the computation. It is found by the worker nodes
+  * through the receptionist and it replies to each of them with the PathCoordinator actor, to which they register their
+  * PathFilter actors, with the global Reducer actor, to which they send their
+  * [[it.unibo.pcd.assignment3.actors.model.entities.Update]]s, and with the [[FilePath]] of the stopwords file.
+  *
+  * It stands between the PathCoordinator actor and the DocumentCoordinator actor of the seed node, so that, when the
+  * PathCoordinator actor passes its [[PoisonPill]], it is passed both to the DocumentCoordinator actor and to every worker node
+  * which has joined. From then on no more worker nodes can join, because there are no more documents to dispatch to them. It
+  * tells the root actor it is ready when the minimum number of worker nodes has joined, so that the computation starts only
+  * then. It watches every worker node which has joined and, if one stops before its Reducer actor has told the global Reducer
+  * actor it is done, because it has crashed or it has left the cluster, it tells the global Reducer actor not to wait for it.
+  */
+object ClusterGatewayActor {
+
+  /** The [[ServiceKey]] under which the ClusterGateway actor is registered to the receptionist. */
+  val serviceKey: ServiceKey[Command] = ServiceKey[Command]("cluster_gateway")
+
+  /** Returns the behavior of a ClusterGateway actor.
+    * @param root
+    *   the root actor of the system
+    * @param documentCoordinator
+    *   the DocumentCoordinator actor of the seed node, the next one in the data transformation chain
+    * @param reducer
+    *   the global Reducer actor, to which the worker nodes send their
+    *   [[it.unibo.pcd.assignment3.actors.model.entities.Update]]s
+    * @param stopwordsFile
+    *   the [[FilePath]] of the file containing the [[it.unibo.pcd.assignment3.actors.model.entities.StopwordsSet]]
+    * @param minNodes
+    *   the number of worker nodes which must have joined before the computation starts
+    * @return
+    *   the behavior of a ClusterGateway actor
+    */
+  def apply(
+    root: ActorRef[Command],
+    documentCoordinator: ActorRef[Command],
+    reducer: ActorRef[Command],
+    stopwordsFile: FilePath,
+    minNodes: Int
+  ): Behavior[Command] =
+    Behaviors.receive { (c, m) =>
+      m match {
+        case PathCoordinatorCommand(p) =>
+          c.system.receptionist ! Receptionist.Register(serviceKey, c.self)
+          if (minNodes <= 0) {
+            root ! Ready
+          }
+          main(root, documentCoordinator, reducer, p, stopwordsFile, minNodes, Set.empty[ActorRef[Command]])
+        case _ => Behaviors.unhandled
+      }
+    }
+
+  /* The main state of a ClusterGateway actor behavior, in which the worker nodes can join the computation. */
+  private def main(
+    root: ActorRef[Command],
+    documentCoordinator: ActorRef[Command],
+    reducer: ActorRef[Command],
+    pathCoordinator: ActorRef[Command],
+    stopwordsFile: FilePath,
+    minNodes: Int,
+    nodes: Set[ActorRef[Command]]
+  ): Behavior[Command] =
+    Behaviors.receive { (c, m) =>
+      m match {
+        case JoinRequest(n) if nodes.contains(n) => Behaviors.same
+        case JoinRequest(n) =>
+          c.log.info(s"The node ${n.path.address} has joined the computation")
+          c.watch(n)
+          reducer ! NodeJoinedCommand(n)
+          n ! Joined(pathCoordinator, reducer, stopwordsFile.path)
+          if (nodes.size + 1 === minNodes) {
+            root ! Ready
+          }
+          main(root, documentCoordinator, reducer, pathCoordinator, stopwordsFile, minNodes, nodes + n)
+        case PoisonPill =>
+          documentCoordinator ! PoisonPill
+          nodes.foreach(_ ! PoisonPill)
+          closed(reducer)
+        case _ => Behaviors.unhandled
+      }
+    }.receiveSignal { case (c, Terminated(n)) =>
+      left(c, reducer, n.unsafeUpcast[Command])
+      main(root, documentCoordinator, reducer, pathCoordinator, stopwordsFile, minNodes, nodes.filterNot(_ === n))
+    }
+
+  /* The state of a ClusterGateway actor behavior in which the worker nodes can no longer join the computation. */
+  private def closed(reducer: ActorRef[Command]): Behavior[Command] =
+    Behaviors.receiveMessage[Command] {
+      case JoinRequest(n) =>
+        n ! PoisonPill
+        Behaviors.same
+      case _ => Behaviors.unhandled
+    }.receiveSignal { case (c, Terminated(n)) =>
+      left(c, reducer, n.unsafeUpcast[Command])
+      Behaviors.same
+    }
+
+  /* Tells the global Reducer actor that the given worker node has stopped, which has no effect if it had already told it that
+   * it was done.
+   */
+  private def left(context: ActorContext[Command], reducer: ActorRef[Command], node: ActorRef[Command]): Unit = {
+    context.log.info(s"The node ${node.path.address} has stopped")
+    reducer ! NodeLeftCommand(node)
+  }
+}
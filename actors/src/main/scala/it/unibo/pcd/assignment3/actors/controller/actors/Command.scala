@@ -2,6 +2,7 @@ package it.unibo.pcd.assignment3.actors.controller.actors
 
 import akka.actor.typed.ActorRef
 import it.unibo.pcd.assignment3.actors.model.entities._
+import it.unibo.pcd.assignment3.actors.model.tasks.FilterTaskType
 import org.apache.pdfbox.pdmodel.PDDocument
 
 import java.nio.file.Path
@@ -16,12 +17,15 @@ sealed trait Command
 /** Companion object to the [[Command]] trait, containing all of its possible instances. */
 object Command {
 
+  /** A [[Command]] which can be sent to an actor on another node of a cluster, being serialized by the [[CommandSerializer]]. */
+  sealed trait SerializableCommand extends Command
+
   /** A [[Command]] for wrapping the content of a [[FilePath]], a [[Path]] to a file.
     *
     * @param path
     *   the [[Path]] to a file this [[Command]] has to wrap
     */
-  final case class FilePathCommand(path: Path) extends Command
+  final case class FilePathCommand(path: Path) extends SerializableCommand
 
   /** A [[Command]] for receiving a [[StopwordsSet]] along with the sender of the [[Command]] itself.
     *
@@ -32,29 +36,127 @@ object Command {
     */
   final case class StopwordsSetCommand(stopwordsSet: StopwordsSet, replyTo: ActorRef[Command]) extends Command
 
-  /** A [[Command]] for wrapping the content of a [[Document]], a document as specified by the Apache PDFBox library.
+  /** A [[Command]] for wrapping the content of a [[Document]], a document as specified by the Apache PDFBox library and the range
+    * of its pages to be processed.
     *
     * @param document
     *   the Apache PDFBox document this [[Command]] has to wrap
+    * @param path
+    *   the [[Path]] of the file from which the document has been loaded
+    * @param firstPage
+    *   the number of the first page of the range to be processed, starting from 1
+    * @param lastPage
+    *   the number of the last page of the range to be processed, included
+    * @param reservation
+    *   the [[Reservation]] of the share of the memory budget of the open documents held by the document, released when it is
+    *   closed
     */
-  final case class DocumentCommand(document: PDDocument) extends Command
+  final case class DocumentCommand(document: PDDocument, path: Path, firstPage: Int, lastPage: Int, reservation: Reservation)
+    extends Command
 
-  /** A [[Command]] for wrapping the content of a [[Page]], a [[String]] representing its textual content.
+  /** A [[Command]] for wrapping the content of a [[Page]], a [[String]] representing its textual content and its [[Origin]], if
+    * any.
     *
     * @param text
     *   the [[String]] this command has to wrap
+    * @param documentPath
+    *   the [[Path]] of the document from which the page has been extracted, if any
+    * @param documentPages
+    *   the total number of pages of the document from which the page has been extracted, 0 if there is none
+    */
+  final case class PageCommand(text: String, documentPath: Option[Path], documentPages: Int) extends Command
+
+  /** A [[Command]] for wrapping the content of an [[Update]], the ids of the words found associated with their frequencies, as
+    * two parallel arrays of primitive values, and the number of words processed for each page.
+    *
+    * @param words
+    *   the ids of the words found, as assigned by the shared [[WordDictionary]], this [[Command]] has to wrap
+    * @param counts
+    *   the frequencies of the words found, each one at the same position as the id of its word, this [[Command]] has to wrap
+    * @param processedWords
+    *   the number of words processed this [[Command]] has to wrap
     */
-  final case class PageCommand(text: String) extends Command
+  final case class UpdateCommand(words: Array[Int], counts: Array[Long], processedWords: Long) extends SerializableCommand
 
-  /** A [[Command]] for wrapping the content of an [[Update]], a [[Map]] associating each word found to its frequency and the
-    * number of words processed for each page.
+  /** A [[Command]] for wrapping the content of [[WordCounts]], the words found in a single page associated with their
+    * frequencies, as two parallel arrays, and the number of words processed in the page.
     *
-    * @param frequencies
-    *   the [[Map]] associating each word found to its frequency this [[Command]] has to wrap
+    * @param words
+    *   the words found this [[Command]] has to wrap
+    * @param counts
+    *   the frequencies of the words found, each one at the same position as its word, this [[Command]] has to wrap
     * @param processedWords
     *   the number of words processed this [[Command]] has to wrap
     */
-  final case class UpdateCommand(frequencies: Map[String, Long], processedWords: Long) extends Command
+  final case class WordCountsCommand(words: Array[String], counts: Array[Long], processedWords: Long) extends Command
+
+  /** A [[Command]] for handing over a [[WordSketch]] summarizing the words of many pages, which is no more used by its sender.
+    *
+    * @param sketch
+    *   the [[WordSketch]] this [[Command]] has to hand over
+    */
+  final case class SketchCommand(sketch: WordSketch) extends Command
+
+  /** A [[Command]] for wrapping the content of a [[DocumentKey]], the key identifying the content of the file of a document.
+    *
+    * @param path
+    *   the [[Path]] of the file of the document
+    * @param size
+    *   the size in bytes of the file of the document
+    * @param lastModified
+    *   the last modification time of the file of the document, in milliseconds since the epoch
+    * @param contentHash
+    *   the hash of the content of the file of the document, if it has been computed
+    */
+  final case class DocumentKeyCommand(path: Path, size: Long, lastModified: Long, contentHash: Option[Long]) extends Command
+
+  /** A [[Command]] for wrapping an [[Update]] produced from some of the pages of a document, along with the information needed
+    * for attributing it to the document itself.
+    *
+    * @param path
+    *   the [[Path]] of the document from which the pages have been extracted
+    * @param pages
+    *   the total number of pages of the document from which the pages have been extracted
+    * @param counted
+    *   the number of pages from which the [[Update]] has been produced
+    * @param words
+    *   the ids of the words found in the pages, as assigned by the shared [[WordDictionary]]
+    * @param counts
+    *   the frequencies of the words found in the pages, each one at the same position as the id of its word
+    * @param processedWords
+    *   the number of words processed in the pages
+    */
+  final case class DocumentUpdateCommand(
+    path: Path,
+    pages: Int,
+    counted: Int,
+    words: Array[Int],
+    counts: Array[Long],
+    processedWords: Long
+  ) extends Command
+
+  /** A [[Command]] for telling that a document could not be processed, because it could not be loaded, it has no pages or its
+    * pages could not be extracted.
+    *
+    * @param path
+    *   the [[Path]] of the document which could not be processed
+    */
+  final case class DocumentDiscardedCommand(path: Path) extends Command
+
+  /** A [[Command]] for telling that an event has happened to a file in a watched directory.
+    *
+    * @param path
+    *   the [[Path]] of the file to which the event has happened
+    */
+  final case class FileEventCommand(path: Path) extends Command
+
+  /** A [[Command]] for telling that a file in a watched directory has changed and no other event has happened to it since then
+    * for a while.
+    *
+    * @param path
+    *   the [[Path]] of the file which has changed
+    */
+  final case class FileChangedCommand(path: Path) extends Command
 
   /** A command to be sent as a response to a [[StopwordsSetCommand]] containing the reference to the actor sending it.
     *
@@ -63,10 +165,110 @@ object Command {
     */
   final case class StopwordsAck(sentFrom: ActorRef[Command]) extends Command
 
+  /** A [[Command]] for asking a coordinator actor to report the load of its stage of the data transformation chain.
+    *
+    * @param replyTo
+    *   the actor to which the load has to be reported
+    */
+  final case class LoadRequest(replyTo: ActorRef[Command]) extends Command
+
+  /** A [[Command]] for reporting the load of a stage of the data transformation chain, as seen by its coordinator actor.
+    *
+    * @param coordinator
+    *   the coordinator actor of the stage
+    * @param pendingItems
+    *   the number of items waiting into the coordinator actor for being dispatched to a worker actor
+    * @param workers
+    *   the number of worker actors registered to the coordinator actor
+    * @param inFlightItems
+    *   the number of items dispatched to the worker actors and not yet processed
+    * @param idleWorkers
+    *   the number of worker actors without any item to process
+    * @param closed
+    *   whether the stage has been closed or not, so that no more items will be dispatched into it
+    */
+  final case class StageLoadCommand(
+    coordinator: ActorRef[Command],
+    pendingItems: Int,
+    workers: Int,
+    inFlightItems: Int,
+    idleWorkers: Int,
+    closed: Boolean
+  ) extends Command
+
+  /** A [[Command]] for asking a coordinator actor to release one of its idle worker actors to another stage of the data
+    * transformation chain, if it has any.
+    *
+    * @param stage
+    *   the [[FilterTaskType]] of the stage to which the worker actor has to be moved
+    */
+  final case class ReleaseWorkerCommand(stage: FilterTaskType.Value) extends Command
+
+  /** A [[Command]] for telling a worker actor to change its behavior into the one of the worker actors of another stage of the
+    * data transformation chain, registering to its coordinator actor.
+    *
+    * @param stage
+    *   the [[FilterTaskType]] of the stage into which the worker actor has to move
+    */
+  final case class ChangeStageCommand(stage: FilterTaskType.Value) extends SerializableCommand
+
+  /** A [[Command]] for asking the ClusterGateway actor on the seed node of a cluster to let a worker node join the computation.
+    *
+    * @param node
+    *   the Node actor of the worker node asking to join
+    */
+  final case class JoinRequest(node: ActorRef[Command]) extends SerializableCommand
+
+  /** A [[Command]] for telling the Node actor of a worker node that it has joined the computation, along with what it needs for
+    * taking part in it.
+    *
+    * @param pathCoordinator
+    *   the PathCoordinator actor on the seed node, to which the PathFilter actors of the worker node have to register
+    * @param reducer
+    *   the global Reducer actor on the seed node, to which the [[Update]]s of the worker node have to be sent
+    * @param stopwordsFile
+    *   the [[Path]] of the file containing the [[StopwordsSet]]
+    */
+  final case class Joined(pathCoordinator: ActorRef[Command], reducer: ActorRef[Command], stopwordsFile: Path)
+    extends SerializableCommand
+
+  /** A [[Command]] for telling the ClusterGateway actor which is the PathCoordinator actor to which the worker nodes joining the
+    * computation have to register their PathFilter actors.
+    *
+    * @param pathCoordinator
+    *   the PathCoordinator actor on the seed node
+    */
+  final case class PathCoordinatorCommand(pathCoordinator: ActorRef[Command]) extends Command
+
+  /** A [[Command]] for telling a Reducer actor that a worker node has joined the computation, so that it has to wait for one
+    * more [[PoisonPill]] before stopping.
+    *
+    * @param node
+    *   the Node actor of the worker node which has joined
+    */
+  final case class NodeJoinedCommand(node: ActorRef[Command]) extends Command
+
+  /** A [[Command]] for telling the global Reducer actor that a worker node no longer takes part in the computation, either
+    * because its Reducer actor is done or because it has stopped before, so that the global Reducer actor no longer waits for
+    * it.
+    *
+    * @param node
+    *   the Node actor of the worker node which has left
+    */
+  final case class NodeLeftCommand(node: ActorRef[Command]) extends SerializableCommand
+
+  /** A [[Command]] for telling the Node actor of a worker node that the ClusterGateway actors reachable through the cluster have
+    * changed.
+    *
+    * @param gateways
+    *   the ClusterGateway actors now reachable
+    */
+  final case class GatewaysCommand(gateways: Set[ActorRef[Command]]) extends Command
+
   /** A command for telling an actor that no more input resources will be sent from now on and, when it has completed its
     * operations, it should cease its execution.
     */
-  case object PoisonPill extends Command
+  case object PoisonPill extends SerializableCommand
 
   /** A command to be used by a worker actor to tell its coordinator that is now available for executing a new job, being this the
     * first time or because it has completed its current task.
@@ -74,11 +276,16 @@ object Command {
     * @param actor
     *   the actor now available sending this command
     */
-  final case class Available(actor: ActorRef[Command]) extends Command
+  final case class Available(actor: ActorRef[Command]) extends SerializableCommand
 
   /** A command to be self-sent to an actor when the associated timer has expired. */
   case object TimerExpired extends Command
 
+  /** A command to be self-sent to an actor when a write it has started in the background has completed, whether successfully or
+    * not.
+    */
+  case object WriteCompleted extends Command
+
   /** A command to be sent when an actor is now ready to do something, for whatever reason. */
-  case object Ready extends Command
+  case object Ready extends SerializableCommand
 }
@@ -0,0 +1,109 @@
+package it.unibo.pcd.assignment3.actors.controller.actors
+
+import akka.actor.typed.{ActorRef, ActorRefResolver}
+import akka.actor.typed.scaladsl.adapter.ClassicActorSystemOps
+import akka.actor.ExtendedActorSystem
+import akka.serialization.SerializerWithStringManifest
+import it.unibo.pcd.assignment3.actors.controller.actors.Command._
+import it.unibo.pcd.assignment3.actors.model.entities.WordDictionary
+import it.unibo.pcd.assignment3.actors.model.tasks.FilterTaskType
+
+import java.io._
+import java.nio.file.Paths
+
+/** The serializer of the [[Command]]s which can be sent to an actor on another node of a cluster, the [[SerializableCommand]]s.
+  * Each [[Command]] is written in a compact binary form, identified by a manifest of a single character, so that the
+  * [[UpdateCommand]]s sent between the nodes are not larger than needed and the [[Command]]s which are objects are read back as
+  * the same objects. The actors are written through their serialization format given by the [[ActorRefResolver]], while the
+  * words of the [[UpdateCommand]]s are written as they are, because the ids of the words are assigned by the [[WordDictionary]]
+  * of each node and have no meaning on the others.
+  *
+  * It is instantiated by the actor system, as configured in the "akka.actor.serializers" section of the configuration.
+  *
+  * @param system
+  *   the actor system using this serializer
+  */
+final class CommandSerializer(system: ExtendedActorSystem) extends SerializerWithStringManifest {
+  private val resolver: ActorRefResolver = ActorRefResolver(system.toTyped)
+  private def dictionary: WordDictionary = WordDictionary.shared
+
+  override val identifier: Int = 74_321_917
+
+  override def manifest(o: AnyRef): String =
+    o match {
+      case _: FilePathCommand    => "F"
+      case _: UpdateCommand      => "U"
+      case _: Available          => "A"
+      case _: ChangeStageCommand => "C"
+      case _: JoinRequest        => "R"
+      case _: Joined             => "J"
+      case _: NodeLeftCommand    => "L"
+      case Ready                 => "Y"
+      case PoisonPill            => "P"
+      case _                     => unsupported(o.getClass.getName)
+    }
+
+  override def toBinary(o: AnyRef): Array[Byte] = {
+    val bytes: ByteArrayOutputStream = new ByteArrayOutputStream()
+    val output: DataOutputStream = new DataOutputStream(bytes)
+    o match {
+      case FilePathCommand(p) => output.writeUTF(p.toString)
+      case UpdateCommand(i, n, w) =>
+        output.writeLong(w)
+        output.writeInt(i.length)
+        i.indices.foreach(j => {
+          output.writeUTF(dictionary.word(i(j)))
+          output.writeLong(n(j))
+        })
+      case Available(a)          => writeActor(output, a)
+      case ChangeStageCommand(s) => output.writeInt(s.id)
+      case JoinRequest(n)        => writeActor(output, n)
+      case Joined(p, r, s) =>
+        writeActor(output, p)
+        writeActor(output, r)
+        output.writeUTF(s.toString)
+      case NodeLeftCommand(n) => writeActor(output, n)
+      case Ready | PoisonPill =>
+      case _                  => unsupported(o.getClass.getName)
+    }
+    output.flush()
+    bytes.toByteArray
+  }
+
+  override def fromBinary(bytes: Array[Byte], manifest: String): AnyRef = {
+    val input: DataInputStream = new DataInputStream(new ByteArrayInputStream(bytes))
+    manifest match {
+      case "F" => FilePathCommand(Paths.get(input.readUTF()))
+      case "U" =>
+        val processedWords: Long = input.readLong()
+        val size: Int = input.readInt()
+        val words: Array[Int] = new Array[Int](size)
+        val counts: Array[Long] = new Array[Long](size)
+        words.indices.foreach(j => {
+          words(j) = dictionary.id(input.readUTF())
+          counts(j) = input.readLong()
+        })
+        UpdateCommand(words, counts, processedWords)
+      case "A" => Available(readActor(input))
+      case "C" => ChangeStageCommand(FilterTaskType(input.readInt()))
+      case "R" => JoinRequest(readActor(input))
+      case "J" => Joined(readActor(input), readActor(input), Paths.get(input.readUTF()))
+      case "L" => NodeLeftCommand(readActor(input))
+      case "Y" => Ready
+      case "P" => PoisonPill
+      case _   => unsupported(manifest)
+    }
+  }
+
+  /* Writes the given actor through its serialization format. */
+  private def writeActor(output: DataOutput, actor: ActorRef[Command]): Unit =
+    output.writeUTF(resolver.toSerializationFormat(actor))
+
+  /* Reads an actor written through its serialization format. */
+  private def readActor(input: DataInput): ActorRef[Command] = resolver.resolveActorRef[Command](input.readUTF())
+
+  /* Signals that the given class or manifest does not belong to a Command which can be serialized, as the system expects. */
+  @SuppressWarnings(Array("org.wartremover.warts.Nothing", "org.wartremover.warts.Throw"))
+  private def unsupported(name: String): Nothing =
+    throw new NotSerializableException(s"The command $name cannot be serialized by ${getClass.getName}")
+}
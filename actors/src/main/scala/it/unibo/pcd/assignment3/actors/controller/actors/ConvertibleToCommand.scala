@@ -77,9 +77,11 @@ object ConvertibleToCommand {
     */
   implicit object ConvertibleToCommandDocument extends ConvertibleToCommand[Document, DocumentCommand] {
 
-    override def to(a: Document): DocumentCommand = DocumentCommand(a.document)
+    override def to(a: Document): DocumentCommand =
+      DocumentCommand(a.document, a.path.path, a.firstPage, a.lastPage, a.reservation)
 
-    override def from(b: DocumentCommand): Document = Document(b.document)
+    override def from(b: DocumentCommand): Document =
+      Document(b.document, FilePath(b.path), b.firstPage, b.lastPage, b.reservation)
   }
 
   /** Instance of the [[ConvertibleToCommand]] type-class for converting a [[FilePath]] into a [[FilePathCommand]] and vice versa.
@@ -94,17 +96,38 @@ object ConvertibleToCommand {
   /** Instance of the [[ConvertibleToCommand]] type-class for converting a [[Page]] into a [[PageCommand]] and vice versa. */
   implicit object ConvertibleToCommandPage extends ConvertibleToCommand[Page, PageCommand] {
 
-    override def to(a: Page): PageCommand = PageCommand(a.text)
+    override def to(a: Page): PageCommand = PageCommand(a.text, a.origin.map(_.path.path), a.origin.fold(0)(_.pages))
 
-    override def from(b: PageCommand): Page = Page(b.text)
+    override def from(b: PageCommand): Page =
+      b.documentPath.fold(Page(b.text))(p => Page(b.text, Origin(FilePath(p), b.documentPages)))
+  }
+
+  /** Instance of the [[ConvertibleToCommand]] type-class for converting a [[DocumentKey]] into a [[DocumentKeyCommand]] and vice
+    * versa.
+    */
+  implicit object ConvertibleToCommandDocumentKey extends ConvertibleToCommand[DocumentKey, DocumentKeyCommand] {
+
+    override def to(a: DocumentKey): DocumentKeyCommand = DocumentKeyCommand(a.path.path, a.size, a.lastModified, a.contentHash)
+
+    override def from(b: DocumentKeyCommand): DocumentKey = DocumentKey(FilePath(b.path), b.size, b.lastModified, b.contentHash)
   }
 
   /** Instance of the [[ConvertibleToCommand]] type-class for converting an [[Update]] into an [[UpdateCommand]] and vice versa.
     */
   implicit object ConvertibleToCommandUpdate extends ConvertibleToCommand[Update, UpdateCommand] {
 
-    override def to(a: Update): UpdateCommand = UpdateCommand(a.frequencies, a.processedWords)
+    override def to(a: Update): UpdateCommand = UpdateCommand(a.words, a.counts, a.processedWords)
+
+    override def from(b: UpdateCommand): Update = Update(b.words, b.counts, b.processedWords)
+  }
+
+  /** Instance of the [[ConvertibleToCommand]] type-class for converting [[WordCounts]] into a [[WordCountsCommand]] and vice
+    * versa.
+    */
+  implicit object ConvertibleToCommandWordCounts extends ConvertibleToCommand[WordCounts, WordCountsCommand] {
+
+    override def to(a: WordCounts): WordCountsCommand = WordCountsCommand(a.words, a.counts, a.processedWords)
 
-    override def from(b: UpdateCommand): Update = Update(b.frequencies, b.processedWords)
+    override def from(b: WordCountsCommand): WordCounts = WordCounts(b.words, b.counts, b.processedWords)
   }
 }
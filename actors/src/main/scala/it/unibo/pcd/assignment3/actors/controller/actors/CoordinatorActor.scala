@@ -1,15 +1,27 @@
 package it.unibo.pcd.assignment3.actors.controller.actors
 
-import akka.actor.typed.{ActorRef, Behavior}
-import akka.actor.typed.scaladsl.Behaviors
+import akka.actor.typed.{ActorRef, Behavior, Terminated}
+import akka.actor.typed.scaladsl.{ActorContext, Behaviors}
 import it.unibo.pcd.assignment3.actors.controller.actors.Command._
 import it.unibo.pcd.assignment3.actors.model.entities.StopwordsSet
 import it.unibo.pcd.assignment3.actors.AnyOps.AnyOps
+import it.unibo.pcd.assignment3.actors.controller.{StageMetrics, Throttle}
+import it.unibo.pcd.assignment3.actors.model.tasks.FilterTaskType
 
 import scala.reflect.ClassTag
 
 /** An actor which coordinates the distribution of the workload between the workers that registered to it and manage their
-  * lifecycle.
+  * lifecycle. The workload is distributed through a [[WorkerPool]], so that each worker receives only as many items as its
+  * credits allow and the remaining ones wait into the coordinator for the first worker which becomes available, instead of
+  * waiting into the mailbox of a busy worker. A poisoned coordinator dispatches all of its remaining items before closing.
+  *
+  * A coordinator reports the load of its stage when asked and, when asked to release one of its workers, moves one of its idle
+  * workers to another stage, unregistering it so that no more items are dispatched to it.
+  *
+  * The workers on other nodes of a cluster, which can register only to the generic coordinators, are registered as tracked
+  * workers of the [[WorkerPool]] and watched, so that when one of them stops without having been poisoned, because its node has
+  * crashed or has left the cluster, it is unregistered and its item in flight is dispatched again to another worker. This holds
+  * also after the coordinator has been poisoned, as long as some of its workers are still running.
   */
 object CoordinatorActor {
 
@@ -18,69 +30,153 @@ object CoordinatorActor {
     *   the root actor of the system
     * @param nextCoordinator
     *   the next coordinator actor in the data transformation chain
+    * @param credits
+    *   the number of items each worker actor can process at the same time
+    * @param metrics
+    *   the [[StageMetrics]] into which the metrics of the stage of the coordinator are recorded
     * @tparam A
     *   the subtype of [[Command]] containing the data to be supplied as input to the worker actors
     * @return
     *   the behavior of a generic coordinator actor
     */
-  def apply[A <: Command: ClassTag](root: ActorRef[Command], nextCoordinator: ActorRef[Command]): Behavior[Command] =
+  def apply[A <: Command: ClassTag](
+    root: ActorRef[Command],
+    nextCoordinator: ActorRef[Command],
+    credits: Int,
+    metrics: StageMetrics
+  ): Behavior[Command] =
     Behaviors.setup { _ =>
       root ! Ready
-      main(nextCoordinator, Map.empty[ActorRef[Command], Int])
+      main(nextCoordinator, WorkerPool(credits, metrics), poisoned = false)
     }
 
   /* The main state of a generic coordinator actor behavior. */
   private def main[A <: Command: ClassTag](
     nextCoordinator: ActorRef[Command],
-    workers: Map[ActorRef[Command], Int]
+    pool: WorkerPool,
+    poisoned: Boolean
   ): Behavior[Command] =
-    Behaviors.receiveMessage {
-      case Available(a) =>
-        workers
-          .get(a)
-          .map(n => main(nextCoordinator, workers + (a -> (n - 1))))
-          .getOrElse {
+    Behaviors
+      .receive[Command] { (c, m) =>
+        m match {
+          case Available(a) if pool.workers.contains(a) =>
+            dispatch(c, nextCoordinator, pool.completed(a), poisoned, awaitTermination = false)(
+              main(nextCoordinator, _, poisoned)
+            )
+          case Available(a) if a.path.address.hasGlobalScope =>
+            c.watch(a)
             a ! Ready
-            main(nextCoordinator, workers + (a -> 0))
-          }
-      case PoisonPill => closed(nextCoordinator, workers)
-      case a: A =>
-        workers
-          .minByOption(_._2)
-          .map(_._1)
-          .map(w => {
-            w ! a
-            main(nextCoordinator, workers + (w -> (workers(w) + 1)))
-          })
-          .getOrElse(Behaviors.unhandled)
-      case _ => Behaviors.unhandled
+            dispatch(c, nextCoordinator, pool.registeredTracked(a), poisoned, awaitTermination = false)(
+              main(nextCoordinator, _, poisoned)
+            )
+          case Available(a) =>
+            a ! Ready
+            dispatch(c, nextCoordinator, pool.registered(a), poisoned, awaitTermination = false)(
+              main(nextCoordinator, _, poisoned)
+            )
+          case PoisonPill =>
+            dispatch(c, nextCoordinator, pool, poisoned = true, awaitTermination = false)(
+              main(nextCoordinator, _, poisoned = true)
+            )
+          case a: A =>
+            dispatch(c, nextCoordinator, pool.enqueued(a), poisoned, awaitTermination = false)(main(nextCoordinator, _, poisoned))
+          case LoadRequest(r) =>
+            r ! stageLoad(c.self, pool)
+            Behaviors.same
+          case ReleaseWorkerCommand(s) => released(pool, s).fold(Behaviors.same[Command])(main(nextCoordinator, _, poisoned))
+          case _                       => Behaviors.unhandled
+        }
+      }
+      .receiveSignal {
+        case (c, Terminated(a)) if pool.workers.contains(a.unsafeUpcast[Command]) =>
+          c.log.warn(s"The worker ${a.path} has stopped unexpectedly, so its item in flight will be dispatched again")
+          dispatch(c, nextCoordinator, pool.failed(a.unsafeUpcast[Command]), poisoned, awaitTermination = false)(
+            main(nextCoordinator, _, poisoned)
+          )
+        case (_, Terminated(_)) => Behaviors.same
+      }
+
+  /* Returns the load of the stage of the coordinator with the given reference and the given pool. */
+  private def stageLoad(coordinator: ActorRef[Command], pool: WorkerPool): StageLoadCommand =
+    StageLoadCommand(
+      coordinator,
+      pool.pendingItems,
+      pool.workers.size,
+      pool.workers.values.sum,
+      pool.workers.count(_._2 === 0),
+      closed = false
+    )
+
+  /* Moves one of the idle workers of the given pool to the given stage, returning the pool without it, if there is one. */
+  private def released(pool: WorkerPool, stage: FilterTaskType.Value): Option[WorkerPool] =
+    pool
+      .idleWorker
+      .map(w => {
+        w ! ChangeStageCommand(stage)
+        pool.unregistered(w)
+      })
+
+  /* Dispatches the queued items of the given pool to its workers, then transitions into the "closed" state if the coordinator has
+   * been poisoned and no items are left, otherwise into the state built from the new pool by the given function.
+   */
+  private def dispatch(
+    context: ActorContext[Command],
+    nextCoordinator: ActorRef[Command],
+    pool: WorkerPool,
+    poisoned: Boolean,
+    awaitTermination: Boolean
+  )(next: WorkerPool => Behavior[Command]): Behavior[Command] = {
+    val dispatchedPool: WorkerPool = pool.dispatched()
+    if (poisoned && !dispatchedPool.hasPending) {
+      closed(context, nextCoordinator, dispatchedPool, awaitTermination)
+    } else {
+      next(dispatchedPool)
     }
+  }
 
   /** Returns the behavior of a PageCoordinator actor.
     * @param root
     *   the root actor of the system
     * @param updateCoordinator
     *   the UpdateCoordinator next in line in the data transformation chain
+    * @param throttle
+    *   the [[Throttle]] to be released each time a page has been processed by a worker, if the producers of the pages are
+    *   throttled
+    * @param credits
+    *   the number of pages each worker actor can process at the same time
+    * @param metrics
+    *   the [[StageMetrics]] into which the metrics of the stage of the coordinator are recorded
     * @return
     *   the behavior of a PageCoordinator actor
     */
-  def pageCoordinator(root: ActorRef[Command], updateCoordinator: ActorRef[Command]): Behavior[Command] = Behaviors.setup { _ =>
+  def pageCoordinator(
+    root: ActorRef[Command],
+    updateCoordinator: ActorRef[Command],
+    throttle: Option[Throttle],
+    credits: Int,
+    metrics: StageMetrics
+  ): Behavior[Command] = Behaviors.setup { _ =>
     root ! Ready
-    awaitStopwords(updateCoordinator, Map.empty[ActorRef[Command], Int])
+    awaitStopwords(updateCoordinator, Map.empty[ActorRef[Command], Int], throttle, WorkerPool(credits, metrics))
   }
 
   /* PageCoordinator behavior for waiting the receipt of the stopwords set and then send it to the workers already registered
    * before the stopwords arrival.
    */
-  private def awaitStopwords(updateCoordinator: ActorRef[Command], workers: Map[ActorRef[Command], Int]): Behavior[Command] =
+  private def awaitStopwords(
+    updateCoordinator: ActorRef[Command],
+    workers: Map[ActorRef[Command], Int],
+    throttle: Option[Throttle],
+    emptyPool: WorkerPool
+  ): Behavior[Command] =
     Behaviors.receive { (c, m) =>
       m match {
         case StopwordsSetCommand(s, a) =>
           workers.keys.foreach(_ ! StopwordsSetCommand(s, c.self))
-          awaitWorkers(updateCoordinator, workers, s, a, workers.size)
+          awaitWorkers(updateCoordinator, workers, s, a, workers.size, throttle, emptyPool)
         case Available(a) =>
           a ! Ready
-          awaitStopwords(updateCoordinator, workers + (a -> 0))
+          awaitStopwords(updateCoordinator, workers + (a -> 0), throttle, emptyPool)
         case _ => Behaviors.unhandled
       }
     }
@@ -93,19 +189,35 @@ object CoordinatorActor {
     workers: Map[ActorRef[Command], Int],
     stopwordsSet: StopwordsSet,
     pathGeneratorActor: ActorRef[Command],
-    remainingWorkers: Int
+    remainingWorkers: Int,
+    throttle: Option[Throttle],
+    emptyPool: WorkerPool
   ): Behavior[Command] =
     Behaviors.receive { (c, m) =>
       m match {
         case StopwordsAck(_) if remainingWorkers > 1 =>
-          awaitWorkers(updateCoordinator, workers, stopwordsSet, pathGeneratorActor, remainingWorkers - 1)
+          awaitWorkers(updateCoordinator, workers, stopwordsSet, pathGeneratorActor, remainingWorkers - 1, throttle, emptyPool)
         case StopwordsAck(_) =>
           pathGeneratorActor ! StopwordsAck(c.self)
-          pageCoordinatorMain(updateCoordinator, workers, stopwordsSet)
+          pageCoordinatorMain(
+            updateCoordinator,
+            workers.keys.foldLeft(emptyPool)(_.registered(_)),
+            stopwordsSet,
+            throttle,
+            poisoned = false
+          )
         case Available(a) =>
           a ! Ready
           a ! StopwordsSetCommand(stopwordsSet, c.self)
-          awaitWorkers(updateCoordinator, workers + (a -> 0), stopwordsSet, pathGeneratorActor, remainingWorkers + 1)
+          awaitWorkers(
+            updateCoordinator,
+            workers + (a -> 0),
+            stopwordsSet,
+            pathGeneratorActor,
+            remainingWorkers + 1,
+            throttle,
+            emptyPool
+          )
         case _ => Behaviors.unhandled
       }
     }
@@ -113,75 +225,132 @@ object CoordinatorActor {
   /* The main state of a PageCoordinator actor behavior. */
   private def pageCoordinatorMain(
     updateCoordinator: ActorRef[Command],
-    workers: Map[ActorRef[Command], Int],
-    stopwordsSet: StopwordsSet
+    pool: WorkerPool,
+    stopwordsSet: StopwordsSet,
+    throttle: Option[Throttle],
+    poisoned: Boolean
   ): Behavior[Command] = Behaviors.receive { (c, m) =>
+    val next: (WorkerPool, Boolean) => Behavior[Command] = (p, q) =>
+      dispatch(c, updateCoordinator, p, q, awaitTermination = true)(
+        pageCoordinatorMain(updateCoordinator, _, stopwordsSet, throttle, q)
+      )
     m match {
+      case Available(a) if pool.workers.contains(a) =>
+        throttle.foreach(_.release())
+        next(pool.completed(a), poisoned)
       case Available(a) =>
-        workers
-          .get(a)
-          .map(n => pageCoordinatorMain(updateCoordinator, workers + (a -> (n - 1)), stopwordsSet))
-          .getOrElse {
-            a ! Ready
-            a ! StopwordsSetCommand(stopwordsSet, c.self)
-            Behaviors.same
-          }
-      case StopwordsAck(a) => pageCoordinatorMain(updateCoordinator, workers + (a -> 0), stopwordsSet)
-      case PoisonPill      => closed(updateCoordinator, workers)
-      case p: PageCommand =>
-        workers
-          .minByOption(_._2)
-          .map(_._1)
-          .map { w =>
-            w ! p
-            pageCoordinatorMain(updateCoordinator, workers + (w -> (workers(w) + 1)), stopwordsSet)
-          }
-          .getOrElse(Behaviors.unhandled)
+        a ! Ready
+        a ! StopwordsSetCommand(stopwordsSet, c.self)
+        Behaviors.same
+      case StopwordsAck(a) => next(pool.registered(a), poisoned)
+      case PoisonPill      => next(pool, true)
+      case p: PageCommand  => next(pool.enqueued(p), poisoned)
+      case LoadRequest(r) =>
+        r ! stageLoad(c.self, pool)
+        Behaviors.same
+      case ReleaseWorkerCommand(s) =>
+        released(pool, s).fold(Behaviors.same[Command])(
+          pageCoordinatorMain(updateCoordinator, _, stopwordsSet, throttle, poisoned)
+        )
       case _ => Behaviors.unhandled
     }
   }
 
   /* The behavior state in which all coordinators transition to when they receive a PoisonPill message, dedicated to shut down
    * all worker actors and the pass the PoisonPill to the next coordinator actor in the line when all workers have been killed.
+   * If the termination of the workers has to be awaited, the PoisonPill is passed only when all of them have stopped, so that
+   * the commands they send to the next coordinator while stopping are received before it. The pool keeps only the workers which
+   * have not been poisoned yet, because they still have items in flight.
+   */
+  private def closed(
+    context: ActorContext[Command],
+    nextCoordinator: ActorRef[Command],
+    pool: WorkerPool,
+    awaitTermination: Boolean
+  ): Behavior[Command] = {
+    val actorsToBePoisoned: Iterable[ActorRef[Command]] = pool.workers.filter(e => e._2 === 0).keys
+    actorsToBePoisoned.foreach(poison(context, _, awaitTermination))
+    onClosed(
+      context,
+      nextCoordinator,
+      actorsToBePoisoned.foldLeft(pool)(_.unregistered(_)),
+      if (awaitTermination) actorsToBePoisoned.toSet else Set.empty[ActorRef[Command]],
+      awaitTermination
+    )
+  }
+
+  /* Sends the PoisonPill to the given worker, watching it if its termination has to be awaited. */
+  private def poison(context: ActorContext[Command], worker: ActorRef[Command], awaitTermination: Boolean): Unit = {
+    if (awaitTermination) {
+      context.watch(worker)
+    }
+    worker ! PoisonPill
+  }
+
+  /* Passes the PoisonPill to the next coordinator if all workers have been poisoned and, if it has to be awaited, have stopped,
+   * then waits for the next Available commands. The items still queued at that point, which have been dispatched again after
+   * the failure of a worker when no other worker was left, are lost.
    */
-  private def closed(nextCoordinator: ActorRef[Command], workers: Map[ActorRef[Command], Int]): Behavior[Command] = {
-    val actorsToBePoisoned: Iterable[ActorRef[Command]] = workers.filter(e => e._2 === 0).keys
-    actorsToBePoisoned.foreach(_ ! PoisonPill)
-    if (actorsToBePoisoned.size === workers.size) {
+  private def onClosed(
+    context: ActorContext[Command],
+    nextCoordinator: ActorRef[Command],
+    pool: WorkerPool,
+    stoppingWorkers: Set[ActorRef[Command]],
+    awaitTermination: Boolean
+  ): Behavior[Command] = {
+    if (pool.workers.isEmpty && stoppingWorkers.isEmpty) {
+      if (pool.hasPending) {
+        context.log.warn(s"${pool.pendingItems} items could not be dispatched again, because no worker is left")
+      }
       nextCoordinator ! PoisonPill
     }
-    onClosedAvailableReceived(nextCoordinator, workers -- actorsToBePoisoned)
+    onClosedAvailableReceived(nextCoordinator, pool, stoppingWorkers, awaitTermination)
   }
 
   /* The sub-state of the "closed" behavior state in which the coordinator actors awaits for new Available commands from its
    * worker actors, irregardless if they have already been registered before entering the "closed" state or are trying to
-   * registered with this very command.
+   * registered with this very command, and for the termination of the workers which have been poisoned, if it has to be awaited.
+   * A worker which stops unexpectedly while still having an item in flight is unregistered and its item is dispatched again to
+   * the first worker with credits left, which is poisoned only after having completed all of its items.
    */
   private def onClosedAvailableReceived(
     nextCoordinator: ActorRef[Command],
-    workers: Map[ActorRef[Command], Int]
+    pool: WorkerPool,
+    stoppingWorkers: Set[ActorRef[Command]],
+    awaitTermination: Boolean
   ): Behavior[Command] =
-    Behaviors.receiveMessage {
-      case Available(a) =>
-        workers
-          .get(a)
-          .map(n =>
-            if (n > 1) {
-              onClosedAvailableReceived(nextCoordinator, workers + (a -> (n - 1)))
+    Behaviors
+      .receive[Command] { (c, m) =>
+        m match {
+          case Available(a) if pool.workers.contains(a) =>
+            val updatedPool: WorkerPool = pool.completed(a).dispatched()
+            if (updatedPool.workers.get(a).exists(_ > 0)) {
+              onClosedAvailableReceived(nextCoordinator, updatedPool, stoppingWorkers, awaitTermination)
             } else {
-              a ! PoisonPill
-              if (workers.size > 1) {
-                onClosedAvailableReceived(nextCoordinator, workers - a)
-              } else {
-                nextCoordinator ! PoisonPill
-                Behaviors.same[Command]
-              }
+              poison(c, a, awaitTermination)
+              onClosed(
+                c,
+                nextCoordinator,
+                updatedPool.unregistered(a),
+                if (awaitTermination) stoppingWorkers + a else stoppingWorkers,
+                awaitTermination
+              )
             }
-          )
-          .getOrElse {
+          case Available(a) =>
             a ! PoisonPill
-            Behaviors.same[Command]
-          }
-      case _ => Behaviors.unhandled
-    }
+            Behaviors.same
+          case LoadRequest(r) =>
+            r ! StageLoadCommand(c.self, pool.pendingItems, pool.workers.size, pool.workers.values.sum, 0, closed = true)
+            Behaviors.same
+          case _ => Behaviors.unhandled
+        }
+      }
+      .receiveSignal {
+        case (c, Terminated(a)) if pool.workers.contains(a.unsafeUpcast[Command]) =>
+          c.log.warn(s"The worker ${a.path} has stopped unexpectedly, so its item in flight will be dispatched again")
+          onClosed(c, nextCoordinator, pool.failed(a.unsafeUpcast[Command]).dispatched(), stoppingWorkers, awaitTermination)
+        case (c, Terminated(a)) if stoppingWorkers.contains(a.unsafeUpcast[Command]) =>
+          onClosed(c, nextCoordinator, pool, stoppingWorkers - a.unsafeUpcast[Command], awaitTermination)
+        case (_, Terminated(_)) => Behaviors.same
+      }
 }
@@ -0,0 +1,451 @@
+package it.unibo.pcd.assignment3.actors.controller.actors
+
+import akka.actor.typed.{ActorRef, Behavior, DispatcherSelector, PostStop}
+import akka.actor.typed.scaladsl.{ActorContext, Behaviors, TimerScheduler}
+import it.unibo.pcd.assignment3.actors.AnyOps.{discard, AnyOps}
+import it.unibo.pcd.assignment3.actors.controller.{Checkpoint, ResultCache}
+import it.unibo.pcd.assignment3.actors.controller.Settings.CheckpointSettings
+import it.unibo.pcd.assignment3.actors.controller.actors.Command._
+import it.unibo.pcd.assignment3.actors.controller.actors.ConvertibleToCommand._
+import it.unibo.pcd.assignment3.actors.model.entities.{DocumentKey, FilePath, Update, UpdateAccumulator}
+import it.unibo.pcd.assignment3.actors.model.tasks.{SingletonTask, StopwordsGeneratorTask}
+
+import java.io.IOException
+import java.nio.file.{FileVisitResult, Files, LinkOption, Path, SimpleFileVisitor, WatchKey, WatchService}
+import java.nio.file.StandardWatchEventKinds.{ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY}
+import java.nio.file.attribute.BasicFileAttributes
+import scala.collection.mutable
+import scala.concurrent.{ExecutionContext, Future}
+import scala.concurrent.duration.FiniteDuration
+import scala.util.{Failure, Try}
+
+/** The actor which stands between the PathGenerator actor and the PathCoordinator actor for keeping track of the documents being
+  * processed, both for caching the results of processing each document into a [[ResultCache]] and for following the changes
+  * to the directory containing the documents.
+  *
+  * For each [[FilePath]] received, if there is a [[ResultCache]] or checkpoints are written, it computes the [[DocumentKey]] of
+  * its document before processing it. If there is a [[ResultCache]], it also looks the [[DocumentKey]] up into it, along with
+  * the fingerprint of the stopwords of the computation: if the document has not changed since it was cached with the same
+  * stopwords, its [[Update]] is sent directly to the UpdateSink actor, otherwise the [[FilePath]] is forwarded to the
+  * PathCoordinator actor. The [[Update]]s produced by the
+  * PageFilterWorker actors for the pages of the forwarded documents are also sent to this actor, already merged by each of them
+  * for the pages of the same document, which merges them again for each document and stores the result into the
+  * [[ResultCache]] once all pages of the document have been processed. The results are stored on the executor and this actor
+  * stops only after all of them have been stored.
+  *
+  * If the directory is watched, along with all of its subdirectories, the computation never ends. This actor remembers the
+  * [[Update]] of each document which has been counted and, when a document is created, modified or deleted, it sends the
+  * opposite of its previous [[Update]] to the UpdateSink actor and then processes the document again, if it still exists. A
+  * document which changes while it is being processed is processed again only after all of its pages have been counted, so that
+  * its [[Update]] is subtracted as a whole. The documents which could not be loaded are reported to this actor by the
+  * PathFilterWorker actors, and the ones whose pages could not be extracted by the DocumentFilterWorker actors, so that they are
+  * no longer considered in processing and their changes are followed too. The [[Update]]s of the pages of such documents which
+  * are received afterwards are ignored.
+  *
+  * If the directory is not watched, the PoisonPill received from the PathGenerator actor is forwarded only after all lookups
+  * have completed, while the one received afterwards, sent by the root actor when the computation is over, stops this actor
+  * once all the [[Update]]s sent to it have been merged.
+  *
+  * If checkpoints are written, this actor also merges the [[Update]]s of all the documents completely processed, starting from
+  * the ones of the [[Checkpoint]] from which the computation has been resumed, if any. At a fixed interval, it takes a
+  * [[Checkpoint]] of them, along with the [[DocumentKey]]s of their documents, and writes it on the executor, skipping the
+  * interval if the previous [[Checkpoint]] is still being written or no other document has been completed since then. The
+  * partially processed documents are left out, so that a resumed computation processes them again from their first page, and so
+  * are the ones whose [[DocumentKey]] could not be computed. When the computation is over, this actor waits for the last
+  * [[Checkpoint]] to be written and then deletes its file.
+  */
+object DocumentTrackerActor {
+
+  /* The documents known by a DocumentTracker actor. The "expected" ones are the documents whose keys have been computed before
+   * processing them, because a ResultCache is used or checkpoints are written, associated with their keys. The "partial" ones
+   * are the documents of which only some pages have been processed, associated with the UpdateAccumulator into which their
+   * Updates are merged, owned by the actor, and the number of such pages. The "counted" ones are the documents which have been
+   * completely processed while the directory is watched, associated with their Updates. The "inFlight" ones are the documents
+   * which are being processed and the "changed" ones are the documents among them which have changed in the meantime. The
+   * "completed" ones are the documents completely processed while checkpoints are written, associated with their keys.
+   */
+  private final case class Documents(
+    expected: Map[Path, DocumentKey],
+    partial: Map[Path, (UpdateAccumulator, Int)],
+    counted: Map[Path, Update],
+    inFlight: Set[Path],
+    changed: Set[Path],
+    completed: Map[Path, DocumentKey]
+  )
+
+  /* The state of the checkpoints written by a DocumentTracker actor, which is owned by the actor. The accumulator contains the
+   * merged Updates of all the documents completely processed, "checkpointed" is the number of such documents when the last
+   * checkpoint was taken and "lastWrite" completes when the last checkpoint has been written.
+   */
+  private final class Checkpointing(
+    val settings: CheckpointSettings,
+    val filesDirectory: FilePath,
+    val stopwordsFile: FilePath,
+    val accumulator: UpdateAccumulator
+  ) {
+    var checkpointed: Int = 0
+    var lastWrite: Future[Unit] = Future.unit
+  }
+
+  /* The immutable part of the state of a DocumentTracker actor. */
+  private final case class Environment(
+    context: ActorContext[Command],
+    timerScheduler: TimerScheduler[Command],
+    pathCoordinator: ActorRef[Command],
+    updateSinkActor: ActorRef[Command],
+    resultCache: Option[ResultCache],
+    task: SingletonTask[FilePath, DocumentKey],
+    executor: ExecutionContext,
+    quietPeriod: Option[FiniteDuration],
+    watchService: Option[WatchService],
+    checkpointing: Option[Checkpointing],
+    stopwords: Future[Long]
+  )
+
+  /** Returns the behavior of a DocumentTracker actor.
+    * @param pathCoordinator
+    *   the PathCoordinator actor, to which the [[FilePath]]s of the documents to be processed are forwarded
+    * @param updateSinkActor
+    *   the UpdateSink actor, to which the cached [[Update]]s and the opposite of the [[Update]]s of the changed documents are
+    *   sent
+    * @param resultCache
+    *   the [[ResultCache]] containing the [[Update]]s of the documents already processed, if they should be reused
+    * @param task
+    *   the [[it.unibo.pcd.assignment3.actors.model.tasks.Task]] which generates the [[DocumentKey]] of a document given its
+    *   [[FilePath]]
+    * @param executor
+    *   the executor on which the [[it.unibo.pcd.assignment3.actors.model.tasks.Task]]s and the accesses to the [[ResultCache]]
+    *   will be executed
+    * @param filesDirectory
+    *   the [[FilePath]] of the directory in which the PDF files to be analyzed are located
+    * @param quietPeriod
+    *   the time for which a document must not change before being processed again, if the directory should be watched
+    * @param stopwordsFile
+    *   the [[FilePath]] of the file containing the stopwords, which identifies the computation along with the directory
+    * @param checkpointSettings
+    *   the [[CheckpointSettings]] to be used for writing the checkpoints of the computation, if they should be written
+    * @param resumed
+    *   the [[Checkpoint]] from which the computation has been resumed, if any
+    * @return
+    *   the behavior of a DocumentTracker actor
+    */
+  def apply(
+    pathCoordinator: ActorRef[Command],
+    updateSinkActor: ActorRef[Command],
+    resultCache: Option[ResultCache],
+    task: SingletonTask[FilePath, DocumentKey],
+    executor: ExecutionContext,
+    filesDirectory: FilePath,
+    quietPeriod: Option[FiniteDuration],
+    stopwordsFile: FilePath,
+    checkpointSettings: Option[CheckpointSettings],
+    resumed: Option[Checkpoint]
+  ): Behavior[Command] =
+    Behaviors.setup { c =>
+      Behaviors.withTimers { s =>
+        val watchService: Option[WatchService] = quietPeriod.map(_ => watch(c.self, filesDirectory.path))
+        val checkpointing: Option[Checkpointing] = checkpointSettings.map(k => {
+          val accumulator: UpdateAccumulator = UpdateAccumulator()
+          resumed.foreach(r => accumulator.add(r.update))
+          s.startTimerAtFixedRate(TimerExpired, TimerExpired, k.interval)
+          new Checkpointing(k, filesDirectory, stopwordsFile, accumulator)
+        })
+        main(
+          Environment(
+            c,
+            s,
+            pathCoordinator,
+            updateSinkActor,
+            resultCache,
+            task,
+            executor,
+            quietPeriod,
+            watchService,
+            checkpointing,
+            resultCache.fold(Future.successful(0L))(_ =>
+              Future(ResultCache.fingerprint(StopwordsGeneratorTask(stopwordsFile)))(executor)
+            )
+          ),
+          pendingLookups = 0,
+          pendingWrites = 0,
+          poisoned = false,
+          Documents(
+            Map.empty[Path, DocumentKey],
+            Map.empty[Path, (UpdateAccumulator, Int)],
+            Map.empty[Path, Update],
+            Set.empty[Path],
+            Set.empty[Path],
+            resumed.fold(Map.empty[Path, DocumentKey])(_.documents.map(d => d.path.path -> d).toMap)
+          )
+        )
+      }
+    }
+
+  /* Registers the given directory and all of its subdirectories to a new WatchService and starts a thread which sends to the
+   * given actor a FileEventCommand for each event of the registered directories, until the WatchService is closed. Each
+   * directory created afterwards is registered as soon as its creation is seen, along with its subdirectories, and an event is
+   * also sent for each file it already contains, because such files could have been created before the registration.
+   */
+  private def watch(actor: ActorRef[Command], directory: Path): WatchService = {
+    val watchService: WatchService = directory.getFileSystem.newWatchService()
+    discard(register(watchService, directory))
+    val thread: Thread = new Thread(
+      () =>
+        discard(Try {
+          while (true) {
+            val key: WatchKey = watchService.take()
+            key.watchable() match {
+              case d: Path =>
+                key
+                  .pollEvents()
+                  .forEach(e =>
+                    e.context() match {
+                      case p: Path =>
+                        val path: Path = d.resolve(p)
+                        if (e.kind() === ENTRY_CREATE && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                          register(watchService, path).foreach(actor ! FileEventCommand(_))
+                        }
+                        actor ! FileEventCommand(path)
+                      case _ => ()
+                    }
+                  )
+              case _ => ()
+            }
+            discard(key.reset())
+          }
+        }),
+      "directory-watcher"
+    )
+    thread.setDaemon(true)
+    thread.start()
+    watchService
+  }
+
+  /* Registers the given directory and all of its subdirectories to the given WatchService, without following the symbolic links
+   * and skipping the directories which cannot be read, and returns the paths of the files they contain.
+   */
+  private def register(watchService: WatchService, directory: Path): Seq[Path] = {
+    val files: mutable.Builder[Path, Seq[Path]] = Seq.newBuilder[Path]
+    discard(Try(Files.walkFileTree(directory, new SimpleFileVisitor[Path] {
+
+      override def preVisitDirectory(path: Path, attributes: BasicFileAttributes): FileVisitResult = {
+        discard(Try(path.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE)))
+        FileVisitResult.CONTINUE
+      }
+
+      override def visitFile(path: Path, attributes: BasicFileAttributes): FileVisitResult = {
+        discard(files += path)
+        FileVisitResult.CONTINUE
+      }
+
+      override def visitFileFailed(path: Path, exception: IOException): FileVisitResult = FileVisitResult.CONTINUE
+    })))
+    files.result()
+  }
+
+  /* The main state of a DocumentTracker actor behavior. */
+  private def main(
+    environment: Environment,
+    pendingLookups: Int,
+    pendingWrites: Int,
+    poisoned: Boolean,
+    documents: Documents
+  ): Behavior[Command] =
+    Behaviors.receiveMessage {
+      case FilePathCommand(p) =>
+        val (lookups, updatedDocuments) = changed(environment, p, exists = true, documents)
+        main(environment, pendingLookups + lookups, pendingWrites, poisoned, updatedDocuments)
+      case FileEventCommand(p) =>
+        environment
+          .quietPeriod
+          .filter(_ => p.toString.endsWith("pdf"))
+          .foreach(environment.timerScheduler.startSingleTimer(p, FileChangedCommand(p), _))
+        Behaviors.same
+      case FileChangedCommand(p) =>
+        val (lookups, updatedDocuments) = changed(environment, p, Files.exists(p), documents)
+        main(environment, pendingLookups + lookups, pendingWrites, poisoned, updatedDocuments)
+      case Ready =>
+        if (poisoned && pendingLookups === 1) {
+          environment.pathCoordinator ! PoisonPill
+        }
+        main(environment, pendingLookups - 1, pendingWrites, poisoned, documents)
+      case PoisonPill if environment.quietPeriod.isDefined => Behaviors.same
+      case PoisonPill if poisoned =>
+        environment.checkpointing.foreach(k => environment.context.pipeToSelf(k.lastWrite)(_ => WriteCompleted))
+        draining(pendingWrites + environment.checkpointing.size, environment.checkpointing.map(_.settings.file))
+      case PoisonPill =>
+        if (pendingLookups === 0) {
+          environment.pathCoordinator ! PoisonPill
+        }
+        main(environment, pendingLookups, pendingWrites, poisoned = true, documents)
+      case k: DocumentKeyCommand =>
+        main(
+          environment,
+          pendingLookups,
+          pendingWrites,
+          poisoned,
+          documents.copy(expected = documents.expected + (k.path -> k.fromCommand))
+        )
+      case DocumentUpdateCommand(p, _, _, _, _, _) if !documents.inFlight.contains(p) => Behaviors.same
+      case DocumentUpdateCommand(p, n, k, i, f, w) =>
+        val (accumulator, pages) = documents.partial.get(p).fold((UpdateAccumulator(), k))(e => (e._1, e._2 + k))
+        accumulator.add(Update(i, f, w))
+        if (pages >= n) {
+          val update: Update = accumulator.result()
+          val stores: Option[Future[Unit]] = environment
+            .resultCache
+            .filter(_ => n > 0)
+            .flatMap(r =>
+              for {
+                d <- documents.expected.get(p)
+                s <- environment.stopwords.value.flatMap(_.toOption)
+              } yield Future(r.store(d, s, update))(environment.executor)
+            )
+          stores.foreach(environment.context.pipeToSelf(_)(_ => WriteCompleted))
+          completed(
+            environment,
+            pendingLookups,
+            pendingWrites + stores.size,
+            poisoned,
+            p,
+            documents.copy(
+              expected = documents.expected - p,
+              partial = documents.partial - p,
+              counted = if (environment.quietPeriod.isDefined) documents.counted + (p -> update) else documents.counted,
+              completed = environment
+                .checkpointing
+                .flatMap(k =>
+                  documents
+                    .expected
+                    .get(p)
+                    .map(d => {
+                      k.accumulator.add(update)
+                      documents.completed + (Checkpoint.normalize(p) -> d)
+                    })
+                )
+                .getOrElse(documents.completed)
+            )
+          )
+        } else {
+          main(
+            environment,
+            pendingLookups,
+            pendingWrites,
+            poisoned,
+            documents.copy(partial = documents.partial + (p -> ((accumulator, pages))))
+          )
+        }
+      case TimerExpired =>
+        environment
+          .checkpointing
+          .filter(k => k.lastWrite.isCompleted && k.checkpointed < documents.completed.size)
+          .foreach(k => {
+            val update: Update = k.accumulator.result()
+            k.accumulator.add(update)
+            val checkpoint: Checkpoint =
+              Checkpoint(k.filesDirectory.path, k.stopwordsFile.path, update, documents.completed.values.toSet)
+            k.checkpointed = documents.completed.size
+            k.lastWrite = Future(discard(Checkpoint.write(k.settings.file, checkpoint)))(environment.executor)
+          })
+        Behaviors.same
+      case WriteCompleted => main(environment, pendingLookups, pendingWrites - 1, poisoned, documents)
+      case DocumentDiscardedCommand(p) =>
+        completed(
+          environment,
+          pendingLookups,
+          pendingWrites,
+          poisoned,
+          p,
+          documents.copy(expected = documents.expected - p, partial = documents.partial - p)
+        )
+      case _ => Behaviors.unhandled
+    }.receiveSignal { case (_, PostStop) =>
+      environment.watchService.foreach(_.close())
+      Behaviors.same
+    }
+
+  /* The state of a DocumentTracker actor which has been stopped while some of its writes were still pending, in which it stops
+   * once all of them have completed, deleting the file of the checkpoints, if any, so that no checkpoint is written after it.
+   */
+  private def draining(pendingWrites: Int, checkpointFile: Option[Path]): Behavior[Command] =
+    if (pendingWrites <= 0) {
+      checkpointFile.foreach(f => discard(Checkpoint.delete(f)))
+      Behaviors.stopped
+    } else {
+      Behaviors.receiveMessage {
+        case WriteCompleted => draining(pendingWrites - 1, checkpointFile)
+        case _              => Behaviors.same
+      }
+    }
+
+  /* Marks the document with the given path as no longer being processed, processing it again if it has changed meanwhile. */
+  private def completed(
+    environment: Environment,
+    pendingLookups: Int,
+    pendingWrites: Int,
+    poisoned: Boolean,
+    path: Path,
+    documents: Documents
+  ): Behavior[Command] =
+    if (documents.changed.contains(path)) {
+      val (lookups, updatedDocuments) = changed(
+        environment,
+        path,
+        Files.exists(path),
+        documents.copy(inFlight = documents.inFlight - path, changed = documents.changed - path)
+      )
+      main(environment, pendingLookups + lookups, pendingWrites, poisoned, updatedDocuments)
+    } else {
+      main(environment, pendingLookups, pendingWrites, poisoned, documents.copy(inFlight = documents.inFlight - path))
+    }
+
+  /* Handles the change of the document with the given path, returning the number of lookups started and the updated documents.
+   * If the document is being processed, it is only marked as changed, otherwise its previous Update is subtracted and, if it
+   * still exists, it is processed again.
+   */
+  private def changed(environment: Environment, path: Path, exists: Boolean, documents: Documents): (Int, Documents) =
+    if (documents.inFlight.contains(path)) {
+      (0, documents.copy(changed = documents.changed + path))
+    } else {
+      documents
+        .counted
+        .get(path)
+        .foreach(u => environment.updateSinkActor ! UpdateCommand(u.words, u.counts.map(-_), -u.processedWords))
+      val remainingDocuments: Documents = documents.copy(counted = documents.counted - path)
+      if (exists) {
+        (submit(environment, path), remainingDocuments.copy(inFlight = remainingDocuments.inFlight + path))
+      } else {
+        (0, remainingDocuments)
+      }
+    }
+
+  /* Submits the document with the given path for being processed, computing its key and looking it up into the ResultCache if
+   * there is one, along with the fingerprint of the stopwords, and returns the number of lookups started. The key is reported
+   * to the actor itself before the document is processed. A cached document is reported to the actor itself as a document made
+   * of no pages, so that it is completed as all others but its Update is not stored again.
+   */
+  private def submit(environment: Environment, path: Path): Int =
+    if (environment.resultCache.isDefined || environment.checkpointing.isDefined) {
+      implicit val dispatcher: ExecutionContext =
+        environment.context.system.dispatchers.lookup(DispatcherSelector.default())
+      environment.stopwords.map(s => {
+        val key: DocumentKey = environment.task(FilePath(path))
+        environment.context.self ! key.toCommand
+        environment.resultCache.flatMap(_.lookup(key, s)) match {
+          case Some(u) =>
+            environment.updateSinkActor ! u.toCommand
+            environment.context.self ! DocumentUpdateCommand(path, 0, 0, u.words, u.counts, u.processedWords)
+          case None => environment.pathCoordinator ! FilePathCommand(path)
+        }
+      })(environment.executor).onComplete {
+        case Failure(_) =>
+          environment.pathCoordinator ! FilePathCommand(path)
+          environment.context.self ! Ready
+        case _ => environment.context.self ! Ready
+      }
+      1
+    } else {
+      environment.pathCoordinator ! FilePathCommand(path)
+      0
+    }
+}
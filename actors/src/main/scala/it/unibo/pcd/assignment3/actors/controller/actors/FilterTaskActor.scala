@@ -1,18 +1,24 @@
 package it.unibo.pcd.assignment3.actors.controller.actors
 
 import akka.actor.typed.{ActorRef, Behavior, DispatcherSelector}
-import akka.actor.typed.scaladsl.Behaviors
+import akka.actor.typed.scaladsl.{ActorContext, Behaviors, TimerScheduler}
+import it.unibo.pcd.assignment3.actors.AnyOps.discard
+import it.unibo.pcd.assignment3.actors.controller.{CancellationToken, FrequencyStore, StageMetrics, Throttle}
+import it.unibo.pcd.assignment3.actors.controller.Settings.{ApproximateSettings, CombinerSettings}
 import it.unibo.pcd.assignment3.actors.controller.actors.Command._
 import it.unibo.pcd.assignment3.actors.controller.actors.ConvertibleToCommand._
-import it.unibo.pcd.assignment3.actors.model.entities.{Resource, Update}
-import it.unibo.pcd.assignment3.actors.model.tasks.{IterableTask, SingletonTask}
+import it.unibo.pcd.assignment3.actors.model.entities._
+import it.unibo.pcd.assignment3.actors.model.tasks.{FilterTaskType, IterableTask, SingletonTask, StreamingTask}
 
+import java.nio.file.Path
 import scala.concurrent.{ExecutionContext, Future}
 import scala.reflect.ClassTag
 
 /** A worker actor, an actor whose purpose is to execute [[it.unibo.pcd.assignment3.actors.model.tasks.Task]]s with the input
   * coming from its coordinator. It has the ability to change its behavior into the one of the worker which is next into the data
-  * transformation chain. This is made for keeping all actors always busy with work.
+  * transformation chain. This is made for keeping all actors always busy with work. When idle, it can also be told by its
+  * coordinator to change its behavior into the one of the workers of any other stage of the chain, so that the slowest stage
+  * can be given more workers.
   */
 object FilterTaskActor {
 
@@ -29,6 +35,23 @@ object FilterTaskActor {
     *   [[Resource]] into an [[Update]]
     * @param executor
     *   the executor on which the [[it.unibo.pcd.assignment3.actors.model.tasks.Task]]s will be executed
+    * @param metrics
+    *   the [[StageMetrics]] into which the metrics of the executed [[it.unibo.pcd.assignment3.actors.model.tasks.Task]]s are
+    *   recorded
+    * @param combinerSettings
+    *   the [[CombinerSettings]] to be used for merging the produced [[Update]]s before sending them to the next coordinator, if
+    *   they should be merged at all
+    * @param frequencyStore
+    *   the [[FrequencyStore]] into which adding the produced [[Update]]s instead of sending them to the next coordinator, if
+    *   there is one, in which case the [[CombinerSettings]] are ignored
+    * @param documentTrackerActor
+    *   the DocumentTracker actor to which the produced [[Update]]s are also sent, attributed to the documents of their pages, so
+    *   that the results of processing each document can be tracked, if they should be tracked at all. If the [[Update]]s are
+    *   merged, the ones of the same document are merged too and sent along with the combined [[Update]], otherwise the
+    *   [[Update]] of each page is sent
+    * @param stageActorFactory
+    *   the factory instance which allows this actor to mutate its behavior into the one of the FilterTask actors of the given
+    *   stage of the data transformation chain
     * @param firstBuilt
     *   whether or not the actor was built with this behavior as its first one
     * @return
@@ -40,8 +63,22 @@ object FilterTaskActor {
     nextCoordinator: ActorRef[Command],
     task: SingletonTask[Resource, Update],
     executor: ExecutionContext,
+    metrics: StageMetrics,
+    combinerSettings: Option[CombinerSettings],
+    frequencyStore: Option[FrequencyStore],
+    documentTrackerActor: Option[ActorRef[Command]],
+    stageActorFactory: FilterTaskType.Value => Behavior[Command],
     firstBuilt: Boolean
   ): Behavior[Command] = Behaviors.setup { c =>
+    val countingTask: Resource => Update = documentTrackerActor.fold[Resource => Update](task)(r =>
+      resource => {
+        val update: Update = task(resource)
+        resource.page.origin.foreach(o =>
+          r ! DocumentUpdateCommand(o.path.path, o.pages, 1, update.words, update.counts, update.processedWords)
+        )
+        update
+      }
+    )
     prevCoordinator ! Available(c.self)
     Behaviors.receiveMessage {
       case Ready =>
@@ -51,14 +88,36 @@ object FilterTaskActor {
         Behaviors.receiveMessage {
           case StopwordsSetCommand(s, r) =>
             r ! StopwordsAck(c.self)
-            Behaviors.receiveMessage {
-              case PoisonPill => Behaviors.stopped
-              case a: PageCommand =>
-                implicit val dispatcher: ExecutionContext = c.system.dispatchers.lookup(DispatcherSelector.default())
-                Future(nextCoordinator ! task(Resource(a.fromCommand, s)).toCommand)(executor)
-                  .onComplete(_ => prevCoordinator ! Available(c.self))
-                Behaviors.same
-              case _ => Behaviors.unhandled
+            (frequencyStore, combinerSettings) match {
+              case (Some(f), _) => publishing(c, prevCoordinator, countingTask, executor, metrics, s, f.add, stageActorFactory)
+              case (None, Some(t)) =>
+                Behaviors.withTimers[Command](
+                  combining(
+                    c,
+                    prevCoordinator,
+                    nextCoordinator,
+                    task,
+                    executor,
+                    metrics,
+                    s,
+                    t,
+                    _,
+                    stageActorFactory,
+                    UpdateAccumulator(),
+                    documentTrackerActor.map((_, new DocumentTally()))
+                  )
+                )
+              case _ =>
+                publishing(
+                  c,
+                  prevCoordinator,
+                  countingTask,
+                  executor,
+                  metrics,
+                  s,
+                  nextCoordinator ! _.toCommand,
+                  stageActorFactory
+                )
             }
           case _ => Behaviors.unhandled
         }
@@ -67,6 +126,328 @@ object FilterTaskActor {
     }
   }
 
+  /* The state of the last FilterTask actor in which it publishes each Update produced by its tasks through the given function,
+   * before being made available again.
+   */
+  private def publishing(
+    context: ActorContext[Command],
+    prevCoordinator: ActorRef[Command],
+    task: Resource => Update,
+    executor: ExecutionContext,
+    metrics: StageMetrics,
+    stopwordsSet: StopwordsSet,
+    publish: Update => Unit,
+    stageActorFactory: FilterTaskType.Value => Behavior[Command]
+  ): Behavior[Command] =
+    Behaviors.receiveMessage {
+      case PoisonPill            => Behaviors.stopped
+      case ChangeStageCommand(s) => stageActorFactory(s)
+      case a: PageCommand =>
+        execute(context, prevCoordinator, executor, metrics) {
+          publish(task(Resource(a.fromCommand, stopwordsSet)))
+          1
+        }
+        Behaviors.same
+      case _ => Behaviors.unhandled
+    }
+
+  /* The state of the last FilterTask actor in which it merges the Updates produced by its own tasks into an UpdateAccumulator,
+   * sending them to the next coordinator only when they contain too many words, when they have waited for too long or when the
+   * actor is stopped. The Updates are sent by the tasks to the actor itself before the actor is made available again, so all of
+   * them are merged before the PoisonPill is received, or before the actor changes its stage. If the documents are tracked, the
+   * Updates of the pages of each document are also merged into a DocumentTally, which is flushed to the DocumentTracker actor
+   * along with the UpdateAccumulator, so that the tracker receives a message for each flush instead of one for each page.
+   */
+  private def combining(
+    context: ActorContext[Command],
+    prevCoordinator: ActorRef[Command],
+    nextCoordinator: ActorRef[Command],
+    task: Resource => Update,
+    executor: ExecutionContext,
+    metrics: StageMetrics,
+    stopwordsSet: StopwordsSet,
+    combinerSettings: CombinerSettings,
+    timerScheduler: TimerScheduler[Command],
+    stageActorFactory: FilterTaskType.Value => Behavior[Command],
+    accumulator: UpdateAccumulator,
+    tally: Option[(ActorRef[Command], DocumentTally)]
+  ): Behavior[Command] = {
+    def flushAll(): Unit = {
+      flush(nextCoordinator, accumulator)
+      tally.foreach { case (r, t) => t.flush(r) }
+    }
+    def combine(update: Update): Behavior[Command] = {
+      accumulator.add(update)
+      if (accumulator.size >= combinerSettings.maxWords) {
+        timerScheduler.cancel(TimerExpired)
+        flushAll()
+      } else if (!timerScheduler.isTimerActive(TimerExpired)) {
+        timerScheduler.startSingleTimer(TimerExpired, combinerSettings.flushInterval)
+      }
+      Behaviors.same
+    }
+    Behaviors.receiveMessage {
+      case PoisonPill =>
+        flushAll()
+        Behaviors.stopped
+      case ChangeStageCommand(s) =>
+        timerScheduler.cancel(TimerExpired)
+        flushAll()
+        stageActorFactory(s)
+      case a: PageCommand =>
+        execute(context, prevCoordinator, executor, metrics) {
+          val page: Page = a.fromCommand
+          val update: Update = task(Resource(page, stopwordsSet))
+          context.self ! tally
+            .flatMap(_ => page.origin)
+            .fold[Command](update.toCommand)(o =>
+              DocumentUpdateCommand(o.path.path, o.pages, 1, update.words, update.counts, update.processedWords)
+            )
+          1
+        }
+        Behaviors.same
+      case u: UpdateCommand => combine(u.fromCommand)
+      case DocumentUpdateCommand(p, n, k, i, f, w) =>
+        val update: Update = Update(i, f, w)
+        tally.foreach(_._2.add(p, n, k, update))
+        combine(update)
+      case TimerExpired =>
+        flushAll()
+        Behaviors.same
+      case _ => Behaviors.unhandled
+    }
+  }
+
+  /* The Updates produced by the tasks of a PageFilter actor for the pages of each document since its last flush, merged for each
+   * document along with the total number of pages of the document and the number of pages counted, so that they can be sent
+   * to the DocumentTracker actor all at once. It is owned by the actor.
+   */
+  private final class DocumentTally {
+    private val documents: java.util.HashMap[Path, (UpdateAccumulator, Int, Int)] = new java.util.HashMap()
+
+    /* Merges the given Update, produced from the given number of pages of the document with the given path and total pages. */
+    def add(path: Path, pages: Int, counted: Int, update: Update): Unit = {
+      val (accumulator, _, previouslyCounted) =
+        Option(documents.get(path)).getOrElse((UpdateAccumulator(), pages, 0))
+      accumulator.add(update)
+      discard(documents.put(path, (accumulator, pages, previouslyCounted + counted)))
+    }
+
+    /* Sends the merged Update of each document to the given DocumentTracker actor, then forgets all documents. */
+    def flush(documentTrackerActor: ActorRef[Command]): Unit = {
+      documents.forEach((p, e) => {
+        val (accumulator, pages, counted) = e
+        val update: Update = accumulator.result()
+        documentTrackerActor ! DocumentUpdateCommand(p, pages, counted, update.words, update.counts, update.processedWords)
+      })
+      documents.clear()
+    }
+  }
+
+  /** Returns the behavior of the last FilterTask actor in the data transformation chain when the words are counted
+    * approximately. The actor summarizes the [[WordCounts]] produced by its own tasks into a [[WordSketch]] of fixed size, which
+    * is handed over to the next coordinator when it has waited for too long, when the actor is stopped or when it changes its
+    * stage, and then replaced by an empty one.
+    * @param root
+    *   the root actor of the system
+    * @param prevCoordinator
+    *   the previous coordinator actor in the data transformation chain, the PageCoordinator actor
+    * @param nextCoordinator
+    *   the next coordinator actor in the data transformation chain, the UpdateSink actor
+    * @param task
+    *   the [[it.unibo.pcd.assignment3.actors.model.tasks.Task]] this actor has to execute, the one which transforms a
+    *   [[Resource]] into [[WordCounts]]
+    * @param executor
+    *   the executor on which the [[it.unibo.pcd.assignment3.actors.model.tasks.Task]]s will be executed
+    * @param metrics
+    *   the [[StageMetrics]] into which the metrics of the executed [[it.unibo.pcd.assignment3.actors.model.tasks.Task]]s are
+    *   recorded
+    * @param approximateSettings
+    *   the [[ApproximateSettings]] with which the [[WordSketch]]es are created and handed over
+    * @param stageActorFactory
+    *   the factory instance which allows this actor to mutate its behavior into the one of the FilterTask actors of the given
+    *   stage of the data transformation chain
+    * @param firstBuilt
+    *   whether or not the actor was built with this behavior as its first one
+    * @return
+    *   the behavior of the last FilterTask actor in the data transformation chain when the words are counted approximately
+    */
+  def sketching(
+    root: ActorRef[Command],
+    prevCoordinator: ActorRef[Command],
+    nextCoordinator: ActorRef[Command],
+    task: SingletonTask[Resource, WordCounts],
+    executor: ExecutionContext,
+    metrics: StageMetrics,
+    approximateSettings: ApproximateSettings,
+    stageActorFactory: FilterTaskType.Value => Behavior[Command],
+    firstBuilt: Boolean
+  ): Behavior[Command] = Behaviors.setup { c =>
+    prevCoordinator ! Available(c.self)
+    Behaviors.receiveMessage {
+      case Ready =>
+        if (firstBuilt) {
+          root ! Ready
+        }
+        Behaviors.receiveMessage {
+          case StopwordsSetCommand(s, r) =>
+            r ! StopwordsAck(c.self)
+            Behaviors.withTimers[Command](
+              summarizing(
+                c,
+                prevCoordinator,
+                nextCoordinator,
+                task,
+                executor,
+                metrics,
+                s,
+                approximateSettings,
+                _,
+                stageActorFactory,
+                emptySketch(approximateSettings)
+              )
+            )
+          case _ => Behaviors.unhandled
+        }
+      case PoisonPill => Behaviors.stopped
+      case _          => Behaviors.unhandled
+    }
+  }
+
+  /* The state of the last FilterTask actor in which it summarizes the WordCounts produced by its own tasks into a WordSketch,
+   * handing it over to the next coordinator when it has waited for too long, when the actor is stopped or when it changes its
+   * stage. As for the combining state, the WordCounts are sent by the tasks to the actor itself before the actor is made
+   * available again, so all of them are summarized before the PoisonPill is received.
+   */
+  private def summarizing(
+    context: ActorContext[Command],
+    prevCoordinator: ActorRef[Command],
+    nextCoordinator: ActorRef[Command],
+    task: Resource => WordCounts,
+    executor: ExecutionContext,
+    metrics: StageMetrics,
+    stopwordsSet: StopwordsSet,
+    approximateSettings: ApproximateSettings,
+    timerScheduler: TimerScheduler[Command],
+    stageActorFactory: FilterTaskType.Value => Behavior[Command],
+    sketch: WordSketch
+  ): Behavior[Command] =
+    Behaviors.receiveMessage {
+      case PoisonPill =>
+        handOver(nextCoordinator, sketch)
+        Behaviors.stopped
+      case ChangeStageCommand(s) =>
+        timerScheduler.cancel(TimerExpired)
+        handOver(nextCoordinator, sketch)
+        stageActorFactory(s)
+      case a: PageCommand =>
+        execute(context, prevCoordinator, executor, metrics) {
+          context.self ! task(Resource(a.fromCommand, stopwordsSet)).toCommand
+          1
+        }
+        Behaviors.same
+      case w: WordCountsCommand =>
+        w.words.indices.foreach(i => sketch.add(w.words(i), w.counts(i)))
+        sketch.addProcessedWords(w.processedWords)
+        if (!timerScheduler.isTimerActive(TimerExpired)) {
+          timerScheduler.startSingleTimer(TimerExpired, approximateSettings.flushInterval)
+        }
+        Behaviors.same
+      case TimerExpired =>
+        handOver(nextCoordinator, sketch)
+        summarizing(
+          context,
+          prevCoordinator,
+          nextCoordinator,
+          task,
+          executor,
+          metrics,
+          stopwordsSet,
+          approximateSettings,
+          timerScheduler,
+          stageActorFactory,
+          emptySketch(approximateSettings)
+        )
+      case _ => Behaviors.unhandled
+    }
+
+  /* Returns a new empty WordSketch with the given settings. */
+  private def emptySketch(approximateSettings: ApproximateSettings): WordSketch =
+    WordSketch(
+      approximateSettings.width,
+      approximateSettings.depth,
+      approximateSettings.heavyHitters,
+      approximateSettings.precision
+    )
+
+  /* Hands over the given WordSketch to the next coordinator, if it contains anything, so that it must not be used anymore. */
+  private def handOver(nextCoordinator: ActorRef[Command], sketch: WordSketch): Unit =
+    if (sketch.processedWords > 0) {
+      nextCoordinator ! SketchCommand(sketch)
+    }
+
+  /* Executes the given task on the given executor, recording its metrics, and makes the actor available again to the previous
+   * coordinator once the task has completed. The task returns the number of items it has produced for the next stage.
+   */
+  private def execute(
+    context: ActorContext[Command],
+    prevCoordinator: ActorRef[Command],
+    executor: ExecutionContext,
+    metrics: StageMetrics
+  )(task: => Int): Unit = {
+    implicit val dispatcher: ExecutionContext = context.system.dispatchers.lookup(DispatcherSelector.default())
+    metrics.submitted()
+    Future {
+      val start: Long = System.nanoTime()
+      val outputs: Int = task
+      metrics.executed(System.nanoTime() - start, outputs)
+    }(executor).onComplete(_ => {
+      metrics.completed()
+      prevCoordinator ! Available(context.self)
+    })
+  }
+
+  /* Returns the given output resources until the given token is cancelled, which is checked before producing each of them, so
+   * that a cancelled computation stops between two documents or two pages.
+   */
+  private def untilCancelled[A](token: CancellationToken, resources: Iterator[A]): Iterator[A] =
+    Iterator.continually(()).takeWhile(_ => !token.isCancelled && resources.hasNext).map(_ => resources.next())
+
+  /* Registers the given resource to the given token if it is a Document, which stays open until the next stage closes it, so
+   * that it is closed anyway if the computation is cancelled before.
+   */
+  private def opened[A](token: CancellationToken, resource: A): Unit =
+    resource match {
+      case d: Document => token.register(d)
+      case _           => ()
+    }
+
+  /* Unregisters the given resource from the given token if it is a Document, which the task is about to consume, so that
+   * cancelling the computation does not close it while its pages are being extracted. The task stops at its next check of the
+   * token instead, and the Document is closed once consumed. If the token was cancelled before, the Document may have already
+   * been closed, but then the task stops before extracting anything.
+   */
+  private def consuming[A](token: CancellationToken, resource: A): Unit =
+    resource match {
+      case d: Document => token.unregister(d)
+      case _           => ()
+    }
+
+  /* Closes the given resource if it is a Document, which has been consumed by the task. Closing a Document more than once has
+   * no effect, so it may have already been closed by the token.
+   */
+  private def consumed[A](resource: A): Unit =
+    resource match {
+      case d: Document => d.close()
+      case _           => ()
+    }
+
+  /* Sends the Update merged into the given accumulator to the next coordinator, if it contains anything, emptying it. */
+  private def flush(nextCoordinator: ActorRef[Command], accumulator: UpdateAccumulator): Unit =
+    if (accumulator.processedWords > 0) {
+      nextCoordinator ! accumulator.result().toCommand
+    }
+
   /** Returns the behavior of a generic FilterTask actor which takes a [[SingletonTask]] as the
     * [[it.unibo.pcd.assignment3.actors.model.tasks.Task]] to execute.
     * @param root
@@ -79,9 +460,18 @@ object FilterTaskActor {
     *   the [[it.unibo.pcd.assignment3.actors.model.tasks.Task]] this actor has to execute
     * @param executor
     *   the executor on which the [[it.unibo.pcd.assignment3.actors.model.tasks.Task]]s will be executed
+    * @param token
+    *   the [[CancellationToken]] of the computation, checked between the output resources and to which the open documents are
+    *   registered
+    * @param metrics
+    *   the [[StageMetrics]] into which the metrics of the executed [[it.unibo.pcd.assignment3.actors.model.tasks.Task]]s are
+    *   recorded
     * @param nextActorFactory
     *   the factory instance which allows this actor to mutate its behavior into the one of the next FilterTask actor in the data
     *   transformation chain
+    * @param stageActorFactory
+    *   the factory instance which allows this actor to mutate its behavior into the one of the FilterTask actors of the given
+    *   stage of the data transformation chain
     * @param firstBuilt
     *   whether or not the actor was built with this behavior as its first one
     * @param firstConverter
@@ -108,7 +498,10 @@ object FilterTaskActor {
     nextCoordinator: ActorRef[Command],
     task: SingletonTask[B, C],
     executor: ExecutionContext,
+    token: CancellationToken,
+    metrics: StageMetrics,
     nextActorFactory: Boolean => Behavior[Command],
+    stageActorFactory: FilterTaskType.Value => Behavior[Command],
     firstBuilt: Boolean
   )(implicit
     firstConverter: ConvertibleToCommand[B, A],
@@ -121,11 +514,15 @@ object FilterTaskActor {
           root ! Ready
         }
         Behaviors.receiveMessage {
-          case PoisonPill => nextActorFactory(false)
+          case PoisonPill            => nextActorFactory(false)
+          case ChangeStageCommand(s) => stageActorFactory(s)
           case a: A =>
-            implicit val dispatcher: ExecutionContext = c.system.dispatchers.lookup(DispatcherSelector.default())
-            Future(nextCoordinator ! task(a.fromCommand).toCommand)(executor)
-              .onComplete(_ => prevCoordinator ! Available(c.self))
+            execute(c, prevCoordinator, executor, metrics) {
+              val output: C = task(a.fromCommand)
+              opened(token, output)
+              nextCoordinator ! output.toCommand
+              1
+            }
             Behaviors.same
           case _ => Behaviors.unhandled
         }
@@ -146,9 +543,18 @@ object FilterTaskActor {
     *   the [[it.unibo.pcd.assignment3.actors.model.tasks.Task]] this actor has to execute
     * @param executor
     *   the executor on which the [[it.unibo.pcd.assignment3.actors.model.tasks.Task]]s will be executed
+    * @param token
+    *   the [[CancellationToken]] of the computation, checked between the output resources and to which the open documents are
+    *   registered
+    * @param metrics
+    *   the [[StageMetrics]] into which the metrics of the executed [[it.unibo.pcd.assignment3.actors.model.tasks.Task]]s are
+    *   recorded
     * @param nextActorFactory
     *   the factory instance which allows this actor to mutate its behavior into the one of the next FilterTask actor in the data
     *   transformation chain
+    * @param stageActorFactory
+    *   the factory instance which allows this actor to mutate its behavior into the one of the FilterTask actors of the given
+    *   stage of the data transformation chain
     * @param firstBuilt
     *   whether or not the actor was built with this behavior as its first one
     * @param firstConverter
@@ -175,7 +581,106 @@ object FilterTaskActor {
     nextCoordinator: ActorRef[Command],
     task: IterableTask[B, C],
     executor: ExecutionContext,
+    token: CancellationToken,
+    metrics: StageMetrics,
+    nextActorFactory: Boolean => Behavior[Command],
+    stageActorFactory: FilterTaskType.Value => Behavior[Command],
+    firstBuilt: Boolean
+  )(implicit
+    firstConverter: ConvertibleToCommand[B, A],
+    secondConverter: ConvertibleToCommand[C, D]
+  ): Behavior[Command] = Behaviors.setup { c =>
+    prevCoordinator ! Available(c.self)
+    Behaviors.receiveMessage {
+      case Ready =>
+        if (firstBuilt) {
+          root ! Ready
+        }
+        Behaviors.receiveMessage {
+          case PoisonPill            => nextActorFactory(false)
+          case ChangeStageCommand(s) => stageActorFactory(s)
+          case a: A =>
+            execute(c, prevCoordinator, executor, metrics) {
+              val input: B = a.fromCommand
+              consuming(token, input)
+              try {
+                untilCancelled(token, task(input).iterator).foldLeft(0)((n, r) => {
+                  opened(token, r)
+                  nextCoordinator ! r.toCommand
+                  n + 1
+                })
+              } finally {
+                consumed(input)
+              }
+            }
+            Behaviors.same
+          case _ => Behaviors.unhandled
+        }
+      case PoisonPill => nextActorFactory(false)
+      case _          => Behaviors.unhandled
+    }
+  }
+
+  /** Returns the behavior of a generic FilterTask actor which takes a [[StreamingTask]] as the
+    * [[it.unibo.pcd.assignment3.actors.model.tasks.Task]] to execute. Each output resource is sent to the next coordinator actor
+    * as soon as it is produced, after having acquired the permission to do so from the given [[Throttle]], so that the production
+    * slows down when the workers of the next coordinator actor cannot keep up. The input resource, if it is a [[Document]], is
+    * closed once the production is over, even if it has failed or it has been stopped by the [[CancellationToken]].
+    * @param root
+    *   the root actor of the system
+    * @param prevCoordinator
+    *   the previous coordinator actor in the data transformation chain
+    * @param nextCoordinator
+    *   the next coordinator actor in the data transformation chain
+    * @param task
+    *   the [[it.unibo.pcd.assignment3.actors.model.tasks.Task]] this actor has to execute
+    * @param executor
+    *   the executor on which the [[it.unibo.pcd.assignment3.actors.model.tasks.Task]]s will be executed
+    * @param token
+    *   the [[CancellationToken]] of the computation, checked between the output resources and to which the open documents are
+    *   registered
+    * @param metrics
+    *   the [[StageMetrics]] into which the metrics of the executed [[it.unibo.pcd.assignment3.actors.model.tasks.Task]]s are
+    *   recorded
+    * @param throttle
+    *   the [[Throttle]] limiting the output resources sent to the next coordinator actor but not yet processed by its workers
+    * @param nextActorFactory
+    *   the factory instance which allows this actor to mutate its behavior into the one of the next FilterTask actor in the data
+    *   transformation chain
+    * @param stageActorFactory
+    *   the factory instance which allows this actor to mutate its behavior into the one of the FilterTask actors of the given
+    *   stage of the data transformation chain
+    * @param firstBuilt
+    *   whether or not the actor was built with this behavior as its first one
+    * @param firstConverter
+    *   the [[ConvertibleToCommand]] instance capable of converting the type of the [[Command]] received from the previous
+    *   coordinator actor into the type of the input of the [[it.unibo.pcd.assignment3.actors.model.tasks.Task]] to be executed
+    * @param secondConverter
+    *   the [[ConvertibleToCommand]] instance capable of converting the type of the output of the
+    *   [[it.unibo.pcd.assignment3.actors.model.tasks.Task]] to be executed into the type of the [[Command]] to be sent to the
+    *   next coordinator actor
+    * @tparam A
+    *   the type of [[Command]] received from the previous coordinator actor
+    * @tparam B
+    *   the type of the [[it.unibo.pcd.assignment3.actors.model.tasks.Task]] input
+    * @tparam C
+    *   the type of the [[it.unibo.pcd.assignment3.actors.model.tasks.Task]] output
+    * @tparam D
+    *   the type of [[Command]] to be sent to the next coordinator actor
+    * @return
+    *   the behavior of a generic FilterTask actor
+    */
+  def apply[A <: Command: ClassTag, B, C, D <: Command](
+    root: ActorRef[Command],
+    prevCoordinator: ActorRef[Command],
+    nextCoordinator: ActorRef[Command],
+    task: StreamingTask[B, C],
+    executor: ExecutionContext,
+    token: CancellationToken,
+    metrics: StageMetrics,
+    throttle: Throttle,
     nextActorFactory: Boolean => Behavior[Command],
+    stageActorFactory: FilterTaskType.Value => Behavior[Command],
     firstBuilt: Boolean
   )(implicit
     firstConverter: ConvertibleToCommand[B, A],
@@ -188,11 +693,23 @@ object FilterTaskActor {
           root ! Ready
         }
         Behaviors.receiveMessage {
-          case PoisonPill => nextActorFactory(false)
+          case PoisonPill            => nextActorFactory(false)
+          case ChangeStageCommand(s) => stageActorFactory(s)
           case a: A =>
-            implicit val dispatcher: ExecutionContext = c.system.dispatchers.lookup(DispatcherSelector.default())
-            Future(task(a.fromCommand).foreach(nextCoordinator ! _.toCommand))(executor)
-              .onComplete(_ => prevCoordinator ! Available(c.self))
+            execute(c, prevCoordinator, executor, metrics) {
+              val input: B = a.fromCommand
+              consuming(token, input)
+              try {
+                untilCancelled(token, task(input)).foldLeft(0)((n, r) => {
+                  throttle.acquire()
+                  opened(token, r)
+                  nextCoordinator ! r.toCommand
+                  n + 1
+                })
+              } finally {
+                consumed(input)
+              }
+            }
             Behaviors.same
           case _ => Behaviors.unhandled
         }
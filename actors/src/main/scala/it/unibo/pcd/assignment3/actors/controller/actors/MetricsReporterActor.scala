@@ -0,0 +1,59 @@
+package it.unibo.pcd.assignment3.actors.controller.actors
+
+import akka.actor.typed.Behavior
+import akka.actor.typed.scaladsl.Behaviors
+import it.unibo.pcd.assignment3.actors.controller.{PipelineMetrics, StageMetrics}
+import it.unibo.pcd.assignment3.actors.controller.actors.Command.TimerExpired
+
+import scala.concurrent.duration.FiniteDuration
+
+/** The actor which periodically logs a line summarizing the [[PipelineMetrics]], so that they can be inspected after the
+  * computation without a JMX client. The utilisation of each stage is computed from the time spent executing its tasks since the
+  * previous line, divided by the time elapsed and by the number of its workers.
+  */
+object MetricsReporterActor {
+
+  /** Returns the behavior of a MetricsReporter actor.
+    * @param metrics
+    *   the [[PipelineMetrics]] to be logged
+    * @param interval
+    *   the interval at which the [[PipelineMetrics]] are logged
+    * @return
+    *   the behavior of a MetricsReporter actor
+    */
+  def apply(metrics: PipelineMetrics, interval: FiniteDuration): Behavior[Command] =
+    Behaviors.withTimers { t =>
+      t.startTimerWithFixedDelay(TimerExpired, interval)
+      main(metrics, System.nanoTime(), metrics.stages.map(_.getBusyTime))
+    }
+
+  /* The main state of a MetricsReporter actor behavior, which remembers when the previous line was logged and the busy time of
+   * each stage at that time.
+   */
+  private def main(metrics: PipelineMetrics, lastTime: Long, lastBusyTimes: Seq[Double]): Behavior[Command] =
+    Behaviors.receive { (c, m) =>
+      m match {
+        case TimerExpired =>
+          val now: Long = System.nanoTime()
+          val busyTimes: Seq[Double] = metrics.stages.map(_.getBusyTime)
+          val elapsed: Double = Math.max(now - lastTime, 1L) / 1e6
+          c.log.info(
+            metrics
+              .stages
+              .lazyZip(busyTimes)
+              .lazyZip(lastBusyTimes)
+              .map((s, b, l) => format(s, (b - l) / elapsed / Math.max(s.getWorkers, 1)))
+              .mkString("", " | ", s" | executor: pending=${metrics.getPendingTasks} queued=${metrics.getQueuedTasks}")
+          )
+          main(metrics, now, busyTimes)
+        case _ => Behaviors.unhandled
+      }
+    }
+
+  /* Formats the metrics of the given stage, given its utilisation since the previous line. */
+  private def format(stage: StageMetrics, utilisation: Double): String =
+    f"${stage.name}: in=${stage.getItemsIn} out=${stage.getItemsOut} " +
+      f"task=${stage.getTaskTimeMean}%.2fms (p99 ${stage.getTaskTimeP99}%.2fms) " +
+      f"wait=${stage.getWaitTimeMean}%.2fms (p99 ${stage.getWaitTimeP99}%.2fms) " +
+      f"workers=${stage.getWorkers} util=${utilisation * 100}%.0f%% pending=${stage.getPendingTasks}"
+}
@@ -0,0 +1,281 @@
+package it.unibo.pcd.assignment3.actors.controller.actors
+
+import akka.actor.typed.{ActorRef, Behavior, DispatcherSelector, Terminated}
+import akka.actor.typed.receptionist.Receptionist
+import akka.actor.typed.scaladsl.{ActorContext, Behaviors}
+import it.unibo.pcd.assignment3.actors.controller.{
+  CancellationToken,
+  PipelineMetrics,
+  Settings,
+  StageExecutors,
+  SuspensionGate,
+  Throttle
+}
+import it.unibo.pcd.assignment3.actors.controller.Settings.ClusterSettings
+import it.unibo.pcd.assignment3.actors.controller.actors.Command._
+import it.unibo.pcd.assignment3.actors.model.entities._
+import it.unibo.pcd.assignment3.actors.model.tasks._
+
+import scala.concurrent.{ExecutionContext, Future}
+import scala.util.{Failure, Success}
+
+/** The root actor of a worker node of a cluster, which takes part in a computation started on the seed node. It looks for the
+  * ClusterGateway actor of the seed node through the receptionist and asks it to join the computation. Once joined, it reads
+  * the [[StopwordsSet]] and then starts its own DocumentCoordinator, PageCoordinator and Reducer actors along with its worker
+  * actors, whose PathFilter actors register to the PathCoordinator actor of the seed node. This way the paths of the documents
+  * are dispatched by the seed node to all the worker nodes, each one processing its documents locally and sending the
+  * [[Update]]s merged by its Reducer actor to the global Reducer actor of the seed node. The [[PoisonPill]] which closes the path
+  * stage is passed by the ClusterGateway actor to this actor, which passes it to its DocumentCoordinator actor, and this actor
+  * stops, shutting down the actor system of the worker node, when its Reducer actor has stopped. If the worker node is turned
+  * away because the computation has already dispatched all of its documents, this actor stops immediately.
+  */
+object NodeActor {
+
+  /** Returns the behavior of a Node actor.
+    * @param exceptionHandler
+    *   a handler for managing exceptions while reading the [[StopwordsSet]]
+    * @param gate
+    *   the [[SuspensionGate]] through which the [[it.unibo.pcd.assignment3.actors.model.tasks.Task]]s are submitted to the
+    *   dispatchers of their stages
+    * @param token
+    *   the [[CancellationToken]] of the computation, through which its work is stopped once it has been cancelled
+    * @param totalActors
+    *   the total number of actors suggested to be spawned into the worker node, without considering this actor between them
+    * @param settings
+    *   the [[Settings]] for tuning the computation
+    * @param clusterSettings
+    *   the [[ClusterSettings]] for tuning the distribution of the computation
+    * @param metrics
+    *   the [[PipelineMetrics]] into which the metrics of each stage of the worker node are recorded
+    * @return
+    *   the behavior of a Node actor
+    */
+  def apply(
+    exceptionHandler: Throwable => Unit,
+    gate: SuspensionGate,
+    token: CancellationToken,
+    totalActors: Int,
+    settings: Settings,
+    clusterSettings: ClusterSettings,
+    metrics: PipelineMetrics
+  ): Behavior[Command] =
+    Behaviors.setup { c =>
+      val executors: StageExecutors = StageExecutors(c.system, settings.dispatchers, gate, token)
+      c.system.receptionist ! Receptionist.Subscribe(
+        ClusterGatewayActor.serviceKey,
+        c.messageAdapter[Receptionist.Listing](l => GatewaysCommand(l.serviceInstances(ClusterGatewayActor.serviceKey)))
+      )
+      Behaviors.receiveMessage {
+        case GatewaysCommand(g) =>
+          g.headOption
+            .fold(Behaviors.same[Command])(a => {
+              a ! JoinRequest(c.self)
+              awaitJoin(exceptionHandler, executors, token, totalActors, settings, clusterSettings, metrics)
+            })
+        case _ => Behaviors.unhandled
+      }
+    }
+
+  /* Node actor behavior for waiting the answer of the ClusterGateway actor to the request of joining the computation. */
+  private def awaitJoin(
+    exceptionHandler: Throwable => Unit,
+    executors: StageExecutors,
+    token: CancellationToken,
+    totalActors: Int,
+    settings: Settings,
+    clusterSettings: ClusterSettings,
+    metrics: PipelineMetrics
+  ): Behavior[Command] =
+    Behaviors.receive { (c, m) =>
+      m match {
+        case Joined(p, r, s) =>
+          implicit val dispatcher: ExecutionContext = c.system.dispatchers.lookup(DispatcherSelector.default())
+          Future(StopwordsGeneratorTask(FilePath(s)))(executors(FilterTaskType.Path)).onComplete {
+            case Failure(e) =>
+              exceptionHandler(e)
+              c.self ! PoisonPill
+            case Success(v) => c.self ! StopwordsSetCommand(v, c.self)
+          }
+          awaitStopwords(p, r, executors, token, totalActors, settings, clusterSettings, metrics)
+        case PoisonPill =>
+          c.log.info("The computation has already dispatched all of its documents, so this node has been turned away")
+          Behaviors.stopped
+        case GatewaysCommand(_) => Behaviors.same
+        case _                  => Behaviors.unhandled
+      }
+    }
+
+  /* Node actor behavior for waiting the StopwordsSet to be read and then spawning the actors of the worker node. */
+  private def awaitStopwords(
+    pathCoordinator: ActorRef[Command],
+    globalReducer: ActorRef[Command],
+    executors: StageExecutors,
+    token: CancellationToken,
+    totalActors: Int,
+    settings: Settings,
+    clusterSettings: ClusterSettings,
+    metrics: PipelineMetrics
+  ): Behavior[Command] =
+    Behaviors.receive { (c, m) =>
+      m match {
+        case StopwordsSetCommand(s, _) =>
+          val reducer: ActorRef[Command] =
+            c.spawn[Command](
+              ReducerActor(globalReducer, clusterSettings.reducer, producers = 1, lastCommand = NodeLeftCommand(c.self)),
+              name = "reducer_actor"
+            )
+          c.watch(reducer)
+          val (documentCoordinator, pageCoordinator) =
+            spawnStages(c, pathCoordinator, reducer, executors, token, totalActors, settings, metrics)
+          pageCoordinator ! StopwordsSetCommand(s, c.self)
+          running(documentCoordinator, reducer)
+        case PoisonPill =>
+          globalReducer ! NodeLeftCommand(c.self)
+          Behaviors.stopped
+        case GatewaysCommand(_) => Behaviors.same
+        case _                  => Behaviors.unhandled
+      }
+    }
+
+  /* Spawns the coordinators and the workers of the stages of the worker node, returning its DocumentCoordinator and
+   * PageCoordinator actors. The PathFilter actors register to the PathCoordinator actor of the seed node.
+   */
+  private def spawnStages(
+    c: ActorContext[Command],
+    pathCoordinator: ActorRef[Command],
+    reducer: ActorRef[Command],
+    executors: StageExecutors,
+    token: CancellationToken,
+    totalActors: Int,
+    settings: Settings,
+    metrics: PipelineMetrics
+  ): (ActorRef[Command], ActorRef[Command]) = {
+    val throttle: Option[Throttle] = settings.streaming.map(Throttle(_))
+    val budgetLoader: DocumentLoader =
+      settings.memoryBudget.fold(DocumentLoader())(b => DocumentLoader(b.maxBytes, b.scratchThreshold))
+    val loader: DocumentLoader = settings.virtualThreads.fold(budgetLoader)(DocumentLoader(budgetLoader, _))
+    val pageCoordinator: ActorRef[Command] =
+      c.spawn[Command](
+        CoordinatorActor.pageCoordinator(c.self, reducer, throttle, settings.credits, metrics.page),
+        name = "page_coordinator"
+      )
+    val documentCoordinator: ActorRef[Command] =
+      c.spawn[Command](
+        CoordinatorActor[DocumentCommand](c.self, pageCoordinator, settings.credits, metrics.document),
+        name = "document_coordinator"
+      )
+    def stageFilterFactory(stage: FilterTaskType.Value): Behavior[Command] =
+      stage match {
+        case FilterTaskType.Path     => pathFilterFactory(false)
+        case FilterTaskType.Document => documentFilterFactory(false)
+        case FilterTaskType.Page     => pageFilterFactory(false)
+      }
+    def pageFilterFactory(f: Boolean): Behavior[Command] =
+      FilterTaskActor(
+        c.self,
+        pageCoordinator,
+        reducer,
+        settings.pageFilterTask,
+        executors(FilterTaskType.Page),
+        metrics.page,
+        settings.combiner,
+        None,
+        None,
+        stageFilterFactory,
+        f
+      )
+    def documentFilterFactory(f: Boolean): Behavior[Command] =
+      throttle match {
+        case Some(t) =>
+          FilterTaskActor[DocumentCommand, Document, Page, PageCommand](
+            c.self,
+            documentCoordinator,
+            pageCoordinator,
+            StreamingDocumentFilterTask,
+            executors(FilterTaskType.Document),
+            token,
+            metrics.document,
+            t,
+            pageFilterFactory,
+            stageFilterFactory,
+            f
+          )
+        case None =>
+          FilterTaskActor[DocumentCommand, Document, Page, PageCommand](
+            c.self,
+            documentCoordinator,
+            pageCoordinator,
+            DocumentFilterTask,
+            executors(FilterTaskType.Document),
+            token,
+            metrics.document,
+            pageFilterFactory,
+            stageFilterFactory,
+            f
+          )
+      }
+    def pathFilterFactory(f: Boolean): Behavior[Command] =
+      settings.split match {
+        case Some(s) =>
+          FilterTaskActor[FilePathCommand, FilePath, Document, DocumentCommand](
+            c.self,
+            pathCoordinator,
+            documentCoordinator,
+            SplittingPathFilterTask(s.pagesPerRange, s.maxRanges, loader),
+            executors(FilterTaskType.Path),
+            token,
+            metrics.path,
+            documentFilterFactory,
+            stageFilterFactory,
+            f
+          )
+        case None =>
+          FilterTaskActor[FilePathCommand, FilePath, Document, DocumentCommand](
+            c.self,
+            pathCoordinator,
+            documentCoordinator,
+            PathFilterTask(loader),
+            executors(FilterTaskType.Path),
+            token,
+            metrics.path,
+            documentFilterFactory,
+            stageFilterFactory,
+            f
+          )
+      }
+    LazyList
+      .continually(FilterTaskType.values.toSeq)
+      .zipWithIndex
+      .flatMap(e => e._1.map((_, e._2.toString)))
+      .take(Math.max(totalActors - 3, 3))
+      .foreach {
+        case (FilterTaskType.Path, n)     => c.spawn[Command](pathFilterFactory(false), name = s"path_filter_actor_$n")
+        case (FilterTaskType.Document, n) => c.spawn[Command](documentFilterFactory(false), name = s"document_filter_actor_$n")
+        case (FilterTaskType.Page, n)     => c.spawn[Command](pageFilterFactory(false), name = s"page_filter_actor_$n")
+      }
+    settings
+      .rebalancing
+      .foreach(i =>
+        c.spawn[Command](
+          RebalancerActor(Map(FilterTaskType.Document -> documentCoordinator, FilterTaskType.Page -> pageCoordinator), i),
+          name = "rebalancer_actor"
+        )
+      )
+    settings.metricsLog.foreach(i => c.spawn[Command](MetricsReporterActor(metrics, i), name = "metrics_reporter_actor"))
+    (documentCoordinator, pageCoordinator)
+  }
+
+  /* The main state of a Node actor behavior, in which the worker node takes part in the computation until its Reducer actor has
+   * stopped.
+   */
+  private def running(documentCoordinator: ActorRef[Command], reducer: ActorRef[Command]): Behavior[Command] =
+    Behaviors
+      .receiveMessage[Command] {
+        case PoisonPill =>
+          documentCoordinator ! PoisonPill
+          Behaviors.same
+        case Ready | StopwordsAck(_) | GatewaysCommand(_) => Behaviors.same
+        case _                                            => Behaviors.unhandled
+      }
+      .receiveSignal { case (_, Terminated(`reducer`)) => Behaviors.stopped }
+}
@@ -2,17 +2,21 @@ package it.unibo.pcd.assignment3.actors.controller.actors
 
 import akka.actor.typed.{ActorRef, Behavior, DispatcherSelector}
 import akka.actor.typed.scaladsl.Behaviors
+import it.unibo.pcd.assignment3.actors.controller.Checkpoint
 import it.unibo.pcd.assignment3.actors.controller.actors.Command._
 import it.unibo.pcd.assignment3.actors.controller.actors.ConvertibleToCommand.RichConvertibleToCommand
 import it.unibo.pcd.assignment3.actors.model.entities.FilePath
 import it.unibo.pcd.assignment3.actors.model.tasks.{DocumentPathsGeneratorTask, StopwordsGeneratorTask}
 
+import java.nio.file.Path
 import scala.concurrent.{ExecutionContext, Future}
 import scala.util.{Failure, Success}
 
 /** The actor which starts the computation by reading the [[it.unibo.pcd.assignment3.actors.model.entities.StopwordsSet]] using
   * the corresponding [[FilePath]] and the [[FilePath]] of the PDF documents using the [[FilePath]] of their directory and then
-  * send them to the correct coordinator actors.
+  * send them to the correct coordinator actors. The directory is traversed recursively, listing its subdirectories in parallel
+  * and sending the [[FilePath]]s of the documents of each directory as soon as it has been listed. The documents which have
+  * already been completely processed by the computation being resumed from a [[Checkpoint]] are skipped.
   */
 object PathGeneratorActor {
 
@@ -33,6 +37,8 @@ object PathGeneratorActor {
     *   transformation chain
     * @param executor
     *   the executor on which the [[it.unibo.pcd.assignment3.actors.model.tasks.Task]]s will be executed
+    * @param completedDocuments
+    *   the absolute [[Path]]s of the documents already completely processed, which must not be processed again
     * @return
     *   the behavior of a PathGenerator actor
     */
@@ -43,7 +49,8 @@ object PathGeneratorActor {
     pathCoordinator: ActorRef[Command],
     pageCoordinator: ActorRef[Command],
     nextActorFactory: Boolean => Behavior[Command],
-    executor: ExecutionContext
+    executor: ExecutionContext,
+    completedDocuments: Set[Path]
   ): Behavior[Command] =
     Behaviors.setup { c =>
       implicit val dispatcher: ExecutionContext = c.system.dispatchers.lookup(DispatcherSelector.default())
@@ -53,13 +60,39 @@ object PathGeneratorActor {
       }
       Behaviors.receiveMessage {
         case StopwordsAck(_) =>
-          Future(DocumentPathsGeneratorTask(filesDirectory))(executor).onComplete {
+          traverse(filesDirectory, exceptionHandler, pathCoordinator, executor, completedDocuments).onComplete {
             case Failure(e) => exceptionHandler(e)
-            case Success(v) =>
-              (v.map[Command](_.toCommand).toSeq :+ PoisonPill).foreach(pathCoordinator ! _)
+            case Success(_) => pathCoordinator ! PoisonPill
           }
           nextActorFactory(false)
         case _ => Behaviors.unhandled
       }
     }
+
+  /* Lists the given directory and sends the paths of its documents to the PathCoordinator actor as soon as they are listed, from
+   * the largest to the smallest one, while listing its subdirectories in parallel. The returned future completes when all the
+   * subdirectories have been traversed, skipping the ones which could not be listed after having reported the exception. The
+   * documents already completed are not sent.
+   */
+  private def traverse(
+    directory: FilePath,
+    exceptionHandler: Throwable => Unit,
+    pathCoordinator: ActorRef[Command],
+    executor: ExecutionContext,
+    completedDocuments: Set[Path]
+  )(implicit dispatcher: ExecutionContext): Future[Unit] =
+    Future(DocumentPathsGeneratorTask(directory))(executor).flatMap(l => {
+      l.documents
+        .filterNot(d => completedDocuments.contains(Checkpoint.normalize(d.path)))
+        .foreach(pathCoordinator ! _.toCommand)
+      Future
+        .sequence(
+          l.directories
+            .map(d =>
+              traverse(d, exceptionHandler, pathCoordinator, executor, completedDocuments)
+                .recover { case e => exceptionHandler(e) }
+            )
+        )
+        .map(_ => ())
+    })
 }
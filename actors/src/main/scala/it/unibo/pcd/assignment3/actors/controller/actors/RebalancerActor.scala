@@ -0,0 +1,81 @@
+package it.unibo.pcd.assignment3.actors.controller.actors
+
+import akka.actor.typed.{ActorRef, Behavior}
+import akka.actor.typed.scaladsl.Behaviors
+import it.unibo.pcd.assignment3.actors.AnyOps.AnyOps
+import it.unibo.pcd.assignment3.actors.controller.actors.Command._
+import it.unibo.pcd.assignment3.actors.model.tasks.FilterTaskType
+
+import scala.concurrent.duration.FiniteDuration
+
+/** The actor which moves the worker actors between the stages of the data transformation chain while the computation is
+  * running, so that the slowest stage always has the most workers.
+  *
+  * At each interval it asks the coordinator actor of each stage for its load, which is made of the items waiting into the
+  * coordinator for a worker, the items in flight and the number of workers, idle or not. The pressure of a stage is the number of
+  * items, waiting or in flight, for each of its workers. If a stage has items waiting, it means that all of its workers are
+  * busy, so one idle worker is moved into it from the stage with the least pressure among the ones without items waiting and with
+  * more than one worker, so that no stage is left without workers. A stage which has been closed is never considered, and this
+  * actor stops when all stages have been closed.
+  */
+object RebalancerActor {
+
+  /* The load of a stage as last reported by its coordinator. */
+  private final case class StageLoad(pendingItems: Int, workers: Int, inFlightItems: Int, idleWorkers: Int, closed: Boolean) {
+
+    /* The number of items, waiting or in flight, for each worker of the stage. */
+    val pressure: Double = (pendingItems + inFlightItems).toDouble / Math.max(workers, 1)
+  }
+
+  /** Returns the behavior of a Rebalancer actor.
+    * @param coordinators
+    *   the coordinator actors of the stages of the data transformation chain, associated with the [[FilterTaskType]] of their
+    *   stages
+    * @param interval
+    *   the interval at which the load of the stages is sampled and the workers are moved between them
+    * @return
+    *   the behavior of a Rebalancer actor
+    */
+  def apply(coordinators: Map[FilterTaskType.Value, ActorRef[Command]], interval: FiniteDuration): Behavior[Command] =
+    Behaviors.withTimers { t =>
+      t.startTimerWithFixedDelay(TimerExpired, interval)
+      main(coordinators, Map.empty[FilterTaskType.Value, StageLoad])
+    }
+
+  /* The main state of a Rebalancer actor behavior, in which the loads of the stages reported since the last interval are kept. */
+  private def main(
+    coordinators: Map[FilterTaskType.Value, ActorRef[Command]],
+    loads: Map[FilterTaskType.Value, StageLoad]
+  ): Behavior[Command] =
+    Behaviors.receive { (c, m) =>
+      m match {
+        case TimerExpired if loads.size === coordinators.size && loads.values.forall(_.closed) => Behaviors.stopped
+        case TimerExpired =>
+          rebalance(coordinators, loads)
+          coordinators.values.foreach(_ ! LoadRequest(c.self))
+          main(coordinators, Map.empty[FilterTaskType.Value, StageLoad])
+        case StageLoadCommand(a, p, w, f, i, d) =>
+          coordinators
+            .find(_._2 === a)
+            .fold(Behaviors.same[Command])(e => main(coordinators, loads + (e._1 -> StageLoad(p, w, f, i, d))))
+        case _ => Behaviors.unhandled
+      }
+    }
+
+  /* Asks the coordinator of the least loaded stage with an idle worker to move it into the most loaded stage with items waiting,
+   * if there are both.
+   */
+  private def rebalance(
+    coordinators: Map[FilterTaskType.Value, ActorRef[Command]],
+    loads: Map[FilterTaskType.Value, StageLoad]
+  ): Unit = {
+    val openLoads: Map[FilterTaskType.Value, StageLoad] = loads.filter(!_._2.closed)
+    for {
+      (target, _) <- openLoads.filter(_._2.pendingItems > 0).maxByOption(_._2.pressure)
+      (source, _) <- openLoads
+        .filter(e => !(e._1 === target) && e._2.pendingItems === 0 && e._2.idleWorkers > 0 && e._2.workers > 1)
+        .minByOption(_._2.pressure)
+      coordinator <- coordinators.get(source)
+    } coordinator ! ReleaseWorkerCommand(target)
+  }
+}
@@ -0,0 +1,111 @@
+package it.unibo.pcd.assignment3.actors.controller.actors
+
+import akka.actor.typed.{ActorRef, Behavior}
+import akka.actor.typed.scaladsl.{Behaviors, TimerScheduler}
+import it.unibo.pcd.assignment3.actors.controller.Settings.CombinerSettings
+import it.unibo.pcd.assignment3.actors.controller.actors.Command._
+import it.unibo.pcd.assignment3.actors.controller.actors.ConvertibleToCommand._
+import it.unibo.pcd.assignment3.actors.model.entities.{Update, UpdateAccumulator}
+
+/** The actor which merges the [[Update]]s produced on the nodes of a cluster before sending them on, so that the [[Update]]s are
+  * reduced hierarchically and no single actor receives all of them. Each worker node has its own Reducer actor, receiving the
+  * [[Update]]s of its PageFilter actors and sending them to the global Reducer actor on the seed node, which in turn receives
+  * them from all the worker nodes and sends them to the UpdateSink actor. The PageFilter actors of the seed node send their
+  * [[Update]]s directly to the UpdateSink actor, so the global Reducer actor receives from the PageCoordinator actor of the seed
+  * node only its [[PoisonPill]].
+  *
+  * The merged [[Update]] is sent when it has grown larger than the maximum number of words or when it has waited for too long.
+  * The actor stops, sending the merged [[Update]] and then its last [[Command]] to the next actor, when it has received a
+  * [[PoisonPill]] from each of its producers, which are the ones it expects when created, and a [[NodeLeftCommand]] for each
+  * worker node which has joined the computation later. The Reducer actor of a worker node sends a [[NodeLeftCommand]] as its
+  * last [[Command]] when done, while the ClusterGateway actor sends one for each worker node which stops before, because it has
+  * crashed or it has left the cluster, so that the global Reducer actor never waits for a worker node which is gone. Only the
+  * first [[NodeLeftCommand]] of each worker node is considered.
+  *
+  * The documents in flight on a worker node which is gone are dispatched again to another worker, but the [[Update]]s of their
+  * pages which the worker node had already sent are not withdrawn, so such pages are counted twice.
+  */
+object ReducerActor {
+
+  /* The immutable part of the state of a Reducer actor. */
+  private final case class Environment(
+    nextActor: ActorRef[Command],
+    combinerSettings: CombinerSettings,
+    timerScheduler: TimerScheduler[Command],
+    lastCommand: Command
+  )
+
+  /** Returns the behavior of a Reducer actor.
+    * @param nextActor
+    *   the actor to which the merged [[Update]]s are sent, either the global Reducer actor or the UpdateSink actor
+    * @param combinerSettings
+    *   the [[CombinerSettings]] to be used for merging the received [[Update]]s
+    * @param producers
+    *   the number of producers from which a [[PoisonPill]] is expected before stopping, without considering the worker nodes
+    *   which will join the computation
+    * @param lastCommand
+    *   the [[Command]] sent to the next actor after the last merged [[Update]] when stopping
+    * @return
+    *   the behavior of a Reducer actor
+    */
+  def apply(
+    nextActor: ActorRef[Command],
+    combinerSettings: CombinerSettings,
+    producers: Int,
+    lastCommand: Command = PoisonPill
+  ): Behavior[Command] =
+    Behaviors.withTimers(t =>
+      main(Environment(nextActor, combinerSettings, t, lastCommand), producers, Set.empty[ActorRef[Command]], UpdateAccumulator())
+    )
+
+  /* The main state of a Reducer actor behavior, in which the number of producers still to be stopped is kept, along with the
+   * worker nodes among them.
+   */
+  private def main(
+    environment: Environment,
+    producers: Int,
+    nodes: Set[ActorRef[Command]],
+    accumulator: UpdateAccumulator
+  ): Behavior[Command] =
+    Behaviors.receiveMessage {
+      case u: UpdateCommand =>
+        accumulator.add(u.fromCommand)
+        if (accumulator.size >= environment.combinerSettings.maxWords) {
+          environment.timerScheduler.cancel(TimerExpired)
+          flush(environment.nextActor, accumulator)
+        } else if (!environment.timerScheduler.isTimerActive(TimerExpired)) {
+          environment.timerScheduler.startSingleTimer(TimerExpired, environment.combinerSettings.flushInterval)
+        }
+        Behaviors.same
+      case TimerExpired =>
+        flush(environment.nextActor, accumulator)
+        Behaviors.same
+      case NodeJoinedCommand(n)                    => main(environment, producers + 1, nodes + n, accumulator)
+      case NodeLeftCommand(n) if nodes.contains(n) => stopped(environment, producers, nodes - n, accumulator)
+      case NodeLeftCommand(_)                      => Behaviors.same
+      case PoisonPill                              => stopped(environment, producers, nodes, accumulator)
+      case _                                       => Behaviors.unhandled
+    }
+
+  /* Handles the stop of one of the producers, stopping the actor if it was the last one. */
+  private def stopped(
+    environment: Environment,
+    producers: Int,
+    nodes: Set[ActorRef[Command]],
+    accumulator: UpdateAccumulator
+  ): Behavior[Command] =
+    if (producers > 1) {
+      main(environment, producers - 1, nodes, accumulator)
+    } else {
+      environment.timerScheduler.cancel(TimerExpired)
+      flush(environment.nextActor, accumulator)
+      environment.nextActor ! environment.lastCommand
+      Behaviors.stopped
+    }
+
+  /* Sends the Update merged into the given accumulator to the next actor, if it contains anything, emptying it. */
+  private def flush(nextActor: ActorRef[Command], accumulator: UpdateAccumulator): Unit =
+    if (accumulator.processedWords > 0) {
+      nextActor ! accumulator.result().toCommand
+    }
+}
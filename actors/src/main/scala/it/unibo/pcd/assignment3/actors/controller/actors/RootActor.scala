@@ -3,15 +3,31 @@ package it.unibo.pcd.assignment3.actors.controller.actors
 import akka.actor.typed.{ActorRef, Behavior, Terminated}
 import akka.actor.typed.scaladsl.Behaviors
 import it.unibo.pcd.assignment3.actors.AnyOps.discard
+import it.unibo.pcd.assignment3.actors.controller.{
+  CancellationToken,
+  Checkpoint,
+  FrequencyStore,
+  PipelineMetrics,
+  ResultCache,
+  Settings,
+  StageExecutors,
+  SuspensionGate,
+  Throttle
+}
 import it.unibo.pcd.assignment3.actors.controller.actors.Command._
 import it.unibo.pcd.assignment3.actors.model.entities._
-import it.unibo.pcd.assignment3.actors.model.tasks.{DocumentFilterTask, FilterTaskType, PageFilterTask, PathFilterTask}
+import it.unibo.pcd.assignment3.actors.model.tasks._
 import it.unibo.pcd.assignment3.actors.view.View
 
-import scala.concurrent.ExecutionContext
+import java.nio.file.Path
+import scala.concurrent.duration.{FiniteDuration, MILLISECONDS}
 
 /** The root actor of the system, which has to start all actors and the computation with them and then wait for its completion,
-  * after which shuts down the actor system.
+  * after which shuts down the actor system. If the computation is distributed across a cluster, this is the root actor of the
+  * seed node, which also starts the ClusterGateway actor and the global Reducer actor through which the worker nodes take part
+  * in the computation, and the computation starts only when enough worker nodes have joined. If checkpoints are written and a
+  * [[Checkpoint]] of a computation on the same documents has been left by a previous run, the computation is resumed from it:
+  * its frequencies are sent to the UpdateSink actor before any other and its documents are not processed again.
   */
 object RootActor {
 
@@ -24,10 +40,19 @@ object RootActor {
     *   the maximum number of words to be considered in an [[Update]] when presenting it to the user
     * @param view
     *   the [[View]] component
-    * @param executor
-    *   the executor on which the [[it.unibo.pcd.assignment3.actors.model.tasks.Task]]s will be executed
+    * @param gate
+    *   the [[SuspensionGate]] through which the [[it.unibo.pcd.assignment3.actors.model.tasks.Task]]s are submitted to the
+    *   dispatchers of their stages
+    * @param token
+    *   the [[CancellationToken]] of the computation, through which its work is stopped once it has been cancelled
     * @param totalActors
     *   the total number of actors suggested to be spawned into the system, without considering the root actor between them
+    * @param settings
+    *   the [[Settings]] for tuning the computation
+    * @param resultCache
+    *   the [[ResultCache]] containing the results of the documents already processed, if they should be reused
+    * @param metrics
+    *   the [[PipelineMetrics]] into which the metrics of each stage of the computation are recorded
     * @return
     *   the behavior of a root actor
     */
@@ -36,18 +61,96 @@ object RootActor {
     stopwordsFile: FilePath,
     wordsNumber: Int,
     view: View,
-    executor: ExecutionContext,
-    totalActors: Int
+    gate: SuspensionGate,
+    token: CancellationToken,
+    totalActors: Int,
+    settings: Settings,
+    resultCache: Option[ResultCache],
+    metrics: PipelineMetrics
   ): Behavior[Command] =
     Behaviors.setup[Command] { c =>
-      val updateSinkActor = c.spawn[Command](UpdateSinkActor(c.self, wordsNumber, view), name = "update_sink_actor")
+      val executors: StageExecutors = StageExecutors(c.system, settings.dispatchers, gate, token)
+      val frequencyStore: Option[FrequencyStore] =
+        settings.sharedStore.filter(_ => settings.approximate.isEmpty).map(_ => FrequencyStore())
+      val updateSinkActor = c.spawn[Command](
+        UpdateSinkActor(
+          c.self,
+          wordsNumber,
+          view,
+          frequencyStore,
+          settings.sharedStore.getOrElse(FiniteDuration((1000.0 / 60.0).round, MILLISECONDS)),
+          settings.approximate,
+          metrics.sink
+        ),
+        name = "update_sink_actor"
+      )
       c.watch(updateSinkActor)
+      val checkpoint: Option[Checkpoint] =
+        settings
+          .checkpoint
+          .flatMap(k => Checkpoint.read(k.file).toOption)
+          .filter(_.resumes(filesDirectory, stopwordsFile))
+      checkpoint.foreach(k => updateSinkActor ! UpdateCommand(k.update.words, k.update.counts, k.update.processedWords))
+      val throttle: Option[Throttle] = settings.streaming.map(Throttle(_))
+      val globalReducer: Option[ActorRef[Command]] =
+        settings
+          .cluster
+          .map(s => c.spawn[Command](ReducerActor(updateSinkActor, s.reducer, producers = 1), name = "reducer_actor"))
       val pageCoordinator: ActorRef[Command] =
-        c.spawn[Command](CoordinatorActor.pageCoordinator(c.self, updateSinkActor), name = "page_coordinator")
+        c.spawn[Command](
+          CoordinatorActor
+            .pageCoordinator(c.self, globalReducer.getOrElse(updateSinkActor), throttle, settings.credits, metrics.page),
+          name = "page_coordinator"
+        )
       val documentCoordinator: ActorRef[Command] =
-        c.spawn[Command](CoordinatorActor[DocumentCommand](c.self, pageCoordinator), name = "document_coordinator")
+        c.spawn[Command](
+          CoordinatorActor[DocumentCommand](c.self, pageCoordinator, settings.credits, metrics.document),
+          name = "document_coordinator"
+        )
+      val clusterGateway: Option[ActorRef[Command]] =
+        settings
+          .cluster
+          .zip(globalReducer)
+          .map(e =>
+            c.spawn[Command](
+              ClusterGatewayActor(c.self, documentCoordinator, e._2, stopwordsFile, e._1.minNodes),
+              name = "cluster_gateway_actor"
+            )
+          )
       val pathCoordinator: ActorRef[Command] =
-        c.spawn[Command](CoordinatorActor[FilePathCommand](c.self, documentCoordinator), name = "path_coordinator")
+        c.spawn[Command](
+          CoordinatorActor[FilePathCommand](
+            c.self,
+            clusterGateway.getOrElse(documentCoordinator),
+            settings.credits,
+            metrics.path
+          ),
+          name = "path_coordinator"
+        )
+      val documentTrackerActor: Option[ActorRef[Command]] =
+        Option.when(
+          (resultCache.isDefined || settings.watch.isDefined || settings.checkpoint.isDefined) &&
+            settings.cluster.isEmpty &&
+            settings.approximate.isEmpty
+        )(
+          c.spawn[Command](
+            DocumentTrackerActor(
+              pathCoordinator,
+              updateSinkActor,
+              resultCache,
+              DocumentKeyGeneratorTask(settings.cache.exists(_.hashContent)),
+              executors(FilterTaskType.Path),
+              filesDirectory,
+              settings.watch,
+              stopwordsFile,
+              settings.checkpoint,
+              checkpoint
+            ),
+            name = "document_tracker_actor"
+          )
+        )
+      documentTrackerActor.foreach(c.watch(_))
+      settings.metricsLog.foreach(i => c.spawn[Command](MetricsReporterActor(metrics, i), name = "metrics_reporter_actor"))
       awaitCoordinators(
         spawnCount = 4,
         pathCoordinator,
@@ -58,8 +161,16 @@ object RootActor {
         stopwordsFile,
         wordsNumber,
         view,
-        executor,
-        totalActors - 4
+        executors,
+        token,
+        totalActors - 4,
+        settings,
+        frequencyStore,
+        throttle,
+        documentTrackerActor,
+        clusterGateway,
+        metrics,
+        checkpoint.fold(Set.empty[Path])(_.documents.map(_.path.path))
       )
     }
 
@@ -74,8 +185,16 @@ object RootActor {
     stopwordsFile: FilePath,
     wordsNumber: Int,
     view: View,
-    executor: ExecutionContext,
-    totalActors: Int
+    executors: StageExecutors,
+    token: CancellationToken,
+    totalActors: Int,
+    settings: Settings,
+    frequencyStore: Option[FrequencyStore],
+    throttle: Option[Throttle],
+    documentTrackerActor: Option[ActorRef[Command]],
+    clusterGateway: Option[ActorRef[Command]],
+    metrics: PipelineMetrics,
+    completedDocuments: Set[Path]
   ): Behavior[Command] =
     Behaviors.receive[Command] { (c, m) =>
       m match {
@@ -90,39 +209,138 @@ object RootActor {
             stopwordsFile,
             wordsNumber,
             view,
-            executor,
-            totalActors
+            executors,
+            token,
+            totalActors,
+            settings,
+            frequencyStore,
+            throttle,
+            documentTrackerActor,
+            clusterGateway,
+            metrics,
+            completedDocuments
           )
         case Ready =>
-          val pageFilterFactory: Boolean => Behavior[Command] = f =>
-            FilterTaskActor(
-              c.self,
-              pageCoordinator,
-              updateSinkActor,
-              PageFilterTask,
-              executor,
-              f
-            )
-          val documentFilterFactory: Boolean => Behavior[Command] = f =>
-            FilterTaskActor[DocumentCommand, Document, Page, PageCommand](
-              c.self,
-              documentCoordinator,
-              pageCoordinator,
-              DocumentFilterTask,
-              executor,
-              pageFilterFactory,
-              f
-            )
-          val pathFilterFactory: Boolean => Behavior[Command] = f =>
-            FilterTaskActor[FilePathCommand, FilePath, Document, DocumentCommand](
-              c.self,
-              pathCoordinator,
-              documentCoordinator,
-              PathFilterTask,
-              executor,
-              documentFilterFactory,
-              f
-            )
+          val budgetLoader: DocumentLoader =
+            settings.memoryBudget.fold(DocumentLoader())(b => DocumentLoader(b.maxBytes, b.scratchThreshold))
+          val loader: DocumentLoader = settings.virtualThreads.fold(budgetLoader)(DocumentLoader(budgetLoader, _))
+          def stageFilterFactory(stage: FilterTaskType.Value): Behavior[Command] =
+            stage match {
+              case FilterTaskType.Path     => pathFilterFactory(false)
+              case FilterTaskType.Document => documentFilterFactory(false)
+              case FilterTaskType.Page     => pageFilterFactory(false)
+            }
+          def pageFilterFactory(f: Boolean): Behavior[Command] =
+            settings
+              .approximate
+              .fold(
+                FilterTaskActor(
+                  c.self,
+                  pageCoordinator,
+                  updateSinkActor,
+                  settings.pageFilterTask,
+                  executors(FilterTaskType.Page),
+                  metrics.page,
+                  settings.combiner,
+                  frequencyStore,
+                  documentTrackerActor,
+                  stageFilterFactory,
+                  f
+                )
+              )(a =>
+                FilterTaskActor.sketching(
+                  c.self,
+                  pageCoordinator,
+                  updateSinkActor,
+                  SketchingPageFilterTask,
+                  executors(FilterTaskType.Page),
+                  metrics.page,
+                  a,
+                  stageFilterFactory,
+                  f
+                )
+              )
+          def documentFilterFactory(f: Boolean): Behavior[Command] =
+            throttle match {
+              case Some(t) =>
+                FilterTaskActor[DocumentCommand, Document, Page, PageCommand](
+                  c.self,
+                  documentCoordinator,
+                  pageCoordinator,
+                  documentTrackerActor.fold[StreamingTask[Document, Page]](StreamingDocumentFilterTask)(r =>
+                    ReportingStreamingDocumentFilterTask(StreamingDocumentFilterTask, p => r ! DocumentDiscardedCommand(p.path))
+                  ),
+                  executors(FilterTaskType.Document),
+                  token,
+                  metrics.document,
+                  t,
+                  pageFilterFactory,
+                  stageFilterFactory,
+                  f
+                )
+              case None =>
+                FilterTaskActor[DocumentCommand, Document, Page, PageCommand](
+                  c.self,
+                  documentCoordinator,
+                  pageCoordinator,
+                  documentTrackerActor.fold[IterableTask[Document, Page]](DocumentFilterTask)(r =>
+                    ReportingDocumentFilterTask(DocumentFilterTask, p => r ! DocumentDiscardedCommand(p.path))
+                  ),
+                  executors(FilterTaskType.Document),
+                  token,
+                  metrics.document,
+                  pageFilterFactory,
+                  stageFilterFactory,
+                  f
+                )
+            }
+          def pathFilterFactory(f: Boolean): Behavior[Command] =
+            (settings.split, documentTrackerActor) match {
+              case (r, Some(t)) =>
+                FilterTaskActor[FilePathCommand, FilePath, Document, DocumentCommand](
+                  c.self,
+                  pathCoordinator,
+                  documentCoordinator,
+                  ReportingPathFilterTask(
+                    r.fold[FilePath => Iterable[Document]](p => Seq(PathFilterTask(loader)(p)))(s =>
+                      SplittingPathFilterTask(s.pagesPerRange, s.maxRanges, loader)
+                    ),
+                    p => t ! DocumentDiscardedCommand(p.path)
+                  ),
+                  executors(FilterTaskType.Path),
+                  token,
+                  metrics.path,
+                  documentFilterFactory,
+                  stageFilterFactory,
+                  f
+                )
+              case (Some(s), None) =>
+                FilterTaskActor[FilePathCommand, FilePath, Document, DocumentCommand](
+                  c.self,
+                  pathCoordinator,
+                  documentCoordinator,
+                  SplittingPathFilterTask(s.pagesPerRange, s.maxRanges, loader),
+                  executors(FilterTaskType.Path),
+                  token,
+                  metrics.path,
+                  documentFilterFactory,
+                  stageFilterFactory,
+                  f
+                )
+              case _ =>
+                FilterTaskActor[FilePathCommand, FilePath, Document, DocumentCommand](
+                  c.self,
+                  pathCoordinator,
+                  documentCoordinator,
+                  PathFilterTask(loader),
+                  executors(FilterTaskType.Path),
+                  token,
+                  metrics.path,
+                  documentFilterFactory,
+                  stageFilterFactory,
+                  f
+                )
+            }
           val workersToSpawn: LazyList[(FilterTaskType.Value, String)] =
             LazyList
               .continually(FilterTaskType.values.toSeq)
@@ -134,8 +352,24 @@ object RootActor {
             case (FilterTaskType.Document, n) => c.spawn[Command](documentFilterFactory(true), name = s"document_filter_actor_$n")
             case (FilterTaskType.Page, n)     => c.spawn[Command](pageFilterFactory(true), name = s"page_filter_actor_$n")
           }
+          settings
+            .rebalancing
+            .foreach(i =>
+              c.spawn[Command](
+                RebalancerActor(
+                  Map(
+                    FilterTaskType.Path -> pathCoordinator,
+                    FilterTaskType.Document -> documentCoordinator,
+                    FilterTaskType.Page -> pageCoordinator
+                  ),
+                  i
+                ),
+                name = "rebalancer_actor"
+              )
+            )
+          clusterGateway.foreach(_ ! PathCoordinatorCommand(pathCoordinator))
           awaitWorkers(
-            workersToSpawn.size,
+            workersToSpawn.size + clusterGateway.size,
             pathCoordinator,
             pageCoordinator,
             pathFilterFactory,
@@ -143,7 +377,9 @@ object RootActor {
             filesDirectory,
             stopwordsFile,
             view,
-            executor
+            executors,
+            documentTrackerActor,
+            completedDocuments
           )
         case _ => Behaviors.unhandled
       }
@@ -161,7 +397,9 @@ object RootActor {
     filesDirectory: FilePath,
     stopwordsFile: FilePath,
     view: View,
-    executor: ExecutionContext
+    executors: StageExecutors,
+    documentTrackerActor: Option[ActorRef[Command]],
+    completedDocuments: Set[Path]
   ): Behavior[Command] =
     Behaviors.receive { (c, m) =>
       m match {
@@ -175,7 +413,9 @@ object RootActor {
             filesDirectory,
             stopwordsFile,
             view,
-            executor
+            executors,
+            documentTrackerActor,
+            completedDocuments
           )
         case Ready =>
           discard {
@@ -184,15 +424,21 @@ object RootActor {
                 filesDirectory,
                 stopwordsFile,
                 e => view.displayError(e.getMessage),
-                pathCoordinator,
+                documentTrackerActor.getOrElse(pathCoordinator),
                 pageCoordinator,
                 pathFilterFactory,
-                executor
+                executors(FilterTaskType.Path),
+                completedDocuments
               ),
               name = "path_generator_actor"
             )
           }
-          Behaviors.receiveSignal { case (_, Terminated(`updateSinkActor`)) => Behaviors.stopped }
+          Behaviors.receiveSignal { case (_, Terminated(`updateSinkActor`)) =>
+            documentTrackerActor.fold(Behaviors.stopped[Command])(r => {
+              r ! PoisonPill
+              Behaviors.receiveSignal { case (_, Terminated(`r`)) => Behaviors.stopped }
+            })
+          }
         case _ => Behaviors.unhandled
       }
     }
@@ -2,18 +2,31 @@ package it.unibo.pcd.assignment3.actors.controller.actors
 
 import akka.actor.typed.{ActorRef, Behavior}
 import akka.actor.typed.scaladsl.{Behaviors, TimerScheduler}
-import it.unibo.pcd.assignment3.actors.controller.actors.Command.{PoisonPill, Ready, TimerExpired, UpdateCommand}
-import it.unibo.pcd.assignment3.actors.model.entities.Update
+import it.unibo.pcd.assignment3.actors.AnyOps.discard
+import it.unibo.pcd.assignment3.actors.controller.{FrequencyStore, StageMetrics}
+import it.unibo.pcd.assignment3.actors.controller.Settings.ApproximateSettings
+import it.unibo.pcd.assignment3.actors.controller.actors.Command.{PoisonPill, Ready, SketchCommand, TimerExpired, UpdateCommand}
+import it.unibo.pcd.assignment3.actors.model.entities.{Ranking, Update, WordDictionary, WordSketch}
 import it.unibo.pcd.assignment3.actors.view.View
 
-import scala.collection.immutable.ListMap
+import java.util.Arrays
 import scala.concurrent.duration.{FiniteDuration, MILLISECONDS}
 
 /** The actor which is last in the data transformation chain, the one whose job is accumulate the [[Update]]s coming from the
   * PageFilterWorker actors, the workers of the PageCoordinator actor, and publish them to the user through the [[View]] component
-  * at a fixed rate. This is the actor which, when shut down, causes the entire system to shut down itself, because it means that
-  * no other [[Update]]s will be published, which follows from the fact that no other input is to be processed, meaning that the
-  * computation is over.
+  * at a fixed rate. The most frequent words to be published are kept in a [[Ranking]] which is updated while merging the
+  * [[Update]]s, so that publishing them does not depend on the number of words found. This is the actor which, when shut down,
+  * causes the entire system to shut down itself, because it means that no other [[Update]]s will be published, which follows
+  * from the fact that no other input is to be processed, meaning that the computation is over. If the [[Update]]s are
+  * accumulated by the PageFilterWorker actors into a shared [[FrequencyStore]], this actor only samples the store for publishing
+  * its content. The [[Update]]s can also contain negative frequencies, for subtracting the contribution of a document which has
+  * changed, in which case the [[Ranking]] is built again from all the frequencies. A subtraction can arrive before the additions
+  * it cancels, so negative frequencies are kept until they are cancelled. The frequencies are accumulated into an array indexed
+  * by the ids of the words, so merging an [[Update]] only sums primitive values, and the words themselves are looked up into
+  * the shared [[WordDictionary]] only for updating the [[Ranking]]. If the words are counted approximately, this actor receives
+  * [[WordSketch]]es instead of [[Update]]s and merges them into its own, publishing the most frequent words with the estimates
+  * of their frequencies, along with the estimated number of distinct words and the bound on the error of the frequencies. The
+  * [[Update]]s received and the time spent merging them are recorded into the [[StageMetrics]] of this actor.
   */
 object UpdateSinkActor {
 
@@ -24,57 +37,129 @@ object UpdateSinkActor {
     *   the maximum number of words to be considered in an [[Update]] when presenting it to the user
     * @param view
     *   the [[View]] component
+    * @param frequencyStore
+    *   the [[FrequencyStore]] into which the [[Update]]s are accumulated by the PageFilterWorker actors, if they do so
+    * @param sampleInterval
+    *   the interval at which the [[FrequencyStore]] is sampled, if there is one
+    * @param approximateSettings
+    *   the [[ApproximateSettings]] with which the received [[WordSketch]]es have been created, if the words are counted
+    *   approximately, in which case the [[FrequencyStore]] is ignored
+    * @param metrics
+    *   the [[StageMetrics]] into which the [[Update]]s received and the time spent merging them are recorded
     * @return
     *   the behavior of an UpdateSink actor
     */
   def apply(
     root: ActorRef[Command],
     wordsNumber: Int,
-    view: View
+    view: View,
+    frequencyStore: Option[FrequencyStore],
+    sampleInterval: FiniteDuration,
+    approximateSettings: Option[ApproximateSettings],
+    metrics: StageMetrics
   ): Behavior[Command] =
     Behaviors.setup { _ =>
       root ! Ready
       Behaviors.withTimers { s =>
         val timerKey: Int = 0
-        s.startTimerAtFixedRate(timerKey, TimerExpired, FiniteDuration((1000.0 / 60.0).round, MILLISECONDS))
-        main(s, timerKey, wordsNumber, view, Update(Map.empty[String, Long], 0), poisoned = false)
+        (approximateSettings, frequencyStore) match {
+          case (Some(a), _) =>
+            s.startTimerAtFixedRate(timerKey, TimerExpired, FiniteDuration((1000.0 / 60.0).round, MILLISECONDS))
+            val sketch: WordSketch = WordSketch(a.width, a.depth, a.heavyHitters, a.precision)
+            estimating(s, timerKey, wordsNumber, view, metrics, sketch, poisoned = false)
+          case (None, Some(f)) =>
+            s.startTimerAtFixedRate(timerKey, TimerExpired, sampleInterval)
+            sampling(s, timerKey, wordsNumber, view, metrics, f, poisoned = false)
+          case _ =>
+            s.startTimerAtFixedRate(timerKey, TimerExpired, FiniteDuration((1000.0 / 60.0).round, MILLISECONDS))
+            main(s, timerKey, view, metrics, new Totals(), Ranking(wordsNumber), poisoned = false)
+        }
+      }
+    }
+
+  /* The frequencies of all the words found, in an array indexed by the id of each word in the shared WordDictionary which grows
+   * along with it, and the number of words processed. It is owned by the UpdateSink actor, which updates it in place.
+   */
+  private final class Totals {
+    var frequencies: Array[Long] = new Array[Long](1024)
+    var processedWords: Long = 0
+
+    /* Adds the given frequency to the one of the word with the given id, returning the new frequency of the word. */
+    def add(id: Int, frequency: Long): Long = {
+      if (id >= frequencies.length) {
+        frequencies = Arrays.copyOf(frequencies, Math.max(frequencies.length * 2, id + 1))
       }
+      frequencies(id) += frequency
+      frequencies(id)
     }
+  }
 
   /* The main state of a UpdateSink actor behavior. */
   private def main(
+    timerScheduler: TimerScheduler[Command],
+    timerKey: Int,
+    view: View,
+    metrics: StageMetrics,
+    totals: Totals,
+    ranking: Ranking,
+    poisoned: Boolean
+  ): Behavior[Command] =
+    Behaviors.receiveMessage {
+      case UpdateCommand(i, f, w) if f.exists(_ < 0) =>
+        val updatedRanking: Ranking = merging(metrics) {
+          i.indices.foreach(j => discard(totals.add(i(j), f(j))))
+          totals.processedWords += w
+          totals
+            .frequencies
+            .indices
+            .foldLeft(Ranking(ranking.size))((r, j) =>
+              if (totals.frequencies(j) > 0) r.updated(WordDictionary.shared.word(j), totals.frequencies(j)) else r
+            )
+        }
+        main(timerScheduler, timerKey, view, metrics, totals, updatedRanking, poisoned)
+      case UpdateCommand(i, f, w) =>
+        val updatedRanking: Ranking = merging(metrics) {
+          totals.processedWords += w
+          i.indices.foldLeft(ranking)((r, j) => {
+            val frequency: Long = totals.add(i(j), f(j))
+            if (frequency > 0) r.updated(WordDictionary.shared.word(i(j)), frequency) else r
+          })
+        }
+        main(timerScheduler, timerKey, view, metrics, totals, updatedRanking, poisoned)
+      case PoisonPill => main(timerScheduler, timerKey, view, metrics, totals, ranking, poisoned = true)
+      case TimerExpired =>
+        if (totals.processedWords > 0) {
+          view.displayProgress(ranking.words, totals.processedWords)
+        }
+        if (poisoned) {
+          view.displayCompletion()
+          timerScheduler.cancel(timerKey)
+          Behaviors.stopped
+        } else {
+          Behaviors.same
+        }
+      case _ => Behaviors.unhandled
+    }
+
+  /* The state of a UpdateSink actor behavior in which it samples the FrequencyStore into which the Updates are accumulated. */
+  private def sampling(
     timerScheduler: TimerScheduler[Command],
     timerKey: Int,
     wordsNumber: Int,
     view: View,
-    cumulatedUpdate: Update,
+    metrics: StageMetrics,
+    frequencyStore: FrequencyStore,
     poisoned: Boolean
   ): Behavior[Command] =
     Behaviors.receiveMessage {
-      case UpdateCommand(f, w) =>
-        main(
-          timerScheduler,
-          timerKey,
-          wordsNumber,
-          view,
-          Update(
-            f.foldLeft(cumulatedUpdate.frequencies)((m, e) => m + (e._1 -> (m.getOrElse(e._1, 0L) + e._2))),
-            cumulatedUpdate.processedWords + w
-          ),
-          poisoned
-        )
-      case PoisonPill => main(timerScheduler, timerKey, wordsNumber, view, cumulatedUpdate, poisoned = true)
+      case UpdateCommand(i, f, w) =>
+        merging(metrics)(frequencyStore.add(Update(i, f, w)))
+        Behaviors.same
+      case PoisonPill => sampling(timerScheduler, timerKey, wordsNumber, view, metrics, frequencyStore, poisoned = true)
       case TimerExpired =>
-        if (cumulatedUpdate.processedWords > 0) {
-          view.displayProgress(
-            cumulatedUpdate
-              .frequencies
-              .toSeq
-              .sorted(Ordering.by[(String, Long), Long](_._2).reverse.orElse(Ordering.by[(String, Long), String](_._1)))
-              .take(wordsNumber)
-              .to(ListMap.mapFactory[String, Long]),
-            cumulatedUpdate.processedWords
-          )
+        val processedWords: Long = frequencyStore.processedWords
+        if (processedWords > 0) {
+          view.displayProgress(frequencyStore.mostFrequent(wordsNumber), processedWords)
         }
         if (poisoned) {
           view.displayCompletion()
@@ -85,4 +170,43 @@ object UpdateSinkActor {
         }
       case _ => Behaviors.unhandled
     }
+
+  /* The state of a UpdateSink actor behavior in which it merges the WordSketches summarizing the words counted approximately. */
+  private def estimating(
+    timerScheduler: TimerScheduler[Command],
+    timerKey: Int,
+    wordsNumber: Int,
+    view: View,
+    metrics: StageMetrics,
+    sketch: WordSketch,
+    poisoned: Boolean
+  ): Behavior[Command] =
+    Behaviors.receiveMessage {
+      case SketchCommand(k) =>
+        merging(metrics)(sketch.merge(k))
+        Behaviors.same
+      case PoisonPill => estimating(timerScheduler, timerKey, wordsNumber, view, metrics, sketch, poisoned = true)
+      case TimerExpired =>
+        if (sketch.processedWords > 0) {
+          view.displayProgress(sketch.mostFrequent(wordsNumber), sketch.processedWords)
+          view.displayEstimates(sketch.distinctWords, sketch.errorBound)
+        }
+        if (poisoned) {
+          view.displayCompletion()
+          timerScheduler.cancel(timerKey)
+          Behaviors.stopped
+        } else {
+          Behaviors.same
+        }
+      case _ => Behaviors.unhandled
+    }
+
+  /* Merges an Update through the given function, recording the Update and the time spent merging it into the given metrics. */
+  private def merging[A](metrics: StageMetrics)(merge: => A): A = {
+    metrics.received()
+    val start: Long = System.nanoTime()
+    val result: A = merge
+    metrics.executed(System.nanoTime() - start, 0)
+    result
+  }
 }
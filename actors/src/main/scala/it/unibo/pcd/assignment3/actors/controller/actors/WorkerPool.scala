@@ -0,0 +1,209 @@
+package it.unibo.pcd.assignment3.actors.controller.actors
+
+import akka.actor.typed.ActorRef
+import it.unibo.pcd.assignment3.actors.controller.StageMetrics
+
+import scala.collection.immutable.{Queue, TreeSet}
+
+/** The pool of the worker actors registered to a coordinator actor, along with the items which are still to be dispatched to
+  * them. Each worker is granted a fixed number of credits, the number of items it can process at the same time, and each item
+  * it receives consumes one of its credits until it is made available again. The items which cannot be dispatched because no
+  * worker has credits left are queued into the pool, so that they are dispatched to the first worker which completes one of its
+  * items instead of piling up into the mailbox of a worker which could be slower than the others. The workers with credits left
+  * are kept sorted by the number of their items in flight, so that finding the least loaded worker has a logarithmic cost. The
+  * items entering the pool, the time they wait into it and the number of its workers are recorded into the [[StageMetrics]] of
+  * its stage.
+  *
+  * A worker which could fail without the pool being able to tell which of its items it has completed, such as a worker on
+  * another node of a cluster, can be registered as a tracked one. A tracked worker is granted a single credit, so that the item
+  * it has in flight is always known and can be dispatched again to another worker if the tracked one fails.
+  *
+  * It must be constructed through its companion object.
+  */
+sealed trait WorkerPool {
+
+  /** Returns the workers registered into this pool associated with the number of their items in flight. */
+  val workers: Map[ActorRef[Command], Int]
+
+  /** Returns the [[StageMetrics]] of the stage of this pool. */
+  val metrics: StageMetrics
+
+  /** Returns whether there are items which are still to be dispatched or not. */
+  def hasPending: Boolean
+
+  /** Returns the number of items which are still to be dispatched. */
+  def pendingItems: Int
+
+  /** Returns one of the workers which have no items in flight, if any. */
+  def idleWorker: Option[ActorRef[Command]]
+
+  /** Returns a new pool in which the given worker is registered, with all of its credits available.
+    * @param worker
+    *   the worker to be registered
+    * @return
+    *   a new [[WorkerPool]] in which the given worker is registered
+    */
+  def registered(worker: ActorRef[Command]): WorkerPool
+
+  /** Returns a new pool in which the given worker is registered as a tracked one, with a single credit, so that its item in
+    * flight, if any, is remembered.
+    * @param worker
+    *   the worker to be registered
+    * @return
+    *   a new [[WorkerPool]] in which the given worker is registered as a tracked one
+    */
+  def registeredTracked(worker: ActorRef[Command]): WorkerPool
+
+  /** Returns a new pool in which the given worker has completed one of its items, giving back its credit.
+    * @param worker
+    *   the worker which has completed one of its items
+    * @return
+    *   a new [[WorkerPool]] in which the given worker has one more credit available
+    */
+  def completed(worker: ActorRef[Command]): WorkerPool
+
+  /** Returns a new pool in which the given worker is no longer registered, so that no more items are dispatched to it.
+    * @param worker
+    *   the worker to be unregistered
+    * @return
+    *   a new [[WorkerPool]] in which the given worker is not registered
+    */
+  def unregistered(worker: ActorRef[Command]): WorkerPool
+
+  /** Returns a new pool in which the given worker, which has failed, is no longer registered and its item in flight, if it was a
+    * tracked one, is queued again for being dispatched before all others.
+    * @param worker
+    *   the worker which has failed
+    * @return
+    *   a new [[WorkerPool]] in which the given worker is not registered and its item in flight is queued again
+    */
+  def failed(worker: ActorRef[Command]): WorkerPool
+
+  /** Returns a new pool in which the given item is queued for being dispatched.
+    * @param item
+    *   the item to be dispatched
+    * @return
+    *   a new [[WorkerPool]] in which the given item is queued
+    */
+  def enqueued(item: Command): WorkerPool
+
+  /** Sends the queued items to the least loaded workers with credits left, until either the items or the credits are over.
+    * @return
+    *   a new [[WorkerPool]] in which the sent items are no longer queued and their credits have been consumed
+    */
+  def dispatched(): WorkerPool
+}
+
+/** Companion object to the [[WorkerPool]] trait, containing its factory method. */
+object WorkerPool {
+
+  /* The order of the workers with credits left, from the least loaded one, ties broken by their paths. */
+  private val order: Ordering[(Int, ActorRef[Command])] =
+    Ordering.by[(Int, ActorRef[Command]), Int](_._1).orElse(Ordering.by[(Int, ActorRef[Command]), String](_._2.path.toString))
+
+  /* An implementation of the WorkerPool trait. */
+  private final case class WorkerPoolImpl(
+    credits: Int,
+    metrics: StageMetrics,
+    workers: Map[ActorRef[Command], Int],
+    ready: TreeSet[(Int, ActorRef[Command])],
+    pending: Queue[(Command, Long)],
+    tracked: Map[ActorRef[Command], Option[Command]]
+  ) extends WorkerPool {
+
+    override def hasPending: Boolean = pending.nonEmpty
+
+    override def pendingItems: Int = pending.size
+
+    override def idleWorker: Option[ActorRef[Command]] = ready.headOption.collect { case (0, w) => w }
+
+    override def registered(worker: ActorRef[Command]): WorkerPool = {
+      val updatedWorkers: Map[ActorRef[Command], Int] = workers + (worker -> 0)
+      metrics.workers(updatedWorkers.size)
+      copy(workers = updatedWorkers, ready = ready + ((0, worker)))
+    }
+
+    override def registeredTracked(worker: ActorRef[Command]): WorkerPool = {
+      val updatedWorkers: Map[ActorRef[Command], Int] = workers + (worker -> 0)
+      metrics.workers(updatedWorkers.size)
+      copy(workers = updatedWorkers, ready = ready + ((0, worker)), tracked = tracked + (worker -> None))
+    }
+
+    override def completed(worker: ActorRef[Command]): WorkerPool =
+      workers
+        .get(worker)
+        .filter(_ > 0)
+        .map(n =>
+          copy(
+            workers = workers + (worker -> (n - 1)),
+            ready = ready - ((n, worker)) + ((n - 1, worker)),
+            tracked = if (tracked.contains(worker)) tracked + (worker -> None) else tracked
+          ): WorkerPool
+        )
+        .getOrElse(this)
+
+    override def unregistered(worker: ActorRef[Command]): WorkerPool = without(worker)
+
+    override def failed(worker: ActorRef[Command]): WorkerPool = {
+      val pool: WorkerPoolImpl = without(worker)
+      tracked.get(worker).flatten.fold(pool)(i => pool.copy(pending = pool.pending.prepended((i, System.nanoTime()))))
+    }
+
+    override def enqueued(item: Command): WorkerPool = {
+      metrics.received()
+      copy(pending = pending.enqueue((item, System.nanoTime())))
+    }
+
+    override def dispatched(): WorkerPool = if (pending.nonEmpty) dispatched(System.nanoTime()) else this
+
+    /* Returns this pool without the given worker and without its item in flight. */
+    private def without(worker: ActorRef[Command]): WorkerPoolImpl = {
+      val updatedWorkers: Map[ActorRef[Command], Int] = workers - worker
+      metrics.workers(updatedWorkers.size)
+      copy(
+        workers = updatedWorkers,
+        ready = workers.get(worker).fold(ready)(n => ready - ((n, worker))),
+        tracked = tracked - worker
+      )
+    }
+
+    /* Returns the number of credits granted to the given worker, a single one if it is a tracked worker. */
+    private def creditsOf(worker: ActorRef[Command]): Int = if (tracked.contains(worker)) 1 else credits
+
+    /* Dispatches the queued items, recording the time they have waited until the given time. */
+    private def dispatched(now: Long): WorkerPool =
+      (for {
+        ((item, time), remaining) <- pending.dequeueOption
+        (n, worker)               <- ready.headOption
+      } yield {
+        worker ! item
+        metrics.waited(now - time)
+        WorkerPoolImpl(
+          credits,
+          metrics,
+          workers + (worker -> (n + 1)),
+          if (n + 1 < creditsOf(worker)) ready - ((n, worker)) + ((n + 1, worker)) else ready - ((n, worker)),
+          remaining,
+          if (tracked.contains(worker)) tracked + (worker -> Some(item)) else tracked
+        ).dispatched(now)
+      }).getOrElse(this)
+  }
+
+  /** The factory method for creating new instances of the [[WorkerPool]] trait, which initially have no workers and no items.
+    * @param credits
+    *   the number of credits granted to each worker, the number of items it can process at the same time
+    * @param metrics
+    *   the [[StageMetrics]] of the stage of the pool
+    * @return
+    *   a new empty instance of the [[WorkerPool]] trait
+    */
+  def apply(credits: Int, metrics: StageMetrics): WorkerPool =
+    WorkerPoolImpl(
+      Math.max(credits, 1),
+      metrics,
+      Map.empty[ActorRef[Command], Int],
+      TreeSet.empty[(Int, ActorRef[Command])](order),
+      Queue.empty[(Command, Long)],
+      Map.empty[ActorRef[Command], Option[Command]]
+    )
+}
@@ -0,0 +1,57 @@
+package it.unibo.pcd.assignment3.actors.main
+
+import it.unibo.pcd.assignment3.actors.AnyOps.discard
+import it.unibo.pcd.assignment3.actors.view.HeadlessView
+import it.unibo.pcd.assignment3.actors.view.HeadlessView.OutputFormat
+
+import java.nio.file.{Path, Paths}
+
+/** The entry point of the application when it runs without a graphical user interface, for example on a server with no display.
+  * It processes the PDF files of a directory once and then writes the most frequent words found, along with the total number of
+  * processed words, into the standard output or into a file, while a summary of the throughput of the computation is written
+  * into the standard error.
+  *
+  * Its arguments are the directory containing the PDF files and the file containing the stopwords, optionally followed by
+  * "--words" and the number of most frequent words to write, "--format" and either "json" or "csv", "--output" and the file
+  * into which writing the results.
+  */
+object BatchMain {
+
+  /* The optional arguments of the application. */
+  private final case class Options(wordsNumber: Int, format: OutputFormat, output: Option[Path])
+
+  /* The message describing how the application should be launched. */
+  private val usage: String =
+    "Usage: <PDF files directory> <stopwords file> [--words <number>] [--format json|csv] [--output <file>]"
+
+  /* Parses the given optional arguments, overriding the given options, returning None if they are not valid. */
+  private def parse(arguments: List[String], options: Options): Option[Options] =
+    arguments match {
+      case "--words" :: n :: t       => n.toIntOption.filter(_ > 0).flatMap(w => parse(t, options.copy(wordsNumber = w)))
+      case "--format" :: "json" :: t => parse(t, options.copy(format = OutputFormat.Json))
+      case "--format" :: "csv" :: t  => parse(t, options.copy(format = OutputFormat.Csv))
+      case "--output" :: f :: t      => parse(t, options.copy(output = Some(Paths.get(f))))
+      case Nil                       => Some(options)
+      case _                         => None
+    }
+
+  /** Launches the application without a graphical user interface.
+    * @param args
+    *   the arguments of the application
+    */
+  def main(args: Array[String]): Unit =
+    args.toList match {
+      case d :: s :: t =>
+        parse(t, Options(10, OutputFormat.Json, None)) match {
+          case Some(o) => discard(HeadlessView(Paths.get(d), Paths.get(s), o.wordsNumber, o.format, o.output))
+          case None    => exitWithUsage()
+        }
+      case _ => exitWithUsage()
+    }
+
+  /* Prints how the application should be launched and exits with an error. */
+  private def exitWithUsage(): Unit = {
+    System.err.println(usage)
+    System.exit(2)
+  }
+}
@@ -0,0 +1,62 @@
+package it.unibo.pcd.assignment3.actors.main
+
+import akka.actor.typed.ActorSystem
+import com.typesafe.config.{Config, ConfigFactory}
+import it.unibo.pcd.assignment3.actors.controller.{CancellationToken, PipelineMetrics, Settings, SuspensionGate}
+import it.unibo.pcd.assignment3.actors.controller.actors.{Command, NodeActor}
+
+import scala.concurrent.ExecutionContext.Implicits.global
+
+/** The entry point of a worker node of the cluster across which the computation is distributed. It joins the cluster through the
+  * seed node configured in "application_cluster.conf", takes part in the computation started by the seed node and exits when the
+  * computation is over. The seed node is the application itself, launched with the "config.resource" system property set to
+  * "application_cluster.conf", and more worker nodes can run on the same host as the seed node, each one on its own port.
+  *
+  * Its only argument is the optional port on which the worker node listens, which is chosen randomly if it is not given.
+  */
+object NodeMain {
+
+  /** Launches a worker node of the cluster.
+    * @param args
+    *   the arguments of the worker node
+    */
+  def main(args: Array[String]): Unit =
+    args.toList.map(_.toIntOption.filter(_ >= 0)) match {
+      case Nil            => launch(0)
+      case Some(p) :: Nil => launch(p)
+      case _ =>
+        System.err.println("Usage: [<port>]")
+        System.exit(2)
+    }
+
+  /* Launches a worker node listening on the given port. */
+  private def launch(port: Int): Unit = {
+    val config: Config =
+      ConfigFactory
+        .parseString(s"akka.remote.artery.canonical.port = $port")
+        .withFallback(ConfigFactory.load("application_cluster"))
+    val settings: Settings = Settings(config)
+    val totalActors: Int = (Runtime.getRuntime.availableProcessors * 1.0f * (1 + 1.093f)).round
+    val gate: SuspensionGate = SuspensionGate()
+    settings.cluster match {
+      case Some(c) =>
+        val actorSystem: ActorSystem[Command] = ActorSystem(
+          NodeActor(
+            e => System.err.println(s"Error: ${e.getMessage}"),
+            gate,
+            CancellationToken(),
+            totalActors,
+            settings,
+            c,
+            PipelineMetrics(gate, settings.credits)
+          ),
+          "actor_system",
+          config
+        )
+        actorSystem.whenTerminated.onComplete(_ => sys.exit())
+      case None =>
+        System.err.println("Error: the cluster is not enabled in the configuration")
+        System.exit(1)
+    }
+  }
+}
@@ -2,28 +2,98 @@ package it.unibo.pcd.assignment3.actors.model.entities
 
 import org.apache.pdfbox.pdmodel.PDDocument
 
-/** A document entity as conceived into the problem space.
+/** A document entity as conceived into the problem space. It can represent only a range of the pages of the wrapped document,
+  * so that different ranges of the same document can be processed independently, each one through its own document object. It
+  * holds the [[Reservation]] of the share of the memory budget of the open documents made when it was loaded, which is released
+  * when it is closed.
   *
   * It must be constructed through its companion object.
   */
-trait Document {
+trait Document extends AutoCloseable {
 
   /** Returns the wrapped document object as defined by the Apache PDFBox library. */
   val document: PDDocument
+
+  /** Returns the [[FilePath]] of the file from which the wrapped document has been loaded. */
+  val path: FilePath
+
+  /** Returns the number of the first page of the range represented by this document, starting from 1. */
+  val firstPage: Int
+
+  /** Returns the number of the last page of the range represented by this document, included. */
+  val lastPage: Int
+
+  /** Returns the [[Reservation]] of the share of the memory budget of the open documents held by the wrapped document. */
+  val reservation: Reservation
+
+  /** Closes the wrapped document and releases its [[Reservation]]. */
+  override def close(): Unit
 }
 
-/** The companion object of the [[Document]] trait, containing its factory method. */
+/** The companion object of the [[Document]] trait, containing its factory methods. */
 object Document {
 
   /* An implementation of the Document trait. */
-  private final case class DocumentImpl(document: PDDocument) extends Document
+  private final case class DocumentImpl(
+    document: PDDocument,
+    path: FilePath,
+    firstPage: Int,
+    lastPage: Int,
+    reservation: Reservation
+  ) extends Document {
+
+    override def close(): Unit =
+      try {
+        document.close()
+      } finally {
+        reservation.release()
+      }
+  }
+
+  /** The factory method for creating new instances of the [[Document]] trait wrapping an instance of a document as defined by the
+    * Apache PDFBox library and representing all of its pages.
+    * @param document
+    *   the wrapped document object as defined by the Apache PDFBox library
+    * @param path
+    *   the [[FilePath]] of the file from which the wrapped document has been loaded
+    * @return
+    *   a new [[Document]] instance
+    */
+  def apply(document: PDDocument, path: FilePath): Document =
+    DocumentImpl(document, path, 1, document.getNumberOfPages, Reservation.none)
+
+  /** The factory method for creating new instances of the [[Document]] trait wrapping an instance of a document as defined by the
+    * Apache PDFBox library and representing only a range of its pages.
+    * @param document
+    *   the wrapped document object as defined by the Apache PDFBox library
+    * @param path
+    *   the [[FilePath]] of the file from which the wrapped document has been loaded
+    * @param firstPage
+    *   the number of the first page of the range, starting from 1
+    * @param lastPage
+    *   the number of the last page of the range, included
+    * @return
+    *   a new [[Document]] instance
+    */
+  def apply(document: PDDocument, path: FilePath, firstPage: Int, lastPage: Int): Document =
+    DocumentImpl(document, path, firstPage, lastPage, Reservation.none)
 
   /** The factory method for creating new instances of the [[Document]] trait wrapping an instance of a document as defined by the
-    * Apache PDFBox library.
+    * Apache PDFBox library, representing only a range of its pages and holding a share of the memory budget of the open
+    * documents.
     * @param document
     *   the wrapped document object as defined by the Apache PDFBox library
+    * @param path
+    *   the [[FilePath]] of the file from which the wrapped document has been loaded
+    * @param firstPage
+    *   the number of the first page of the range, starting from 1
+    * @param lastPage
+    *   the number of the last page of the range, included
+    * @param reservation
+    *   the [[Reservation]] of the share of the memory budget held by the wrapped document, released when it is closed
     * @return
     *   a new [[Document]] instance
     */
-  def apply(document: PDDocument): Document = DocumentImpl(document)
+  def apply(document: PDDocument, path: FilePath, firstPage: Int, lastPage: Int, reservation: Reservation): Document =
+    DocumentImpl(document, path, firstPage, lastPage, reservation)
 }
@@ -0,0 +1,44 @@
+package it.unibo.pcd.assignment3.actors.model.entities
+
+/** The key identifying the content of the file of a document, so that the results of processing it can be reused until the file
+  * changes. Two keys are equal if and only if their paths, sizes, last modification times and content hashes are equal.
+  *
+  * It must be constructed through its companion object.
+  */
+sealed trait DocumentKey {
+
+  /** Returns the [[FilePath]] of the file of the document. */
+  val path: FilePath
+
+  /** Returns the size in bytes of the file of the document. */
+  val size: Long
+
+  /** Returns the last modification time of the file of the document, in milliseconds since the epoch. */
+  val lastModified: Long
+
+  /** Returns the hash of the content of the file of the document, if it has been computed. */
+  val contentHash: Option[Long]
+}
+
+/** Companion object to the [[DocumentKey]] trait, containing its factory method. */
+object DocumentKey {
+
+  /* An implementation of the DocumentKey trait. */
+  private final case class DocumentKeyImpl(path: FilePath, size: Long, lastModified: Long, contentHash: Option[Long])
+    extends DocumentKey
+
+  /** The factory method for creating new instances of the [[DocumentKey]] trait.
+    * @param path
+    *   the [[FilePath]] of the file of the document
+    * @param size
+    *   the size in bytes of the file of the document
+    * @param lastModified
+    *   the last modification time of the file of the document, in milliseconds since the epoch
+    * @param contentHash
+    *   the hash of the content of the file of the document, if it has been computed
+    * @return
+    *   a new instance of the [[DocumentKey]] trait
+    */
+  def apply(path: FilePath, size: Long, lastModified: Long, contentHash: Option[Long]): DocumentKey =
+    DocumentKeyImpl(path, size, lastModified, contentHash)
+}
@@ -0,0 +1,31 @@
+package it.unibo.pcd.assignment3.actors.model.entities
+
+/** The listing of a directory, the [[FilePath]]s of the PDF documents and of the subdirectories it directly contains.
+  *
+  * It must be constructed through its companion object.
+  */
+sealed trait Listing {
+
+  /** Returns the [[FilePath]]s of the PDF documents in the directory, from the largest to the smallest one. */
+  val documents: Seq[FilePath]
+
+  /** Returns the [[FilePath]]s of the subdirectories of the directory. */
+  val directories: Seq[FilePath]
+}
+
+/** Companion object to the [[Listing]] trait, containing its factory method. */
+object Listing {
+
+  /* An implementation of the Listing trait. */
+  private final case class ListingImpl(documents: Seq[FilePath], directories: Seq[FilePath]) extends Listing
+
+  /** The factory method for creating new instances of the [[Listing]] trait.
+    * @param documents
+    *   the [[FilePath]]s of the PDF documents in the directory, from the largest to the smallest one
+    * @param directories
+    *   the [[FilePath]]s of the subdirectories of the directory
+    * @return
+    *   a new instance of the [[Listing]] trait
+    */
+  def apply(documents: Seq[FilePath], directories: Seq[FilePath]): Listing = ListingImpl(documents, directories)
+}
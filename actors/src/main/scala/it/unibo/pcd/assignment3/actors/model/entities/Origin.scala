@@ -0,0 +1,33 @@
+package it.unibo.pcd.assignment3.actors.model.entities
+
+/** The origin of a [[Page]], the document from which the [[Page]] has been extracted, so that the results of processing its
+  * [[Page]]s can be attributed to the document itself.
+  *
+  * It must be constructed through its companion object.
+  */
+sealed trait Origin {
+
+  /** Returns the [[FilePath]] of the document from which the [[Page]] has been extracted. */
+  val path: FilePath
+
+  /** Returns the total number of pages of the document from which the [[Page]] has been extracted. */
+  val pages: Int
+}
+
+/** Companion object to the [[Origin]] trait, containing its factory method. */
+object Origin {
+
+  /* An implementation of the Origin trait. */
+  private final case class OriginImpl(path: FilePath, pages: Int) extends Origin
+
+  /** The factory method for creating new instances of the [[Origin]] trait given the [[FilePath]] of the document from which the
+    * [[Page]] has been extracted and its total number of pages.
+    * @param path
+    *   the [[FilePath]] of the document from which the [[Page]] has been extracted
+    * @param pages
+    *   the total number of pages of the document from which the [[Page]] has been extracted
+    * @return
+    *   a new instance of the [[Origin]] trait
+    */
+  def apply(path: FilePath, pages: Int): Origin = OriginImpl(path, pages)
+}
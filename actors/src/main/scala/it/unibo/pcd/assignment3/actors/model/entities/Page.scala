@@ -8,13 +8,16 @@ sealed trait Page {
 
   /** Returns the textual content of this page. */
   val text: String
+
+  /** Returns the [[Origin]] of this page, if it has been extracted from a document. */
+  val origin: Option[Origin]
 }
 
-/** Companion object of the [[Page]] trait, containing its factory method. */
+/** Companion object of the [[Page]] trait, containing its factory methods. */
 object Page {
 
   /* An implementation of the Page trait. */
-  private final case class PageImpl(text: String) extends Page
+  private final case class PageImpl(text: String, origin: Option[Origin]) extends Page
 
   /** The factory method for creating new instances of the [[Page]] trait, given its textual content of the page itself.
     * @param text
@@ -22,5 +25,16 @@ object Page {
     * @return
     *   a new instance of the [[Page]] trait
     */
-  def apply(text: String): Page = PageImpl(text)
+  def apply(text: String): Page = PageImpl(text, None)
+
+  /** The factory method for creating new instances of the [[Page]] trait, given its textual content of the page itself and the
+    * [[Origin]] of the page, the document from which it has been extracted.
+    * @param text
+    *   the textual content of this page
+    * @param origin
+    *   the [[Origin]] of this page
+    * @return
+    *   a new instance of the [[Page]] trait
+    */
+  def apply(text: String, origin: Origin): Page = PageImpl(text, Some(origin))
 }
@@ -0,0 +1,80 @@
+package it.unibo.pcd.assignment3.actors.model.entities
+
+import scala.collection.immutable.{ListMap, TreeSet}
+
+/** A ranking of the most frequent words, the ones to be displayed to the user, which is kept up to date incrementally while the
+  * frequencies of the words increase, so that it never needs to be computed again from all the words found.
+  *
+  * It must be constructed through its companion object.
+  */
+sealed trait Ranking {
+
+  /** Returns the maximum number of words in this ranking. */
+  val size: Int
+
+  /** Returns the words in this ranking associated with their frequencies, from the most frequent to the least frequent one and
+    * in alphabetical order between the ones with the same frequency. Its cost depends only on the size of this ranking.
+    */
+  def words: ListMap[String, Long]
+
+  /** Returns a new ranking in which the given word has the given frequency. Its cost is logarithmic in the size of this ranking.
+    * The frequency must not be lesser than the one the word previously had, because a word which is not in this ranking is not
+    * remembered, so it could be replaced by another one which would then rank below it.
+    * @param word
+    *   the word whose frequency has increased
+    * @param frequency
+    *   the new frequency of the word
+    * @return
+    *   a new [[Ranking]] in which the given word has the given frequency
+    */
+  def updated(word: String, frequency: Long): Ranking
+}
+
+/** Companion object to the [[Ranking]] trait, containing its factory methods. */
+object Ranking {
+
+  /* The order of the words in a ranking, from the most frequent to the least frequent one and then alphabetical. */
+  private val order: Ordering[(String, Long)] =
+    Ordering.by[(String, Long), Long](_._2).reverse.orElse(Ordering.by[(String, Long), String](_._1))
+
+  /* An implementation of the Ranking trait, keeping its words both sorted and indexed by word. */
+  private final case class RankingImpl(size: Int, entries: TreeSet[(String, Long)], frequencies: Map[String, Long])
+    extends Ranking {
+
+    override def words: ListMap[String, Long] = entries.to(ListMap.mapFactory[String, Long])
+
+    override def updated(word: String, frequency: Long): Ranking =
+      frequencies.get(word) match {
+        case Some(f) => RankingImpl(size, entries - ((word, f)) + ((word, frequency)), frequencies + (word -> frequency))
+        case None if frequencies.size < size =>
+          RankingImpl(size, entries + ((word, frequency)), frequencies + (word -> frequency))
+        case None =>
+          entries
+            .lastOption
+            .filter(l => order.lt((word, frequency), l))
+            .map(l => RankingImpl(size, entries - l + ((word, frequency)), frequencies - l._1 + (word -> frequency)))
+            .getOrElse(this)
+      }
+  }
+
+  /** The factory method for creating new instances of the [[Ranking]] trait, which are initially empty.
+    * @param size
+    *   the maximum number of words in the ranking
+    * @return
+    *   a new empty instance of the [[Ranking]] trait
+    */
+  def apply(size: Int): Ranking = RankingImpl(size, TreeSet.empty[(String, Long)](order), Map.empty[String, Long])
+
+  /** The factory method for creating new instances of the [[Ranking]] trait containing the most frequent words between the given
+    * ones, to be used when the frequency of some word has decreased. Its cost is linear in the number of the given words and
+    * logarithmic in the size of the ranking.
+    * @param size
+    *   the maximum number of words in the ranking
+    * @param frequencies
+    *   the words from which the ranking is built, associated with their frequencies
+    * @return
+    *   a new instance of the [[Ranking]] trait containing the most frequent words between the given ones
+    */
+  def apply(size: Int, frequencies: Map[String, Long]): Ranking =
+    frequencies.foldLeft(Ranking(size))((r, e) => r.updated(e._1, e._2))
+}
@@ -0,0 +1,45 @@
+package it.unibo.pcd.assignment3.actors.model.entities
+
+import java.util.concurrent.atomic.AtomicBoolean
+
+/** A reservation of a share of a memory budget, held by a resource while it is resident in memory and released when the resource
+  * is closed, so that the share can be reserved by another resource. It can be released more than once, but only the first time
+  * has an effect, because a resource can be closed by more than one party.
+  *
+  * It must be constructed through its companion object.
+  */
+sealed trait Reservation {
+
+  /** Returns the number of bytes of the memory budget reserved. */
+  val bytes: Long
+
+  /** Releases the reserved share of the memory budget, if it has not already been released. */
+  def release(): Unit
+}
+
+/** Companion object to the [[Reservation]] trait, containing its factory method and the empty reservation. */
+object Reservation {
+
+  /* An implementation of the Reservation trait. */
+  private class ReservationImpl(override val bytes: Long, onRelease: () => Unit) extends Reservation {
+    private val released: AtomicBoolean = new AtomicBoolean()
+
+    override def release(): Unit =
+      if (released.compareAndSet(false, true)) {
+        onRelease()
+      }
+  }
+
+  /** The [[Reservation]] held by the resources which are not accounted into any memory budget. */
+  val none: Reservation = Reservation(0, () => ())
+
+  /** The factory method for creating new instances of the [[Reservation]] trait.
+    * @param bytes
+    *   the number of bytes of the memory budget reserved
+    * @param onRelease
+    *   the function which gives back the reserved share to the memory budget, called at most once
+    * @return
+    *   a new instance of the [[Reservation]] trait
+    */
+  def apply(bytes: Long, onRelease: () => Unit): Reservation = new ReservationImpl(bytes, onRelease)
+}
@@ -1,26 +1,75 @@
 package it.unibo.pcd.assignment3.actors.model.entities
 
-/** An update entity which contains all necessary information convert be displayed convert the user.
+/** An update entity which contains all necessary information convert be displayed convert the user. The words are represented by
+  * their ids in the [[WordDictionary]] shared by the application, so that an update is made only of two parallel arrays of
+  * primitive values and merging it never needs to hash or compare any [[String]].
   *
   * It must be constructed through its companion object.
   */
 sealed trait Update {
 
-  /** Returns the most frequent words associated with their frequencies at a specific point in time. */
-  val frequencies: Map[String, Long]
+  /** Returns the ids of the words found, as assigned by the shared [[WordDictionary]], each one at most once and in no
+    * particular order. It must not be modified.
+    */
+  val words: Array[Int]
+
+  /** Returns the frequencies of the words found, each one at the same position as the id of its word. It must not be modified. */
+  val counts: Array[Long]
 
   /** Returns the processed words in total at a specific point in time. */
   val processedWords: Long
+
+  /** Returns the words found associated with their frequencies at a specific point in time, looking up each word in the shared
+    * [[WordDictionary]]. Its cost is linear in the number of words found, so it is meant for the consumers which need the words
+    * themselves and not for merging updates.
+    */
+  def frequencies: Map[String, Long]
+
+  /** Merges this update with the given one, summing the frequencies of the words they have in common and the number of words
+    * they have processed. Its cost is linear in the number of words of both updates, so for merging many updates an
+    * [[UpdateAccumulator]] should be used instead.
+    * @param other
+    *   the [[Update]] to be merged with this one
+    * @return
+    *   a new [[Update]] which is the sum of this [[Update]] and the given one
+    */
+  def merge(other: Update): Update
 }
 
-/** Companion object of the [[Update]] trait, containing its factory method. */
+/** Companion object of the [[Update]] trait, containing its factory methods. */
 object Update {
 
   /* An implementation of the Update trait. */
-  private final case class UpdateImpl(frequencies: Map[String, Long], processedWords: Long) extends Update
+  private final class UpdateImpl(val words: Array[Int], val counts: Array[Long], val processedWords: Long) extends Update {
+
+    override def frequencies: Map[String, Long] =
+      words.indices.iterator.map(i => (WordDictionary.shared.word(words(i)), counts(i))).toMap
+
+    override def merge(other: Update): Update = {
+      val accumulator: UpdateAccumulator = UpdateAccumulator()
+      accumulator.add(this)
+      accumulator.add(other)
+      accumulator.result()
+    }
+  }
+
+  /** The factory method for creating new instances of the [[Update]] trait, given the ids of the words found as assigned by the
+    * shared [[WordDictionary]], their frequencies and the processed words in total at a specific point in time. The arrays are
+    * not copied, so they must not be modified afterwards.
+    * @param words
+    *   the ids of the words found, each one at most once
+    * @param counts
+    *   the frequencies of the words found, each one at the same position as the id of its word
+    * @param processedWords
+    *   the processed words in total at a specific point in time
+    * @return
+    *   a new instance of the [[Update]] trait
+    */
+  def apply(words: Array[Int], counts: Array[Long], processedWords: Long): Update = new UpdateImpl(words, counts, processedWords)
 
   /** The factory method for creating new instances of the [[Update]] trait, given most frequent words associated with their
-    * frequencies at a specific point in time and the processed words in total at a specific point in time.
+    * frequencies at a specific point in time and the processed words in total at a specific point in time. The words are added
+    * to the shared [[WordDictionary]], if they are not already in it.
     * @param frequencies
     *   the most frequent words associated with their frequencies at a specific point in time
     * @param processedWords
@@ -28,5 +77,8 @@ object Update {
     * @return
     *   a new instance of the [[Update]] trait
     */
-  def apply(frequencies: Map[String, Long], processedWords: Long): Update = UpdateImpl(frequencies, processedWords)
+  def apply(frequencies: Map[String, Long], processedWords: Long): Update = {
+    val entries: Array[(String, Long)] = frequencies.toArray
+    new UpdateImpl(entries.map(e => WordDictionary.shared.id(e._1)), entries.map(_._2), processedWords)
+  }
 }
@@ -0,0 +1,136 @@
+package it.unibo.pcd.assignment3.actors.model.entities
+
+import java.util.Arrays
+
+/** An accumulator of [[Update]]s, which merges them in place into a hash table with open addressing from the ids of the words
+  * to their frequencies, so that merging an [[Update]] costs only as much as the number of its words and allocates nothing once
+  * the table has grown enough. It is meant to be owned by a single actor, so it is not thread-safe.
+  *
+  * It must be constructed through its companion object.
+  */
+sealed trait UpdateAccumulator {
+
+  /** Returns the number of distinct words accumulated since the last result. */
+  def size: Int
+
+  /** Returns the number of processed words accumulated since the last result. */
+  def processedWords: Long
+
+  /** Adds the frequencies and the processed words of the given [[Update]] to this accumulator.
+    * @param update
+    *   the [[Update]] to be added
+    */
+  def add(update: Update): Unit
+
+  /** Returns the [[Update]] made of all the [[Update]]s added since the last result, without the words whose frequencies have
+    * summed up to zero, and empties this accumulator, keeping its table for the next [[Update]]s.
+    * @return
+    *   the [[Update]] made of all the [[Update]]s added since the last result
+    */
+  def result(): Update
+}
+
+/** Companion object to the [[UpdateAccumulator]] trait, containing its factory method. */
+object UpdateAccumulator {
+
+  /* An implementation of the UpdateAccumulator trait. Each slot of the table holds the id of its word plus one, so that zero
+   * marks an empty slot, and the occupied slots are listed in order of insertion, so that emptying the table and building the
+   * result touch only them.
+   */
+  @SuppressWarnings(Array("org.wartremover.warts.Equals"))
+  private final class UpdateAccumulatorImpl(initialCapacity: Int) extends UpdateAccumulator {
+    private var keys: Array[Int] = new Array[Int](Integer.highestOneBit(Math.max(initialCapacity, 2)) * 4)
+    private var values: Array[Long] = new Array[Long](keys.length)
+    private var occupied: Array[Int] = new Array[Int](keys.length / 2)
+    private var entries: Int = 0
+    private var words: Long = 0
+
+    override def size: Int = entries
+
+    override def processedWords: Long = words
+
+    override def add(update: Update): Unit = {
+      val ids = update.words
+      val counts = update.counts
+      var i = 0
+      while (i < ids.length) {
+        val slot = find(ids(i))
+        if (keys(slot) == 0) {
+          keys(slot) = ids(i) + 1
+          occupied(entries) = slot
+          entries += 1
+        }
+        values(slot) += counts(i)
+        if (entries * 2 >= keys.length) {
+          rehash()
+        }
+        i += 1
+      }
+      words += update.processedWords
+    }
+
+    override def result(): Update = {
+      val ids = new Array[Int](entries)
+      val counts = new Array[Long](entries)
+      var size = 0
+      var i = 0
+      while (i < entries) {
+        val slot = occupied(i)
+        if (values(slot) != 0) {
+          ids(size) = keys(slot) - 1
+          counts(size) = values(slot)
+          size += 1
+        }
+        keys(slot) = 0
+        values(slot) = 0
+        i += 1
+      }
+      val update = Update(Arrays.copyOf(ids, size), Arrays.copyOf(counts, size), words)
+      entries = 0
+      words = 0
+      update
+    }
+
+    /* Returns the slot in which the word with the given id is stored or, if absent, the empty slot in which it should be. */
+    private def find(id: Int): Int = {
+      val mask = keys.length - 1
+      var slot = mix(id) & mask
+      while (keys(slot) != 0 && keys(slot) != id + 1) {
+        slot = (slot + 1) & mask
+      }
+      slot
+    }
+
+    /* Doubles the number of slots of the table, placing again all of its entries. */
+    private def rehash(): Unit = {
+      val oldKeys = keys
+      val oldValues = values
+      val oldOccupied = occupied
+      keys = new Array[Int](oldKeys.length * 2)
+      values = new Array[Long](keys.length)
+      occupied = new Array[Int](keys.length / 2)
+      var i = 0
+      while (i < entries) {
+        val slot = find(oldKeys(oldOccupied(i)) - 1)
+        keys(slot) = oldKeys(oldOccupied(i))
+        values(slot) = oldValues(oldOccupied(i))
+        occupied(i) = slot
+        i += 1
+      }
+    }
+
+    /* Spreads the bits of the given id, so that consecutive ids do not end up in adjacent slots. */
+    private def mix(id: Int): Int = {
+      val h = id * -1640531527
+      h ^ (h >>> 16)
+    }
+  }
+
+  /** The factory method for creating new instances of the [[UpdateAccumulator]] trait, which are initially empty.
+    * @param initialCapacity
+    *   the number of distinct words the accumulator can contain before growing its table
+    * @return
+    *   a new empty instance of the [[UpdateAccumulator]] trait
+    */
+  def apply(initialCapacity: Int = 256): UpdateAccumulator = new UpdateAccumulatorImpl(initialCapacity)
+}
@@ -0,0 +1,42 @@
+package it.unibo.pcd.assignment3.actors.model.entities
+
+/** The exact frequencies of the words found in a single [[Page]], with the words themselves instead of their ids in the shared
+  * [[WordDictionary]], so that they can be added to a [[WordSketch]] without the dictionary having to grow with all the words
+  * of the corpus. Its size depends only on the size of the [[Page]].
+  *
+  * It must be constructed through its companion object.
+  */
+sealed trait WordCounts {
+
+  /** Returns the words found, each one at most once and in no particular order. It must not be modified. */
+  val words: Array[String]
+
+  /** Returns the frequencies of the words found, each one at the same position as its word. It must not be modified. */
+  val counts: Array[Long]
+
+  /** Returns the number of words processed in the [[Page]], stopwords included. */
+  val processedWords: Long
+}
+
+/** Companion object to the [[WordCounts]] trait, containing its factory method. */
+object WordCounts {
+
+  /* An implementation of the WordCounts trait. */
+  private final class WordCountsImpl(val words: Array[String], val counts: Array[Long], val processedWords: Long)
+    extends WordCounts
+
+  /** The factory method for creating new instances of the [[WordCounts]] trait, given the words found in a [[Page]], their
+    * frequencies and the number of words processed in the [[Page]]. The arrays are not copied, so they must not be modified
+    * afterwards.
+    * @param words
+    *   the words found, each one at most once
+    * @param counts
+    *   the frequencies of the words found, each one at the same position as its word
+    * @param processedWords
+    *   the number of words processed in the [[Page]]
+    * @return
+    *   a new instance of the [[WordCounts]] trait
+    */
+  def apply(words: Array[String], counts: Array[Long], processedWords: Long): WordCounts =
+    new WordCountsImpl(words, counts, processedWords)
+}
@@ -0,0 +1,99 @@
+package it.unibo.pcd.assignment3.actors.model.entities
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.{AtomicInteger, AtomicReferenceArray}
+import java.util.Arrays
+
+/** A dictionary which associates each word to an id, so that the words can be counted and their frequencies exchanged as
+  * primitive integers instead of [[String]]s. The ids are assigned in order of arrival starting from 0 and never change, so they
+  * can be used as indexes into arrays. The dictionary can be used concurrently by many threads.
+  *
+  * It must be constructed through its companion object.
+  */
+sealed trait WordDictionary {
+
+  /** Returns the number of words in this dictionary, which is also the id that the next word added will have. */
+  def size: Int
+
+  /** Returns the id of the given word, adding it to this dictionary if it is not in it.
+    * @param word
+    *   the word whose id is to be returned
+    * @return
+    *   the id of the given word
+    */
+  def id(word: String): Int
+
+  /** Returns the word with the given id, which must have been returned by this dictionary.
+    * @param id
+    *   the id of the word to be returned
+    * @return
+    *   the word with the given id
+    */
+  def word(id: Int): String
+}
+
+/** Companion object to the [[WordDictionary]] trait, containing its factory method and the dictionary shared by the whole
+  * application during a computation.
+  */
+object WordDictionary {
+
+  /* The number of bits of the index of a word inside its chunk. */
+  private val chunkBits: Int = 12
+
+  /* An implementation of the WordDictionary trait which looks up the ids through a ConcurrentHashMap, which stripes its locks
+   * over its bins, and keeps the words in chunks indexed by id, so that looking up a word never contends with adding another
+   * one. A new chunk is added only when the ids of the existing ones have all been assigned.
+   */
+  private class WordDictionaryImpl extends WordDictionary {
+    private val ids: ConcurrentHashMap[String, Integer] = new ConcurrentHashMap[String, Integer]()
+    private val nextId: AtomicInteger = new AtomicInteger()
+    @volatile private var chunks: Array[AtomicReferenceArray[String]] =
+      Array(new AtomicReferenceArray[String](1 << chunkBits))
+
+    override def size: Int = nextId.get()
+
+    override def id(word: String): Int = ids.computeIfAbsent(word, w => Integer.valueOf(store(w))).intValue
+
+    override def word(id: Int): String = chunks(id >>> chunkBits).get(id & ((1 << chunkBits) - 1))
+
+    /* Stores the given word under a new id, adding a chunk if needed, and returns the id. */
+    private def store(word: String): Int = {
+      val id: Int = nextId.getAndIncrement()
+      if ((id >>> chunkBits) >= chunks.length) {
+        grow(id >>> chunkBits)
+      }
+      chunks(id >>> chunkBits).set(id & ((1 << chunkBits) - 1), word)
+      id
+    }
+
+    /* Adds the chunks up to the one with the given index, if another thread has not already done it. */
+    private def grow(chunk: Int): Unit = synchronized {
+      if (chunk >= chunks.length) {
+        val grown: Array[AtomicReferenceArray[String]] = Arrays.copyOf(chunks, Math.max(chunks.length * 2, chunk + 1))
+        (chunks.length until grown.length).foreach(i => grown(i) = new AtomicReferenceArray[String](1 << chunkBits))
+        chunks = grown
+      }
+    }
+  }
+
+  /* The dictionary currently shared by the whole application. */
+  @volatile private var current: WordDictionary = WordDictionary()
+
+  /** Returns the [[WordDictionary]] shared by the whole application, through which all the words of the current computation are
+    * counted. It is replaced by an empty one each time the dictionary is reset, so it should not be kept across computations.
+    */
+  def shared: WordDictionary = current
+
+  /** Replaces the shared [[WordDictionary]] with an empty one, so that the words of the previous computations are forgotten and
+    * the ids of the words of the next one start again from 0. It must be called only when no computation is running, because
+    * the ids assigned by the previous dictionary are no longer valid afterwards, so the [[akka.actor.typed.ActorSystem]] of the
+    * previous computation must have terminated.
+    */
+  def reset(): Unit = current = WordDictionary()
+
+  /** The factory method for creating new instances of the [[WordDictionary]] trait, which are initially empty.
+    * @return
+    *   a new empty instance of the [[WordDictionary]] trait
+    */
+  def apply(): WordDictionary = new WordDictionaryImpl()
+}
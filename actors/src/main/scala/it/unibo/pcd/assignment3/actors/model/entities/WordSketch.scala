@@ -0,0 +1,258 @@
+package it.unibo.pcd.assignment3.actors.model.entities
+
+import it.unibo.pcd.assignment3.actors.AnyOps.discard
+
+import java.util.{HashMap => JHashMap}
+import scala.collection.immutable.ListMap
+import scala.jdk.CollectionConverters._
+
+/** A summary of the frequencies of the words of a corpus whose size is fixed whatever the size of the corpus, so that the words
+  * can be counted approximately when their exact frequencies would not fit into memory. It is made of three sketches: a
+  * Count-Min sketch, which gives an upper bound of the frequency of any word; a table of the heavy hitters, which keeps the
+  * most frequent words, in the manner of the SpaceSaving algorithm; and a HyperLogLog sketch, which estimates the number of
+  * distinct words. Two summaries with the same parameters can be merged: the Count-Min and the HyperLogLog sketches are merged
+  * summing and taking the maximum of their arrays, while the tables of the heavy hitters are merged word by word. The
+  * frequencies reported never underestimate the exact ones and overestimate them at most by the [[WordSketch.errorBound]]. It is
+  * meant to be owned by a single actor at a time, so it is not thread-safe.
+  *
+  * It must be constructed through its companion object.
+  */
+sealed trait WordSketch {
+
+  /** Returns the number of processed words added to this summary, stopwords included. */
+  def processedWords: Long
+
+  /** Returns the sum of the frequencies added to this summary. */
+  def totalFrequency: Long
+
+  /** Returns the estimate of the number of distinct words added to this summary, whose relative standard error is about
+    * 1.04 divided by the square root of the number of registers of its HyperLogLog sketch.
+    */
+  def distinctWords: Long
+
+  /** Returns the maximum amount by which the frequencies returned by [[WordSketch.mostFrequent]] can exceed the exact ones. It
+    * is the least between the bound of the table of the heavy hitters, which always holds, and the one of the Count-Min sketch,
+    * which holds for each word with a probability of at least 1 - e^-depth.
+    */
+  def errorBound: Long
+
+  /** Adds the given frequency of the given word to this summary.
+    * @param word
+    *   the word whose frequency is to be added
+    * @param frequency
+    *   the frequency of the word to be added, which must be positive
+    */
+  def add(word: String, frequency: Long): Unit
+
+  /** Adds the given number of processed words to this summary.
+    * @param words
+    *   the number of processed words to be added
+    */
+  def addProcessedWords(words: Long): Unit
+
+  /** Adds all the frequencies and the processed words of the given summary to this summary, which must have been created with
+    * the same parameters. The given summary is left unchanged.
+    * @param other
+    *   the [[WordSketch]] to be merged into this one
+    */
+  def merge(other: WordSketch): Unit
+
+  /** Returns the estimate of the frequency of the given word, which is never lesser than the exact one.
+    * @param word
+    *   the word whose frequency is to be estimated
+    * @return
+    *   the estimate of the frequency of the given word
+    */
+  def estimate(word: String): Long
+
+  /** Returns the most frequent words added to this summary associated with the estimates of their frequencies, from the most
+    * frequent to the least frequent one and in alphabetical order between the ones with the same frequency. Its cost depends only
+    * on the number of heavy hitters kept by this summary.
+    * @param wordsNumber
+    *   the maximum number of words to be returned, which should not be greater than the number of heavy hitters
+    * @return
+    *   the most frequent words associated with the estimates of their frequencies
+    */
+  def mostFrequent(wordsNumber: Int): ListMap[String, Long]
+}
+
+/** Companion object to the [[WordSketch]] trait, containing its factory method. */
+object WordSketch {
+
+  /* The order of the words reported, from the most frequent to the least frequent one and then alphabetical. */
+  private val order: Ordering[(String, Long)] =
+    Ordering.by[(String, Long), Long](_._2).reverse.orElse(Ordering.by[(String, Long), String](_._1))
+
+  /* The counter of a heavy hitter, holding the frequency counted for it, which is never lesser than its exact frequency. */
+  private final class Counter(var frequency: Long)
+
+  /* An implementation of the WordSketch trait. The Count-Min sketch has "depth" rows of "width" counters, where the column of a
+   * word in each row is derived from two halves of a 64-bit hash of the word. The table of the heavy hitters keeps up to twice
+   * the given number of words, then it is purged of the least frequent half at once, so that evicting a word costs a constant
+   * time on average instead of a search of the least frequent word for each new one. The floor is the greatest frequency a word
+   * outside of the table can have, which is also the frequency a word is given when it enters the table. The HyperLogLog
+   * sketch has 2^precision registers, each one keeping the maximum rank of the hashes of the words falling into it.
+   */
+  @SuppressWarnings(Array("org.wartremover.warts.Equals"))
+  private final class WordSketchImpl(val width: Int, val depth: Int, val heavyHitters: Int, val precision: Int)
+    extends WordSketch {
+    private val counts: Array[Long] = new Array[Long](width * depth)
+    private val registers: Array[Byte] = new Array[Byte](1 << precision)
+    private val counters: JHashMap[String, Counter] = new JHashMap[String, Counter](heavyHitters * 4)
+    private var floor: Long = 0
+    private var words: Long = 0
+    private var total: Long = 0
+
+    override def processedWords: Long = words
+
+    override def totalFrequency: Long = total
+
+    override def distinctWords: Long = {
+      val m = registers.length
+      var sum = 0.0
+      var zeros = 0
+      var i = 0
+      while (i < m) {
+        sum += Math.scalb(1.0, -registers(i))
+        if (registers(i) == 0) {
+          zeros += 1
+        }
+        i += 1
+      }
+      val estimate = 0.7213 / (1 + 1.079 / m) * m * m / sum
+      (if (estimate <= 2.5 * m && zeros > 0) m * Math.log(m.toDouble / zeros) else estimate).round
+    }
+
+    override def errorBound: Long = Math.min(floor, Math.ceil(Math.E / width * total).toLong)
+
+    override def add(word: String, frequency: Long): Unit = {
+      val hash = hash64(word)
+      val h1 = hash.toInt
+      val h2 = (hash >>> 32).toInt
+      var i = 0
+      while (i < depth) {
+        counts(i * width + column(h1, h2, i)) += frequency
+        i += 1
+      }
+      val index = (hash >>> (64 - precision)).toInt
+      val rank = (java.lang.Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1).toByte
+      if (registers(index) < rank) {
+        registers(index) = rank
+      }
+      Option(counters.get(word)) match {
+        case Some(c) => c.frequency += frequency
+        case None =>
+          discard(counters.put(word, new Counter(floor + frequency)))
+          purgeIfFull()
+      }
+      total += frequency
+    }
+
+    override def addProcessedWords(words: Long): Unit = this.words += words
+
+    override def merge(other: WordSketch): Unit =
+      other match {
+        case o: WordSketchImpl =>
+          var i = 0
+          while (i < counts.length) {
+            counts(i) += o.counts(i)
+            i += 1
+          }
+          i = 0
+          while (i < registers.length) {
+            if (registers(i) < o.registers(i)) {
+              registers(i) = o.registers(i)
+            }
+            i += 1
+          }
+          counters
+            .entrySet()
+            .forEach(e =>
+              if (!o.counters.containsKey(e.getKey)) {
+                e.getValue.frequency += o.floor
+              }
+            )
+          o.counters
+            .forEach((w, c) => {
+              Option(counters.get(w)) match {
+                case Some(t) => t.frequency += c.frequency
+                case None    => discard(counters.put(w, new Counter(c.frequency + floor)))
+              }
+            })
+          floor += o.floor
+          purgeIfFull()
+          words += o.words
+          total += o.total
+      }
+
+    override def estimate(word: String): Long = {
+      val hash = hash64(word)
+      val h1 = hash.toInt
+      val h2 = (hash >>> 32).toInt
+      var estimate = Long.MaxValue
+      var i = 0
+      while (i < depth) {
+        estimate = Math.min(estimate, counts(i * width + column(h1, h2, i)))
+        i += 1
+      }
+      Option(counters.get(word)).fold(Math.min(estimate, floor))(c => Math.min(estimate, c.frequency))
+    }
+
+    override def mostFrequent(wordsNumber: Int): ListMap[String, Long] =
+      counters
+        .asScala
+        .iterator
+        .map(e => (e._1, Math.min(e._2.frequency, estimate(e._1))))
+        .toArray
+        .sorted(order)
+        .take(wordsNumber)
+        .to(ListMap.mapFactory[String, Long])
+
+    /* Returns the column of the given row of the Count-Min sketch for the word with the given halves of its hash. */
+    private def column(h1: Int, h2: Int, row: Int): Int = ((h1 + row * h2) & Int.MaxValue) % width
+
+    /* Purges the table of the heavy hitters of its least frequent words, if it has grown to twice their number, so that only
+     * the given number of them is left, raising the floor to the greatest frequency of the purged words.
+     */
+    private def purgeIfFull(): Unit =
+      if (counters.size >= heavyHitters * 2) {
+        val purged = counters.asScala.toArray.sortBy(_._2.frequency).take(counters.size - heavyHitters)
+        purged.foreach(e => discard(counters.remove(e._1)))
+        floor = purged.foldLeft(floor)((f, e) => Math.max(f, e._2.frequency))
+      }
+
+    /* Returns a 64-bit hash of the given word, computed with the FNV-1a function over its characters and then mixed with the
+     * finalizer of MurmurHash3, so that all of its bits depend on all of the characters.
+     */
+    private def hash64(word: String): Long = {
+      var hash = 0xcbf29ce484222325L
+      var i = 0
+      while (i < word.length) {
+        hash = (hash ^ word.charAt(i)) * 0x100000001b3L
+        i += 1
+      }
+      hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL
+      hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L
+      hash ^ (hash >>> 33)
+    }
+  }
+
+  /** The factory method for creating new instances of the [[WordSketch]] trait, which are initially empty. Only the instances
+    * created with the same parameters can be merged together.
+    * @param width
+    *   the number of counters of each row of the Count-Min sketch, so that the frequencies are overestimated by at most e / width
+    *   times the sum of all of them
+    * @param depth
+    *   the number of rows of the Count-Min sketch, so that the bound on the overestimate of each frequency holds with a
+    *   probability of at least 1 - e^-depth
+    * @param heavyHitters
+    *   the number of most frequent words kept with their frequencies, which should be greater than the number of words to be
+    *   reported
+    * @param precision
+    *   the base 2 logarithm of the number of registers of the HyperLogLog sketch, between 7 and 18
+    * @return
+    *   a new empty instance of the [[WordSketch]] trait
+    */
+  def apply(width: Int, depth: Int, heavyHitters: Int, precision: Int): WordSketch =
+    new WordSketchImpl(width, depth, heavyHitters, precision)
+}
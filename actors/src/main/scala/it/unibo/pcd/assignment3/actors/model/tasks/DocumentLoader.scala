@@ -0,0 +1,136 @@
+package it.unibo.pcd.assignment3.actors.model.tasks
+
+import it.unibo.pcd.assignment3.actors.model.entities.{Document, FilePath, Reservation}
+import org.apache.pdfbox.io.MemoryUsageSetting
+import org.apache.pdfbox.pdmodel.PDDocument
+
+import java.nio.file.Files
+import java.util.concurrent.Semaphore
+
+/** The loader of the PDF documents into [[Document]]s, which decides how much of each document is kept in memory while it is
+  * open.
+  *
+  * It must be constructed through its companion object.
+  */
+sealed trait DocumentLoader {
+
+  /** Loads the PDF document with the given [[FilePath]] into a [[Document]] representing all of its pages. The returned
+    * [[Document]] must be closed for releasing its [[Reservation]].
+    * @param filePath
+    *   the [[FilePath]] of the PDF document to be loaded
+    * @return
+    *   the [[Document]] loaded
+    */
+  def load(filePath: FilePath): Document
+}
+
+/** Companion object to the [[DocumentLoader]] trait, containing its factory methods. */
+object DocumentLoader {
+
+  /* The number of bytes of each permit of the semaphore accounting for the memory budget. */
+  private val permitBytes: Long = 1024
+
+  /* An implementation of the DocumentLoader trait which keeps the whole of every document in memory. */
+  private object UnboundedDocumentLoader extends DocumentLoader {
+
+    override def load(filePath: FilePath): Document = Document(PDDocument.load(filePath.path.toFile), filePath)
+  }
+
+  /* An implementation of the DocumentLoader trait which admits a document into memory only while the estimated resident size of
+   * all the open documents stays under the memory budget. The resident size of a document is estimated as its file size, but a
+   * document larger than the scratch threshold keeps only that many bytes in memory and the rest into a scratch file, so its
+   * estimate is the threshold. A document waits for its estimate to fit into the budget for as long as needed, so the open
+   * documents are never more than the budget allows. Since they are closed only by the tasks which extract their pages, those
+   * tasks must not run on the same threads as the ones loading the documents, otherwise the loads could wait forever.
+   */
+  private class BoundedDocumentLoader(memoryBudget: Long, scratchThreshold: Long) extends DocumentLoader {
+    private val budgetPermits: Int = Math.max(1L, Math.min(memoryBudget / permitBytes, Int.MaxValue.toLong)).toInt
+    private val semaphore: Semaphore = new Semaphore(budgetPermits, true)
+
+    override def load(filePath: FilePath): Document = {
+      val size: Long = Files.size(filePath.path)
+      val permits: Int = Math.min((Math.min(size, scratchThreshold) + permitBytes - 1) / permitBytes, budgetPermits.toLong).toInt
+      semaphore.acquire(permits)
+      val reservation: Reservation = Reservation(permits * permitBytes, () => semaphore.release(permits))
+      val memoryUsageSetting: MemoryUsageSetting =
+        if (size > scratchThreshold) MemoryUsageSetting.setupMixed(scratchThreshold) else MemoryUsageSetting.setupMainMemoryOnly()
+      var loaded: Boolean = false
+      try {
+        val document: PDDocument = PDDocument.load(filePath.path.toFile, memoryUsageSetting)
+        loaded = true
+        Document(document, filePath, 1, document.getNumberOfPages, reservation)
+      } finally {
+        if (!loaded) {
+          reservation.release()
+        }
+      }
+    }
+  }
+
+  /* An implementation of the DocumentLoader trait which lets the given loader open a document only while fewer than the given
+   * number of documents are open, counting each one from when it starts loading until its Reservation is released. As for the
+   * memory budget, the documents must be closed on threads different from the ones loading them.
+   */
+  private class CountingDocumentLoader(loader: DocumentLoader, maxOpenDocuments: Int) extends DocumentLoader {
+    private val semaphore: Semaphore = new Semaphore(Math.max(1, maxOpenDocuments), true)
+
+    override def load(filePath: FilePath): Document = {
+      semaphore.acquire()
+      var loaded: Boolean = false
+      try {
+        val document: Document = loader.load(filePath)
+        loaded = true
+        Document(
+          document.document,
+          document.path,
+          document.firstPage,
+          document.lastPage,
+          Reservation(
+            document.reservation.bytes,
+            () => {
+              document.reservation.release()
+              semaphore.release()
+            }
+          )
+        )
+      } finally {
+        if (!loaded) {
+          semaphore.release()
+        }
+      }
+    }
+  }
+
+  /** The factory method for creating new instances of the [[DocumentLoader]] trait which keep the whole of every document in
+    * memory, without any limit.
+    * @return
+    *   a new instance of the [[DocumentLoader]] trait
+    */
+  def apply(): DocumentLoader = UnboundedDocumentLoader
+
+  /** The factory method for creating new instances of the [[DocumentLoader]] trait which keep the estimated resident size of all
+    * the open documents under the given memory budget. The documents are loaded waiting for the memory budget, so they must be
+    * loaded on threads different from the ones on which they are closed.
+    * @param memoryBudget
+    *   the number of bytes which the open documents can keep in memory
+    * @param scratchThreshold
+    *   the number of bytes of a document over which the rest of it is kept into a scratch file
+    * @return
+    *   a new instance of the [[DocumentLoader]] trait
+    */
+  def apply(memoryBudget: Long, scratchThreshold: Long): DocumentLoader =
+    new BoundedDocumentLoader(memoryBudget, scratchThreshold)
+
+  /** The factory method for creating new instances of the [[DocumentLoader]] trait which load the documents through the given
+    * [[DocumentLoader]], but never keep more than the given number of documents open at the same time. The documents are loaded
+    * waiting for one of the open documents to be closed, so they must be loaded on threads different from the ones on which they
+    * are closed.
+    * @param loader
+    *   the [[DocumentLoader]] through which the documents are loaded
+    * @param maxOpenDocuments
+    *   the number of documents which can be open at the same time
+    * @return
+    *   a new instance of the [[DocumentLoader]] trait
+    */
+  def apply(loader: DocumentLoader, maxOpenDocuments: Int): DocumentLoader = new CountingDocumentLoader(loader, maxOpenDocuments)
+}
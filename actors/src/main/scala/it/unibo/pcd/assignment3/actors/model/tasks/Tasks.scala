@@ -32,6 +32,16 @@ sealed trait SingletonTask[A, B] extends Task[A, B]
   */
 sealed trait IterableTask[A, B] extends Task[A, Iterable[B]]
 
+/** An extension of the [[Task]] trait which produce an [[Iterator]] of output resources after the transformation of an input
+  * resource, so that each output resource is produced only when requested and can be sent as soon as it is available.
+  *
+  * @tparam A
+  *   the type of the resources this task takes as input
+  * @tparam B
+  *   the type of the resources this task produces [[Iterator]]s as output
+  */
+sealed trait StreamingTask[A, B] extends Task[A, Iterator[B]]
+
 /** A [[SingletonTask]] for generating the [[StopwordsSet]] given the [[FilePath]] of the file containing it. */
 case object StopwordsGeneratorTask extends SingletonTask[FilePath, StopwordsSet] {
 
@@ -46,31 +56,106 @@ case object StopwordsGeneratorTask extends SingletonTask[FilePath, StopwordsSet]
   def apply(filePath: FilePath): StopwordsSet = StopwordsSet(Files.readAllLines(filePath.path).asScala.toSet)
 }
 
-/** An [[IterableTask]] for generating the [[FilePath]]s of the PDF documents given the [[FilePath]] of the folder containing
-  * them.
+/** A [[SingletonTask]] for generating the [[Listing]] of a directory given its [[FilePath]], the [[FilePath]]s of the PDF
+  * documents it contains, from the largest to the smallest one, so that the longest documents can be processed first, and the
+  * [[FilePath]]s of its subdirectories, so that they can be listed in parallel. The attributes of each entry are read only once
+  * and the symbolic links to directories are not followed, so that the traversal of a tree always ends.
   */
-case object DocumentPathsGeneratorTask extends IterableTask[FilePath, FilePath] {
+case object DocumentPathsGeneratorTask extends SingletonTask[FilePath, Listing] {
 
-  import scala.jdk.StreamConverters._
+  import java.nio.file.{DirectoryStream, LinkOption}
+  import java.nio.file.attribute.BasicFileAttributes
+  import scala.jdk.CollectionConverters._
+  import scala.util.Try
 
-  /** The transformation function which converts a [[FilePath]] into an [[Iterable]] of [[FilePath]]s.
+  /** The transformation function which converts a [[FilePath]] into a [[Listing]].
     * @param filePath
     *   the input [[FilePath]]
     * @return
-    *   the output [[Iterable]] of [[FilePath]]s
+    *   the output [[Listing]]
     */
-  def apply(filePath: FilePath): Iterable[FilePath] =
-    Files
-      .list(filePath.path)
-      .toScala(Seq.iterableFactory[Path])
-      .filter(p => ".*pdf$".r.matches(p.toString))
-      .map(FilePath(_))
+  def apply(filePath: FilePath): Listing = {
+    val stream: DirectoryStream[Path] = Files.newDirectoryStream(filePath.path)
+    try {
+      val entries: Seq[(Path, BasicFileAttributes)] = stream
+        .asScala
+        .toSeq
+        .map(p => (p, Files.readAttributes(p, classOf[BasicFileAttributes], LinkOption.NOFOLLOW_LINKS)))
+        .map {
+          case (p, a) if a.isSymbolicLink && !Files.isDirectory(p) =>
+            (p, Try(Files.readAttributes(p, classOf[BasicFileAttributes])).getOrElse(a))
+          case e => e
+        }
+      Listing(
+        entries
+          .filter(e => e._2.isRegularFile && e._1.toString.endsWith("pdf"))
+          .sortBy(-_._2.size())
+          .map(e => FilePath(e._1)),
+        entries.filter(_._2.isDirectory).map(e => FilePath(e._1))
+      )
+    } finally {
+      stream.close()
+    }
+  }
 }
 
-/** A [[SingletonTask]] for transforming a [[FilePath]] of a PDF document into the [[Document]] itself. */
-case object PathFilterTask extends SingletonTask[FilePath, Document] {
+/** A [[SingletonTask]] for generating the [[DocumentKey]] of a file given its [[FilePath]], reading its size and last
+  * modification time and, if requested, hashing its whole content with the CRC-32C algorithm, which is much cheaper than parsing
+  * the file.
+  *
+  * @param hashContent
+  *   whether the content of the file should be hashed or not
+  */
+final case class DocumentKeyGeneratorTask(hashContent: Boolean) extends SingletonTask[FilePath, DocumentKey] {
+
+  import java.nio.ByteBuffer
+  import java.nio.channels.FileChannel
+  import java.nio.file.attribute.BasicFileAttributes
+  import java.util.zip.CRC32C
 
-  import org.apache.pdfbox.pdmodel.PDDocument
+  /* The size of the buffer used for reading the content of the file while hashing it. */
+  private val bufferSize: Int = 1 << 16
+
+  /** The transformation function which converts a [[FilePath]] into a [[DocumentKey]].
+    * @param filePath
+    *   the input [[FilePath]]
+    * @return
+    *   the output [[DocumentKey]]
+    */
+  override def apply(filePath: FilePath): DocumentKey = {
+    val attributes: BasicFileAttributes = Files.readAttributes(filePath.path, classOf[BasicFileAttributes])
+    DocumentKey(
+      filePath,
+      attributes.size(),
+      attributes.lastModifiedTime().toMillis,
+      if (hashContent) Some(hash(filePath.path)) else None
+    )
+  }
+
+  /* Computes the CRC-32C checksum of the content of the file with the given path. */
+  private def hash(path: Path): Long = {
+    val channel: FileChannel = FileChannel.open(path)
+    try {
+      val checksum: CRC32C = new CRC32C()
+      val buffer: ByteBuffer = ByteBuffer.allocate(bufferSize)
+      while (channel.read(buffer) >= 0) {
+        buffer.flip()
+        checksum.update(buffer)
+        buffer.clear()
+      }
+      checksum.getValue
+    } finally {
+      channel.close()
+    }
+  }
+}
+
+/** A [[SingletonTask]] for transforming a [[FilePath]] of a PDF document into the [[Document]] itself.
+  *
+  * @param loader
+  *   the [[DocumentLoader]] through which the document is loaded
+  */
+final case class PathFilterTask(loader: DocumentLoader) extends SingletonTask[FilePath, Document] {
 
   /** The transformation function which converts a [[FilePath]] into a [[Document]].
     * @param filePath
@@ -78,10 +163,99 @@ case object PathFilterTask extends SingletonTask[FilePath, Document] {
     * @return
     *   the output [[Document]]
     */
-  override def apply(filePath: FilePath): Document = Document(PDDocument.load(filePath.path.toFile))
+  override def apply(filePath: FilePath): Document = loader.load(filePath)
+}
+
+/** An [[IterableTask]] for transforming a [[FilePath]] of a PDF document into the [[Document]]s representing the ranges of its
+  * pages, so that the ranges of a large document can be processed in parallel. The first range uses the document loaded for
+  * counting its pages, while each other range loads its own document object only when requested, because a document object
+  * cannot be used concurrently. Since every document object parses and holds the whole document, the document is loaded once
+  * for each range, so the ranges are made larger than the given number of pages when needed for keeping their number under the
+  * given maximum.
+  *
+  * @param pagesPerRange
+  *   the number of pages in each range, unless the document would be split into more than the maximum number of ranges
+  * @param maxRanges
+  *   the maximum number of ranges into which a document is split, the maximum number of times it is loaded
+  * @param loader
+  *   the [[DocumentLoader]] through which the document objects are loaded
+  */
+final case class SplittingPathFilterTask(pagesPerRange: Int, maxRanges: Int, loader: DocumentLoader)
+  extends IterableTask[FilePath, Document] {
+
+  /** The transformation function which converts a [[FilePath]] into an [[Iterable]] of [[Document]]s.
+    * @param filePath
+    *   the input [[FilePath]]
+    * @return
+    *   the output [[Iterable]] of [[Document]]s
+    */
+  override def apply(filePath: FilePath): Iterable[Document] = {
+    val document: Document = loader.load(filePath)
+    val pages: Int = document.lastPage
+    val rangeSize: Int = Math.max(pagesPerRange, (pages + maxRanges - 1) / Math.max(maxRanges, 1))
+    if (pages <= rangeSize) {
+      Seq(document)
+    } else {
+      (1 to pages by rangeSize).view.map(f => {
+        val range: Document = if (f > 1) loader.load(filePath) else document
+        Document(range.document, filePath, f, Math.min(f + rangeSize - 1, pages), range.reservation)
+      })
+    }
+  }
 }
 
-/** An [[IterableTask]] for transforming a [[Document]] into an [[Iterable]] of the [[Page]]s that constitute it. */
+/** An [[IterableTask]] for transforming a [[FilePath]] of a PDF document into the [[Document]]s representing it through the
+  * given function, which reports the documents which could not be processed, either because the function has failed or because
+  * they have no pages, instead of failing itself. The [[Document]]s may be loaded only while iterating, as the ranges of a
+  * split document are, so a failure while loading one of them is reported too, ending the iteration early. The [[Document]]s
+  * already returned by then are closed by whoever has requested them, as usual.
+  *
+  * @param task
+  *   the function transforming a [[FilePath]] of a PDF document into the [[Document]]s representing it
+  * @param onDiscarded
+  *   the function to be called with the [[FilePath]] of each document which could not be processed
+  */
+final case class ReportingPathFilterTask(task: FilePath => Iterable[Document], onDiscarded: FilePath => Unit)
+  extends IterableTask[FilePath, Document] {
+
+  import scala.collection.View
+  import scala.util.{Failure, Success, Try}
+
+  /** The transformation function which converts a [[FilePath]] into an [[Iterable]] of [[Document]]s.
+    * @param filePath
+    *   the input [[FilePath]]
+    * @return
+    *   the output [[Iterable]] of [[Document]]s, which is empty if the document could not be processed and ends early if one of
+    *   its [[Document]]s could not be loaded
+    */
+  override def apply(filePath: FilePath): Iterable[Document] =
+    Try(task(filePath)) match {
+      case Success(d) if d.headOption.exists(_.document.getNumberOfPages > 0) =>
+        View.fromIteratorProvider(() =>
+          Iterator.unfold(d.iterator)(i =>
+            Try(Option.when(i.hasNext)((i.next(), i))) match {
+              case Success(n) => n
+              case Failure(_) =>
+                onDiscarded(filePath)
+                None
+            }
+          )
+        )
+      case Success(d) =>
+        d.foreach(_.close())
+        onDiscarded(filePath)
+        Seq.empty[Document]
+      case Failure(_) =>
+        onDiscarded(filePath)
+        Seq.empty[Document]
+    }
+}
+
+/** An [[IterableTask]] for transforming a [[Document]] into an [[Iterable]] of the [[Page]]s that constitute it, the ones in its
+  * range. Each [[Page]] is extracted only when it is reached while iterating, so that whoever iterates can stop between two of
+  * them. The [[Document]] is left open, because the extraction can fail or be stopped before its last [[Page]], so it must be
+  * closed by whoever has requested the [[Page]]s once done.
+  */
 case object DocumentFilterTask extends IterableTask[Document, Page] {
 
   import org.apache.pdfbox.text.PDFTextStripper
@@ -94,18 +268,98 @@ case object DocumentFilterTask extends IterableTask[Document, Page] {
     */
   override def apply(document: Document): Iterable[Page] = {
     val stripper = new PDFTextStripper()
-    val pages = (1 to document.document.getNumberOfPages)
+    val origin = Origin(document.path, document.document.getNumberOfPages)
+    (document.firstPage to document.lastPage).view
       .map(i => {
         stripper.setStartPage(i)
         stripper.setEndPage(i)
         stripper.getText(document.document)
       })
-      .map(Page(_))
-    document.document.close()
-    pages
+      .map(Page(_, origin))
+  }
+}
+
+/** A [[StreamingTask]] for transforming a [[Document]] into an [[Iterator]] of the [[Page]]s that constitute it, the ones in its
+  * range, which extracts the text of each [[Page]] only when it is requested, so that the text of the whole [[Document]] is
+  * never held in memory. The [[Document]] is left open, because the iteration can fail or be stopped before its last [[Page]],
+  * so it must be closed by whoever iterates over the [[Page]]s once done.
+  */
+case object StreamingDocumentFilterTask extends StreamingTask[Document, Page] {
+
+  import org.apache.pdfbox.text.PDFTextStripper
+
+  /** The transformation function which converts a [[Document]] into an [[Iterator]] of [[Page]]s.
+    * @param document
+    *   the input [[Document]]
+    * @return
+    *   the output [[Iterator]] of [[Page]]s
+    */
+  override def apply(document: Document): Iterator[Page] = {
+    val stripper = new PDFTextStripper()
+    val origin = Origin(document.path, document.document.getNumberOfPages)
+    (document.firstPage to document.lastPage).iterator.map(i => {
+      stripper.setStartPage(i)
+      stripper.setEndPage(i)
+      Page(stripper.getText(document.document), origin)
+    })
   }
 }
 
+/** A [[StreamingTask]] for transforming a [[Document]] into an [[Iterator]] of the [[Page]]s that constitute it through the
+  * given function, which reports the documents whose [[Page]]s could not be extracted, ending the [[Iterator]] at the first
+  * failure instead of failing itself. The [[Page]]s extracted before the failure are still produced.
+  *
+  * @param task
+  *   the function transforming a [[Document]] into an [[Iterator]] of the [[Page]]s that constitute it
+  * @param onDiscarded
+  *   the function to be called with the [[FilePath]] of each document whose [[Page]]s could not be extracted
+  */
+final case class ReportingStreamingDocumentFilterTask(task: Document => Iterator[Page], onDiscarded: FilePath => Unit)
+  extends StreamingTask[Document, Page] {
+
+  import scala.util.{Failure, Success, Try}
+
+  /** The transformation function which converts a [[Document]] into an [[Iterator]] of [[Page]]s.
+    * @param document
+    *   the input [[Document]]
+    * @return
+    *   the output [[Iterator]] of [[Page]]s, which ends early if a [[Page]] could not be extracted
+    */
+  override def apply(document: Document): Iterator[Page] =
+    Iterator.unfold(Try(task(document)))(t =>
+      t.flatMap(i => Try(Option.when(i.hasNext)((i.next(), t)))) match {
+        case Success(n) => n
+        case Failure(_) =>
+          onDiscarded(document.path)
+          None
+      }
+    )
+}
+
+/** An [[IterableTask]] for transforming a [[Document]] into an [[Iterable]] of the [[Page]]s that constitute it through the
+  * given function, which reports the documents whose [[Page]]s could not be extracted, as a
+  * [[ReportingStreamingDocumentFilterTask]] does.
+  *
+  * @param task
+  *   the function transforming a [[Document]] into an [[Iterable]] of the [[Page]]s that constitute it
+  * @param onDiscarded
+  *   the function to be called with the [[FilePath]] of each document whose [[Page]]s could not be extracted
+  */
+final case class ReportingDocumentFilterTask(task: Document => Iterable[Page], onDiscarded: FilePath => Unit)
+  extends IterableTask[Document, Page] {
+
+  import scala.collection.View
+
+  /** The transformation function which converts a [[Document]] into an [[Iterable]] of [[Page]]s.
+    * @param document
+    *   the input [[Document]]
+    * @return
+    *   the output [[Iterable]] of [[Page]]s, which ends early if a [[Page]] could not be extracted
+    */
+  override def apply(document: Document): Iterable[Page] =
+    View.fromIteratorProvider(() => ReportingStreamingDocumentFilterTask(task(_).iterator, onDiscarded)(document))
+}
+
 /** A [[SingletonTask]] for transforming a [[Resource]] into a partial [[Update]] containing the frequency for each word and the
   * number of words contained into the [[Page]] of the [[Resource]].
   */
@@ -129,3 +383,41 @@ case object PageFilterTask extends SingletonTask[Resource, Update] {
     )
   }
 }
+
+/** A [[SingletonTask]] for transforming a [[Resource]] into a partial [[Update]], which is the same as the one produced by the
+  * [[PageFilterTask]], but which is computed in a single pass over the characters of the [[Page]], without building a [[String]]
+  * for each of its words. The words are counted into a primitive hash table which is reused for all pages processed by the same
+  * thread, so that only the [[String]]s of the distinct words in the resulting [[Update]] are allocated.
+  */
+case object ScanningPageFilterTask extends SingletonTask[Resource, Update] {
+
+  /* The scanners used for counting, one for each thread executing this task. */
+  private val scanners: ThreadLocal[WordScanner] = ThreadLocal.withInitial(() => new WordScanner())
+
+  /** The transformation function which converts a [[Resource]] into an [[Update]].
+    * @param resource
+    *   the input [[Resource]]
+    * @return
+    *   the output [[Update]]
+    */
+  def apply(resource: Resource): Update = scanners.get().scan(resource.page.text, resource.stopwordsSet)
+}
+
+/** A [[SingletonTask]] for transforming a [[Resource]] into the [[WordCounts]] of its [[Page]], which contain the same
+  * frequencies as the [[Update]] produced by the [[ScanningPageFilterTask]], but associated with the words themselves instead of
+  * their ids, so that they can be summarized into a [[it.unibo.pcd.assignment3.actors.model.entities.WordSketch]] without the
+  * shared [[it.unibo.pcd.assignment3.actors.model.entities.WordDictionary]] growing with all the words of the corpus.
+  */
+case object SketchingPageFilterTask extends SingletonTask[Resource, WordCounts] {
+
+  /* The scanners used for counting, one for each thread executing this task. */
+  private val scanners: ThreadLocal[WordScanner] = ThreadLocal.withInitial(() => new WordScanner())
+
+  /** The transformation function which converts a [[Resource]] into [[WordCounts]].
+    * @param resource
+    *   the input [[Resource]]
+    * @return
+    *   the output [[WordCounts]]
+    */
+  def apply(resource: Resource): WordCounts = scanners.get().countWords(resource.page.text, resource.stopwordsSet)
+}
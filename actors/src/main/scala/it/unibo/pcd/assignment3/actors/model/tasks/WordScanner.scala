@@ -0,0 +1,169 @@
+package it.unibo.pcd.assignment3.actors.model.tasks
+
+import it.unibo.pcd.assignment3.actors.model.entities.{StopwordsSet, Update, WordCounts, WordDictionary}
+
+import java.util.Arrays
+
+/* A scanner which counts the words in the text of a page in a single pass over its characters. Each word is lowercased into a
+ * reusable buffer while its hash is computed, then it is checked against a table of stopwords and counted by its id in the
+ * shared WordDictionary. The ids of the words already met by the scanner are kept into another table, which is cleared only
+ * when the shared dictionary is reset, so that the dictionary is consulted, and a String is built, only the first time a word
+ * is met by the scanner. The occurrences are counted into an array indexed by id, along with the list of the ids counted for
+ * the current page, so that the resulting Update is made of primitive arrays only. The words are the same which would be
+ * obtained by splitting the text with the "\W+" regular expression, the leading empty word included. The words can also be
+ * counted by themselves, into a table which is cleared after each page, so that the dictionary is never consulted and does not
+ * grow with the words of the corpus. Instances are not thread-safe and are meant to be reused by the same thread for many
+ * pages.
+ */
+@SuppressWarnings(Array("org.wartremover.warts.Equals"))
+private[tasks] final class WordScanner {
+  private var token: Array[Char] = new Array[Char](64)
+  private var dictionary: WordDictionary = WordDictionary.shared
+  private val ids: WordTable = new WordTable()
+  private var occurrences: Array[Int] = new Array[Int](1024)
+  private var counted: Array[Int] = new Array[Int](256)
+  private var countedSize: Int = 0
+  private var stopwordsSet: StopwordsSet = StopwordsSet(Set.empty[String])
+  private var stopwords: WordTable = new WordTable()
+  private val pageWords: WordTable = new WordTable()
+
+  /* Returns the Update containing the frequencies of the words in the given text which are not stopwords and the number of
+   * words in the given text.
+   */
+  def scan(text: String, stopwordsSet: StopwordsSet): Update = {
+    if (!(dictionary eq WordDictionary.shared)) {
+      dictionary = WordDictionary.shared
+      ids.clear()
+    }
+    val processedWords = tokenize(text, stopwordsSet, byId = true)
+    val words = Arrays.copyOf(counted, countedSize)
+    val counts = new Array[Long](countedSize)
+    var j = 0
+    while (j < countedSize) {
+      counts(j) = occurrences(words(j)).toLong
+      occurrences(words(j)) = 0
+      j += 1
+    }
+    countedSize = 0
+    Update(words, counts, processedWords)
+  }
+
+  /* Returns the WordCounts containing the frequencies of the words in the given text which are not stopwords and the number of
+   * words in the given text, counting the words by themselves instead of by their ids.
+   */
+  def countWords(text: String, stopwordsSet: StopwordsSet): WordCounts = {
+    val processedWords = tokenize(text, stopwordsSet, byId = false)
+    val words = new Array[String](pageWords.size)
+    val counts = new Array[Long](pageWords.size)
+    var j = 0
+    while (j < pageWords.size) {
+      words(j) = pageWords.word(j)
+      counts(j) = pageWords.count(j).toLong
+      j += 1
+    }
+    pageWords.clear()
+    WordCounts(words, counts, processedWords)
+  }
+
+  /* Counts the words in the given text which are not stopwords, either by their ids or by themselves, returning the number of
+   * words in the given text.
+   */
+  private def tokenize(text: String, stopwordsSet: StopwordsSet, byId: Boolean): Long = {
+    if (!(this.stopwordsSet eq stopwordsSet)) {
+      loadStopwords(stopwordsSet)
+    }
+    val length = text.length
+    var processedWords = 0L
+    if (length == 0) {
+      count(tokenLength = 0, hash = 0, byId)
+      processedWords += 1
+    } else {
+      var leadingEmptyToken = !isWordCharacter(text.charAt(0))
+      var i = 0
+      while (i < length) {
+        while (i < length && !isWordCharacter(text.charAt(i))) {
+          i += 1
+        }
+        if (i < length) {
+          if (leadingEmptyToken) {
+            count(tokenLength = 0, hash = 0, byId)
+            processedWords += 1
+            leadingEmptyToken = false
+          }
+          var tokenLength = 0
+          var hash = 0
+          while (i < length && isWordCharacter(text.charAt(i))) {
+            val c = toLowerCase(text.charAt(i))
+            if (tokenLength == token.length) {
+              token = Arrays.copyOf(token, tokenLength * 2)
+            }
+            token(tokenLength) = c
+            hash = 31 * hash + c
+            tokenLength += 1
+            i += 1
+          }
+          count(tokenLength, hash, byId)
+          processedWords += 1
+        }
+      }
+    }
+    processedWords
+  }
+
+  /* Counts the word currently in the buffer, if it is not a stopword, either by its id or by itself. */
+  private def count(tokenLength: Int, hash: Int, byId: Boolean): Unit =
+    if (!stopwords.contains(token, tokenLength, hash)) {
+      if (byId) {
+        countById(tokenLength, hash)
+      } else {
+        pageWords.add(token, tokenLength, hash, occurrences = 1)
+      }
+    }
+
+  /* Counts the word currently in the buffer by its id. */
+  private def countById(tokenLength: Int, hash: Int): Unit = {
+    val id = idOf(tokenLength, hash)
+    if (id >= occurrences.length) {
+      occurrences = Arrays.copyOf(occurrences, Math.max(occurrences.length * 2, id + 1))
+    }
+    if (occurrences(id) == 0) {
+      if (countedSize == counted.length) {
+        counted = Arrays.copyOf(counted, countedSize * 2)
+      }
+      counted(countedSize) = id
+      countedSize += 1
+    }
+    occurrences(id) += 1
+  }
+
+  /* Returns the id of the word currently in the buffer, which the table of ids keeps as the count of the word, asking it to the
+   * dictionary only if the scanner has never met the word.
+   */
+  private def idOf(tokenLength: Int, hash: Int): Int = {
+    val entry = ids.entry(token, tokenLength, hash)
+    if (entry >= 0) {
+      ids.count(entry)
+    } else {
+      val id = dictionary.id(new String(token, 0, tokenLength))
+      ids.add(token, tokenLength, hash, occurrences = id)
+      id
+    }
+  }
+
+  /* Builds the table of stopwords for the given set, remembering it so as to not build it again for the next pages. */
+  private def loadStopwords(stopwordsSet: StopwordsSet): Unit = {
+    val table = new WordTable(Math.max(stopwordsSet.stopwords.size, 1))
+    stopwordsSet.stopwords.foreach(w => table.add(w.toCharArray, w.length, w.hashCode, occurrences = 1))
+    this.stopwordsSet = stopwordsSet
+    stopwords = table
+  }
+
+  /* Returns whether the given character is matched by the "\w" character class, without the UNICODE_CHARACTER_CLASS flag. */
+  private def isWordCharacter(c: Char): Boolean =
+    (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_'
+
+  /* Lowercases the given word character. Being word characters only ASCII ones, this is equivalent to String.toLowerCase for all
+   * default locales but the Turkish and Azerbaijani ones, which have a dotless lowercase "I".
+   */
+  private def toLowerCase(c: Char): Char = if (c >= 'A' && c <= 'Z') (c + ('a' - 'A')).toChar else c
+}
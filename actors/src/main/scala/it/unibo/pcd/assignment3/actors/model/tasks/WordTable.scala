@@ -0,0 +1,134 @@
+package it.unibo.pcd.assignment3.actors.model.tasks
+
+import java.util.Arrays
+
+/* A hash table with open addressing and linear probing which associates words to their number of occurrences. The words are
+ * stored as slices of a single pool of characters and are looked up given an array of characters and their hash, as computed by
+ * String.hashCode, so that no String needs to be built for looking up a word. Its arrays are reused after each clear, so that a
+ * table that is used for many pages stops allocating once it has grown enough.
+ */
+@SuppressWarnings(Array("org.wartremover.warts.Equals"))
+private[tasks] final class WordTable(initialCapacity: Int = 256) {
+  private var pool: Array[Char] = new Array[Char](initialCapacity * 8)
+  private var poolSize: Int = 0
+  private var starts: Array[Int] = new Array[Int](initialCapacity)
+  private var lengths: Array[Int] = new Array[Int](initialCapacity)
+  private var hashes: Array[Int] = new Array[Int](initialCapacity)
+  private var counts: Array[Int] = new Array[Int](initialCapacity)
+  private var entrySlots: Array[Int] = new Array[Int](initialCapacity)
+  private var slots: Array[Int] = new Array[Int](Integer.highestOneBit(Math.max(initialCapacity, 2)) * 4)
+  private var entries: Int = 0
+
+  /* Returns the number of distinct words in this table. */
+  def size: Int = entries
+
+  /* Removes all words from this table, touching only the slots which were occupied. */
+  def clear(): Unit = {
+    var i = 0
+    while (i < entries) {
+      slots(entrySlots(i)) = 0
+      i += 1
+    }
+    entries = 0
+    poolSize = 0
+  }
+
+  /* Returns whether the word made of the first "length" characters of the given array is contained in this table. */
+  def contains(word: Array[Char], length: Int, hash: Int): Boolean = slots(find(word, length, hash)) != 0
+
+  /* Returns the index of the entry storing the word made of the first "length" characters of the given array, or -1 if it is not
+   * contained in this table.
+   */
+  def entry(word: Array[Char], length: Int, hash: Int): Int = slots(find(word, length, hash)) - 1
+
+  /* Adds the given occurrences to the word made of the first "length" characters of the given array. */
+  def add(word: Array[Char], length: Int, hash: Int, occurrences: Int): Unit = {
+    val slot = find(word, length, hash)
+    val entry = slots(slot)
+    if (entry != 0) {
+      counts(entry - 1) += occurrences
+    } else {
+      insert(slot, word, length, hash, occurrences)
+    }
+  }
+
+  /* Returns the word stored in the entry with the given index, which must be lesser than the size of this table. */
+  def word(entry: Int): String = new String(pool, starts(entry), lengths(entry))
+
+  /* Returns the occurrences of the word stored in the entry with the given index, which must be lesser than the size of this
+   * table.
+   */
+  def count(entry: Int): Int = counts(entry)
+
+  /* Returns the slot in which the given word is stored or, if absent, the empty slot in which it should be stored. */
+  private def find(word: Array[Char], length: Int, hash: Int): Int = {
+    val mask = slots.length - 1
+    var slot = mix(hash) & mask
+    while (slots(slot) != 0 && !matches(slots(slot) - 1, word, length, hash)) {
+      slot = (slot + 1) & mask
+    }
+    slot
+  }
+
+  /* Returns whether the word stored in the given entry is equal to the given one. */
+  private def matches(entry: Int, word: Array[Char], length: Int, hash: Int): Boolean =
+    if (hashes(entry) != hash || lengths(entry) != length) {
+      false
+    } else {
+      val start = starts(entry)
+      var i = 0
+      while (i < length && pool(start + i) == word(i)) {
+        i += 1
+      }
+      i == length
+    }
+
+  /* Inserts the given word in the given empty slot, growing the arrays of this table if needed. */
+  private def insert(slot: Int, word: Array[Char], length: Int, hash: Int, occurrences: Int): Unit = {
+    if (entries == starts.length) {
+      val capacity = entries * 2
+      starts = Arrays.copyOf(starts, capacity)
+      lengths = Arrays.copyOf(lengths, capacity)
+      hashes = Arrays.copyOf(hashes, capacity)
+      counts = Arrays.copyOf(counts, capacity)
+      entrySlots = Arrays.copyOf(entrySlots, capacity)
+    }
+    if (poolSize + length > pool.length) {
+      pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolSize + length))
+    }
+    System.arraycopy(word, 0, pool, poolSize, length)
+    starts(entries) = poolSize
+    lengths(entries) = length
+    hashes(entries) = hash
+    counts(entries) = occurrences
+    entrySlots(entries) = slot
+    slots(slot) = entries + 1
+    poolSize += length
+    entries += 1
+    if (entries * 2 > slots.length) {
+      rehash()
+    }
+  }
+
+  /* Doubles the number of slots of this table, placing again all of its entries. */
+  private def rehash(): Unit = {
+    slots = new Array[Int](slots.length * 2)
+    val mask = slots.length - 1
+    var i = 0
+    while (i < entries) {
+      var slot = mix(hashes(i)) & mask
+      while (slots(slot) != 0) {
+        slot = (slot + 1) & mask
+      }
+      slots(slot) = i + 1
+      entrySlots(i) = slot
+      i += 1
+    }
+  }
+
+  /* Spreads the bits of the given hash, so that similar words do not end up in adjacent slots. */
+  private def mix(hash: Int): Int = {
+    val h = hash * -1640531527
+    h ^ (h >>> 16)
+  }
+}
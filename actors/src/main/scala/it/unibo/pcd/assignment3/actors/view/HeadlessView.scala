@@ -0,0 +1,162 @@
+package it.unibo.pcd.assignment3.actors.view
+
+import it.unibo.pcd.assignment3.actors.controller.{Controller, PipelineMetrics}
+
+import java.io.{OutputStreamWriter, Writer}
+import java.lang.management.{ManagementFactory, MemoryPoolMXBean, MemoryType}
+import java.nio.charset.StandardCharsets
+import java.nio.file.{Files, Path}
+import scala.jdk.CollectionConverters._
+import scala.util.{Failure, Using}
+
+/** Companion object of the View component of this application when it runs without a graphical user interface, containing its
+  * factory method and the formats in which it can write the results of the computation.
+  */
+object HeadlessView {
+
+  /** The format in which the results of the computation are written. */
+  sealed trait OutputFormat
+
+  /** Companion object to the [[OutputFormat]] trait, containing all of its possible instances. */
+  object OutputFormat {
+
+    /** A JSON object with the total number of processed words as "processedWords" and the most frequent words as "words", an
+      * array of objects with their "word" and their "frequency", from the most frequent word to the least frequent one. If the
+      * words have been counted approximately, it also has the estimated number of distinct words as "distinctWords" and the
+      * maximum amount by which the frequencies can exceed the exact ones as "errorBound".
+      */
+    case object Json extends OutputFormat
+
+    /** A CSV table with a "word,frequency" header and a row for each of the most frequent words, from the most frequent word to
+      * the least frequent one, followed by a last row with an empty word and the total number of processed words.
+      */
+    case object Csv extends OutputFormat
+  }
+
+  /* An implementation of the View trait which launches a single computation as soon as it is created, keeps only the last
+   * progress received and, when the computation is over, writes its results and a summary of its throughput and exits. Keeping
+   * the last progress is all it does when the progress is displayed, so no time is spent drawing charts nobody looks at. Since
+   * nobody can react to an error, any error displayed once the computation has been launched stops it and exits with a non-zero
+   * status, as it does when the results cannot be written, while the ones displayed before, which the controller recovers
+   * from, are only printed.
+   */
+  private class HeadlessViewImpl(format: OutputFormat, output: Option[Path]) extends View {
+    @volatile private var frequencies: Map[String, Long] = Map.empty[String, Long]
+    @volatile private var processedWords: Long = 0
+    @volatile private var estimates: Option[(Long, Long)] = None
+    private val heapPools: Seq[MemoryPoolMXBean] =
+      ManagementFactory.getMemoryPoolMXBeans.asScala.filter(_.getType == MemoryType.HEAP).toSeq
+    private val startTime: Long = System.nanoTime()
+    @volatile private var launched: Boolean = false
+    private val controller: Controller = Controller(this)
+
+    heapPools.foreach(_.resetPeakUsage())
+
+    def launch(filesDirectory: Path, stopwordsFile: Path, wordsNumber: Int): Unit = {
+      launched = true
+      controller.launch(filesDirectory, stopwordsFile, wordsNumber)
+    }
+
+    override def displayProgress(frequencies: Map[String, Long], processedWords: Long): Unit = {
+      this.frequencies = frequencies
+      this.processedWords = processedWords
+    }
+
+    override def displayEstimates(distinctWords: Long, errorBound: Long): Unit = estimates = Some((distinctWords, errorBound))
+
+    override def displayCompletion(): Unit = {
+      val seconds: Double = (System.nanoTime() - startTime) / 1e9
+      val status: Int = Using(
+        output.fold[Writer](new OutputStreamWriter(System.out, StandardCharsets.UTF_8) {
+          override def close(): Unit = flush()
+        })(Files.newBufferedWriter(_, StandardCharsets.UTF_8))
+      )(_.write(results)) match {
+        case Failure(e) =>
+          printError(s"The results could not be written: ${e.getMessage}")
+          1
+        case _ => 0
+      }
+      System.err.println(summary(controller.metrics, seconds))
+      controller.exit(status)
+    }
+
+    override def displayError(message: String): Unit = {
+      printError(message)
+      if (launched) {
+        controller.exit(1)
+      }
+    }
+
+    /* Prints the given error message into the standard error. */
+    private def printError(message: String): Unit = System.err.println(s"Error: $message")
+
+    /* Returns the last progress received in the chosen format. */
+    private def results: String =
+      format match {
+        case OutputFormat.Json =>
+          frequencies
+            .map(e => s"""{"word":${json(e._1)},"frequency":${e._2}}""")
+            .mkString(
+              s"""{"processedWords":$processedWords,""" +
+                estimates.fold("")(e => s""""distinctWords":${e._1},"errorBound":${e._2},""") +
+                """"words":[""",
+              ",",
+              s"]}${System.lineSeparator()}"
+            )
+        case OutputFormat.Csv =>
+          (Seq("word,frequency") ++ frequencies.map(e => s"${csv(e._1)},${e._2}") :+ s",$processedWords")
+            .mkString("", System.lineSeparator(), System.lineSeparator())
+      }
+
+    /* Returns the given string as a JSON string literal. */
+    private def json(value: String): String =
+      "\"" + value.flatMap {
+        case '"'          => "\\\""
+        case '\\'         => "\\\\"
+        case c if c < ' ' => f"\\u${c.toInt}%04x"
+        case c            => c.toString
+      } + "\""
+
+    /* Returns the given string as a CSV field, quoting it only if needed. */
+    private def csv(value: String): String =
+      if (value.exists(c => c == ',' || c == '"' || c == '\n' || c == '\r')) {
+        "\"" + value.replace("\"", "\"\"") + "\""
+      } else {
+        value
+      }
+
+    /* Returns the summary of the throughput of the computation, given the time it took. */
+    private def summary(metrics: PipelineMetrics, seconds: Double): String = {
+      val documents: Long = metrics.path.getItemsIn
+      val pages: Long = metrics.page.getItemsIn
+      val peakHeap: Long = heapPools.map(_.getPeakUsage.getUsed).sum
+      f"Processed $documents documents, $pages pages and $processedWords words in $seconds%.2f s: " +
+        f"${documents / seconds}%.1f documents/s, ${pages / seconds}%.1f pages/s, ${processedWords / seconds}%.0f words/s, " +
+        f"peak heap ${peakHeap / (1024.0 * 1024.0)}%.1f MiB" +
+        estimates.fold("")(e => s", about ${e._1} distinct words, frequencies at most ${e._2} too high")
+    }
+  }
+
+  /** The factory method for creating new instances of the View component which have no graphical user interface. The created
+    * instance immediately launches a computation on the given inputs and, when it is over, writes its results in the given
+    * format and a summary of its throughput into the standard error, then exits the application. If the computation fails, or its
+    * results cannot be written, the application exits with a non-zero status.
+    * @param filesDirectory
+    *   the path of the directory containing the PDF files to process
+    * @param stopwordsFile
+    *   the path of the file containing the stopwords
+    * @param wordsNumber
+    *   the number of most frequent words to write
+    * @param format
+    *   the [[OutputFormat]] in which the results are written
+    * @param output
+    *   the path of the file into which the results are written, if they should not be written into the standard output
+    * @return
+    *   a new instance of the [[View]] trait without a graphical user interface
+    */
+  def apply(filesDirectory: Path, stopwordsFile: Path, wordsNumber: Int, format: OutputFormat, output: Option[Path]): View = {
+    val view: HeadlessViewImpl = new HeadlessViewImpl(format, output)
+    view.launch(filesDirectory, stopwordsFile, wordsNumber)
+    view
+  }
+}
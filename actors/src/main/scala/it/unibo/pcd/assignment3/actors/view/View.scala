@@ -1,6 +1,7 @@
 package it.unibo.pcd.assignment3.actors.view
 
 import it.unibo.pcd.assignment3.actors.controller.Controller
+import javafx.animation.AnimationTimer
 import javafx.application.Platform
 import javafx.collections.ObservableList
 import javafx.fxml.{FXML, FXMLLoader}
@@ -12,6 +13,9 @@ import javafx.stage.{DirectoryChooser, FileChooser, Stage}
 
 import java.io.File
 import java.nio.file.Path
+import java.util.{HashMap => JHashMap}
+import java.util.concurrent.atomic.{AtomicBoolean, AtomicReference}
+import scala.jdk.CollectionConverters._
 
 /** The View component of this application. It should capture user input and be notified of changes into the Model component which
   * should appear to the user.
@@ -29,6 +33,14 @@ trait View {
     */
   def displayProgress(frequencies: Map[String, Long], processedWords: Long): Unit
 
+  /** It displays the estimates of the current computation when the words are counted approximately, right after its progress.
+    * @param distinctWords
+    *   the estimated number of distinct words found until this very moment
+    * @param errorBound
+    *   the maximum amount by which the displayed frequencies can exceed the exact ones
+    */
+  def displayEstimates(distinctWords: Long, errorBound: Long): Unit
+
   /** It displays the completion of the computation when the computation has ended. */
   def displayCompletion(): Unit
 
@@ -42,13 +54,39 @@ trait View {
 /** Companion object of the [[View]] trait, containing its factory method. */
 object View {
 
-  /* An implementation of the View trait which creates a Graphical User Interface using JavaFX. */
+  /* The shortest interval between two refreshes of the chart, one for each frame of a 60 Hz display, in nanoseconds. */
+  private val minimumRefreshInterval: Long = 1_000_000_000L / 60
+
+  /* The longest interval between two refreshes of the chart, in nanoseconds. */
+  private val maximumRefreshInterval: Long = 1_000_000_000L
+
+  /* The progress of a computation to be displayed, along with its estimates if the words are counted approximately. */
+  private final case class Progress(frequencies: Map[String, Long], processedWords: Long, estimates: Option[(Long, Long)])
+
+  /* An implementation of the View trait which creates a Graphical User Interface using JavaFX.
+   *
+   * The progress received is not displayed right away, but it replaces the latest one received, which is displayed by a timer
+   * at the next frame of the JavaFX application thread, so that no more than one progress is ever waiting to be displayed
+   * however frequently it is received. Only the bars of the chart whose words or frequencies have changed are updated. The
+   * interval between two refreshes is doubled whenever the application thread falls behind, either because a frame has been
+   * skipped or because refreshing has taken more than a quarter of the interval, and is slowly shortened back otherwise.
+   */
   private class GUIView(primaryStage: Stage) extends View {
 
     private val controller: Controller = Controller(this)
+    private val latestProgress: AtomicReference[Progress] = new AtomicReference(Progress(Map.empty, 0, None))
+    private val progressChanged: AtomicBoolean = new AtomicBoolean(false)
+    private val series: XYChart.Series[String, Long] = new XYChart.Series[String, Long]()
+    private val bars: JHashMap[String, XYChart.Data[String, Long]] = new JHashMap[String, XYChart.Data[String, Long]]()
+    private val refresher: AnimationTimer = new AnimationTimer {
+      override def handle(now: Long): Unit = refresh(now)
+    }
     private var isSuspended: Boolean = false
     private var filesDirectoryPath: Option[Path] = None
     private var stopwordsFilePath: Option[Path] = None
+    private var refreshInterval: Long = minimumRefreshInterval
+    private var lastRefresh: Long = 0
+    private var lastFrame: Long = 0
 
     @FXML
     private var barChart: BarChart[String, Long] = _
@@ -73,15 +111,15 @@ object View {
 
     show()
 
-    def displayProgress(frequencies: Map[String, Long], processedWords: Long): Unit = Platform.runLater(() => {
-      val data: ObservableList[XYChart.Series[String, Long]] = barChart.getData
-      data.clear()
-      barChart.layout()
-      val series: XYChart.Series[String, Long] = new XYChart.Series[String, Long]()
-      frequencies.map(e => new XYChart.Data[String, Long](e._1, e._2)).foreach(series.getData.add(_))
-      data.add(series)
-      processedWordsLabel.setText(String.format("Processed words: %d", processedWords))
-    })
+    def displayProgress(frequencies: Map[String, Long], processedWords: Long): Unit = {
+      latestProgress.updateAndGet(p => Progress(frequencies, processedWords, p.estimates))
+      progressChanged.set(true)
+    }
+
+    def displayEstimates(distinctWords: Long, errorBound: Long): Unit = {
+      latestProgress.updateAndGet(_.copy(estimates = Some((distinctWords, errorBound))))
+      progressChanged.set(true)
+    }
 
     def displayCompletion(): Unit = Platform.runLater(() => {
       suspendButton.setDisable(true)
@@ -96,6 +134,9 @@ object View {
       val loader: FXMLLoader = new FXMLLoader(ClassLoader.getSystemResource("main.fxml"))
       loader.setController(this)
       val borderPane: BorderPane = loader.load[BorderPane]()
+      barChart.setAnimated(false)
+      barChart.getData.add(series)
+      refresher.start()
       setFilesDirectoryControls()
       setStopwordsFileControls()
       startButton.setOnMouseClicked(_ =>
@@ -124,7 +165,10 @@ object View {
       resetButton.setOnMouseClicked(_ => {
         filesDirectoryPath = None
         stopwordsFilePath = None
-        barChart.getData.clear()
+        latestProgress.set(Progress(Map.empty, 0, None))
+        progressChanged.set(false)
+        series.getData.clear()
+        bars.clear()
         processedWordsLabel.setText("Processed words: 0")
         stopwordsFileLabel.setText("Select file...")
         filesDirectoryLabel.setText("Select file...")
@@ -136,13 +180,70 @@ object View {
       primaryStage.setScene(scene)
       primaryStage.sizeToScene()
       primaryStage.setTitle("Unique words counter")
-      primaryStage.setOnCloseRequest(_ => controller.exit())
+      primaryStage.setOnCloseRequest(_ => {
+        refresher.stop()
+        controller.exit()
+      })
       primaryStage.show()
       primaryStage.centerOnScreen()
       primaryStage.setMinWidth(primaryStage.getWidth)
       primaryStage.setMinHeight(primaryStage.getHeight)
     }
 
+    /* It displays the latest progress received, if it has changed since the last refresh and the refresh interval has elapsed,
+     * adapting the refresh interval to how much the JavaFX application thread is lagging behind.
+     */
+    private def refresh(now: Long): Unit = {
+      val skippedFrame: Boolean = lastFrame > 0 && now - lastFrame > 2 * minimumRefreshInterval
+      lastFrame = now
+      if (now - lastRefresh >= refreshInterval && progressChanged.getAndSet(false)) {
+        val start: Long = System.nanoTime()
+        render(latestProgress.get)
+        val cost: Long = System.nanoTime() - start
+        lastRefresh = now
+        refreshInterval =
+          if (skippedFrame || cost * 4 > refreshInterval) {
+            Math.min(refreshInterval * 2, maximumRefreshInterval)
+          } else {
+            Math.max(refreshInterval * 7 / 8, minimumRefreshInterval)
+          }
+      }
+    }
+
+    /* It displays the given progress keeping a bar for each word, because the chart binds each bar to its category when the bar
+     * is added. The bars of the words no longer displayed are removed, the frequencies of the words still displayed are updated
+     * in place and the bars of the new words are added, while the bars are reordered only if the ranking of the words has
+     * changed.
+     */
+    private def render(progress: Progress): Unit = {
+      val shown: ObservableList[XYChart.Data[String, Long]] = series.getData
+      shown.removeIf(b => !progress.frequencies.contains(b.getXValue))
+      bars.keySet.removeIf(w => !progress.frequencies.contains(w))
+      val ranked: Seq[XYChart.Data[String, Long]] = progress
+        .frequencies
+        .map { case (w, f) =>
+          val bar: XYChart.Data[String, Long] = bars.computeIfAbsent(w, new XYChart.Data[String, Long](_, f))
+          if (bar.getYValue != f) {
+            bar.setYValue(f)
+          }
+          bar
+        }
+        .toSeq
+      if (shown.asScala.zip(ranked).forall(b => b._1 eq b._2)) {
+        shown.addAll(ranked.drop(shown.size).asJava)
+      } else {
+        shown.setAll(ranked.asJava)
+      }
+      val processedWords: String = String.format("Processed words: %d", progress.processedWords)
+      processedWordsLabel.setText(
+        progress
+          .estimates
+          .fold(processedWords)(e =>
+            String.format("%s, distinct words: ~%d, frequencies: +%d at most", processedWords, e._1, e._2)
+          )
+      )
+    }
+
     private def showFileLoaded(file: File, pathStore: Option[Path] => Unit, fileNameShow: => String => Unit): Unit = {
       val opt: Option[File] = Option(file)
       pathStore(opt.map(_.toPath))